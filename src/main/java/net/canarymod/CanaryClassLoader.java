@@ -1,5 +1,7 @@
 package net.canarymod;
 
+import net.canarymod.database.DataAccess;
+
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -26,6 +28,7 @@ public final class CanaryClassLoader extends URLClassLoader {
      */
     public CanaryClassLoader(URL url, ClassLoader loader) {
         super(new URL[]{ url }, loader);
+        ccw.addLoader(this, url); // Index the packages of the jar so other loaders can find its classes
     }
 
     /** {@inheritDoc} */
@@ -96,5 +99,6 @@ public final class CanaryClassLoader extends URLClassLoader {
             }
         }
         ccw.removeLoader(this); // And finally remove url and classes from the jar
+        DataAccess.forgetClasses(this); // Cached table layouts would keep the classes around
     }
 }
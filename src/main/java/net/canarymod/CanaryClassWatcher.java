@@ -1,19 +1,46 @@
 package net.canarymod;
 
-import com.google.common.collect.ArrayListMultimap;
 import net.canarymod.plugin.Plugin;
 
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
 /**
  * Canary Class Watcher
  * <p/>
  * Designed to allow plugins to share classes between each other.<br>
  * NOTE: If a class isn't loaded, this will load the class from the first ClassLoader that has the class.<br>
  * It could be an incorrect class or improperly initialized. Plugin devs should program with this in mind.
+ * <p/>
+ * Loaded classes are kept by name and the jar contents by package, so lookups don't need a lock
+ * and only ask the loaders whose jar has classes in the package in question.
+ * Names nobody has are remembered until the next loader shows up.
  *
  * @author Jason (darkdiplomat)
  */
 final class CanaryClassWatcher {
-    private final ArrayListMultimap<CanaryClassLoader, Class<?>> loadedClasses = ArrayListMultimap.create();
+    // Upper bound for remembered misses, they are forgotten all at once when it is reached
+    private static final int MAX_MISSES = 10000;
+
+    private final ConcurrentHashMap<String, Class<?>> loadedClasses = new ConcurrentHashMap<String, Class<?>>();
+    private final ConcurrentHashMap<CanaryClassLoader, Set<String>> classesByLoader = new ConcurrentHashMap<CanaryClassLoader, Set<String>>();
+    // Package name to the loaders whose jar has classes in it, in the order the loaders were added
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<CanaryClassLoader>> loadersByPackage = new ConcurrentHashMap<String, CopyOnWriteArrayList<CanaryClassLoader>>();
+    private final ConcurrentHashMap<CanaryClassLoader, Set<String>> packagesByLoader = new ConcurrentHashMap<CanaryClassLoader, Set<String>>();
+    // Loaders whose jar could not be indexed, they are asked for every class
+    private final CopyOnWriteArrayList<CanaryClassLoader> unindexedLoaders = new CopyOnWriteArrayList<CanaryClassLoader>();
+    private final ConcurrentHashMap<String, Boolean> misses = new ConcurrentHashMap<String, Boolean>();
+    // Bumped whenever a loader is added, a miss found before that may be wrong by now
+    private final AtomicInteger loaderGeneration = new AtomicInteger();
 
     /**
      * Finds a loaded {@link Class} from any of the {@link Plugin}'s {@link CanaryClassLoader}
@@ -23,11 +50,13 @@ final class CanaryClassWatcher {
      *
      * @return the {@link Class} if found; {@code null} otherwise
      */
-    synchronized final Class<?> findLoadedClass(String name) {
-        for (Class<?> cls : loadedClasses.values()) {
-            if (cls.getName().equals(name)) {
-                return cls;
-            }
+    final Class<?> findLoadedClass(String name) {
+        Class<?> cls = loadedClasses.get(name);
+        if (cls != null) {
+            return cls;
+        }
+        if (misses.containsKey(name)) {
+            return null;
         }
         return loadClass(name); // ClassNotFound, attempt to load it
     }
@@ -40,9 +69,34 @@ final class CanaryClassWatcher {
      *
      * @return the {@link Class} if found; {@code null} otherwise
      */
-    private synchronized final Class<?> loadClass(String name) {
+    private Class<?> loadClass(String name) {
+        int generation = loaderGeneration.get();
         String nameTemp = name.replace('.', '/').concat(".class");
-        for (CanaryClassLoader loader : loadedClasses.keySet()) {
+        int dot = name.lastIndexOf('.');
+        CopyOnWriteArrayList<CanaryClassLoader> candidates = loadersByPackage.get(dot < 0 ? "" : name.substring(0, dot));
+        if (candidates != null) {
+            Class<?> cls = loadClass(name, nameTemp, candidates);
+            if (cls != null) {
+                return cls;
+            }
+        }
+        Class<?> cls = loadClass(name, nameTemp, unindexedLoaders);
+        if (cls != null) {
+            return cls;
+        }
+        if (misses.size() >= MAX_MISSES) {
+            misses.clear();
+        }
+        misses.put(name, Boolean.TRUE);
+        if (loaderGeneration.get() != generation) {
+            // A loader was added while we looked and may have the class, its clear() could have come before our put
+            misses.remove(name);
+        }
+        return null;
+    }
+
+    private Class<?> loadClass(String name, String nameTemp, Iterable<CanaryClassLoader> loaders) {
+        for (CanaryClassLoader loader : loaders) {
             if (loader.getResource(nameTemp) != null) {
                 try {
                     Class<?> cls = loader.loadClass(name);
@@ -58,6 +112,56 @@ final class CanaryClassWatcher {
         return null;
     }
 
+    /**
+     * Adds a {@link CanaryClassLoader} and indexes the packages of its jar
+     *
+     * @param loader
+     *         the {@link CanaryClassLoader} to add
+     * @param url
+     *         the {@link URL} of the jar the loader reads from
+     */
+    final void addLoader(CanaryClassLoader loader, URL url) {
+        Set<String> packages = new HashSet<String>();
+        try {
+            JarFile jar = new JarFile(new File(url.toURI()));
+            try {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String entry = entries.nextElement().getName();
+                    if (entry.endsWith(".class")) {
+                        int slash = entry.lastIndexOf('/');
+                        packages.add(slash < 0 ? "" : entry.substring(0, slash).replace('/', '.'));
+                    }
+                }
+            }
+            finally {
+                jar.close();
+            }
+        }
+        catch (Exception ex) {
+            // Not a local jar, ask it for everything
+            unindexedLoaders.add(loader);
+            loaderGeneration.incrementAndGet();
+            misses.clear();
+            return;
+        }
+        packagesByLoader.put(loader, packages);
+        for (String pkg : packages) {
+            CopyOnWriteArrayList<CanaryClassLoader> loaders = loadersByPackage.get(pkg);
+            if (loaders == null) {
+                CopyOnWriteArrayList<CanaryClassLoader> created = new CopyOnWriteArrayList<CanaryClassLoader>();
+                loaders = loadersByPackage.putIfAbsent(pkg, created);
+                if (loaders == null) {
+                    loaders = created;
+                }
+            }
+            loaders.add(loader);
+        }
+        // The new jar may have what was missing so far
+        loaderGeneration.incrementAndGet();
+        misses.clear();
+    }
+
     /**
      * Adds a {@link Class} to the list of loaded classes
      *
@@ -66,8 +170,18 @@ final class CanaryClassWatcher {
      * @param cls
      *         the {@link Class} to be added
      */
-    synchronized final void addClass(CanaryClassLoader loader, Class<?> cls) {
-        loadedClasses.put(loader, cls);
+    final void addClass(CanaryClassLoader loader, Class<?> cls) {
+        Set<String> names = classesByLoader.get(loader);
+        if (names == null) {
+            Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            names = classesByLoader.putIfAbsent(loader, created);
+            if (names == null) {
+                names = created;
+            }
+        }
+        names.add(cls.getName());
+        loadedClasses.putIfAbsent(cls.getName(), cls); // First one wins
+        misses.remove(cls.getName());
     }
 
     /**
@@ -76,9 +190,25 @@ final class CanaryClassWatcher {
      * @param loader
      *         the {@link CanaryClassLoader} to remove
      */
-    synchronized final void removeLoader(CanaryClassLoader loader) {
-        if (loadedClasses.containsKey(loader)) {
-            loadedClasses.asMap().remove(loader);
+    final void removeLoader(CanaryClassLoader loader) {
+        unindexedLoaders.remove(loader);
+        Set<String> packages = packagesByLoader.remove(loader);
+        if (packages != null) {
+            for (String pkg : packages) {
+                CopyOnWriteArrayList<CanaryClassLoader> loaders = loadersByPackage.get(pkg);
+                if (loaders != null) {
+                    loaders.remove(loader);
+                }
+            }
+        }
+        Set<String> names = classesByLoader.remove(loader);
+        if (names != null) {
+            for (String name : names) {
+                Class<?> cls = loadedClasses.get(name);
+                if (cls != null && cls.getClassLoader() == loader) {
+                    loadedClasses.remove(name, cls);
+                }
+            }
         }
     }
 }
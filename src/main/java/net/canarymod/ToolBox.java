@@ -1,8 +1,5 @@
 package net.canarymod;
 
-import java.io.DataOutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -12,9 +9,7 @@ import net.canarymod.api.world.DimensionType;
 import net.canarymod.api.world.UnknownWorldException;
 import net.canarymod.api.world.World;
 import net.canarymod.config.Configuration;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import net.canarymod.user.UUIDResolver;
 
 /**
  * Set of miscellaneous tools
@@ -416,7 +411,8 @@ public class ToolBox {
     }
 
     /**
-     * Ask's Mojang's API for a UUID for a give UserName
+     * Ask's Mojang's API for a UUID for a give UserName.
+     * Answers are cached by the {@link UUIDResolver}, use it directly to look up names without blocking.
      *
      * @param username
      *         the user name to get a UUID for
@@ -431,36 +427,6 @@ public class ToolBox {
             if (p != null) return p.getUUIDString(); // player is online, so don't query the mojang API
         }
         
-        String uuid = null;
-        try {
-            URL url = new URL("https://api.mojang.com/profiles/page/1");
-            HttpURLConnection uc = (HttpURLConnection) url.openConnection();
-            uc.setRequestMethod("POST");
-            uc.setUseCaches(false);
-            uc.setDefaultUseCaches(false);
-            uc.addRequestProperty("User-Agent", "Minecraft");
-            uc.addRequestProperty("Cache-Control", "no-cache, no-store, must-revalidate");
-            uc.addRequestProperty("Pragma", "no-cache");
-            uc.setRequestProperty("Content-Type", "application/json");
-            uc.setDoOutput(true);
-            DataOutputStream wr = new DataOutputStream(uc.getOutputStream());
-            wr.writeBytes("[{\"name\":\"" + username + "\", \"agent\":\"Minecraft\"}]");
-            wr.flush();
-            wr.close();
-
-            // Parse it
-            String json = new Scanner(uc.getInputStream(), "UTF-8").useDelimiter("\\A").next();
-            JSONParser parser = new JSONParser();
-            Object obj = parser.parse(json);
-            uuid = (String) ((JSONObject) ((JSONArray) ((JSONObject) obj).get("profiles")).get(0)).get("id");
-        }
-        catch (Exception ex) {
-            Canary.log.warn("Failed to translate Username into a UUID");
-        }
-        if (uuid != null) {
-            // Add the hyphens back in
-            uuid = uuid.substring(0, 8) + "-" + uuid.substring(8, 12) + "-" + uuid.substring(12, 16) + "-" + uuid.substring(16, 20) + "-" + uuid.substring(20, 32);
-        }
-        return uuid;
+        return UUIDResolver.getInstance().resolveNow(username);
     }
 }
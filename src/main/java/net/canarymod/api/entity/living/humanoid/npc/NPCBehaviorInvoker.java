@@ -0,0 +1,22 @@
+package net.canarymod.api.entity.living.humanoid.npc;
+
+import net.canarymod.api.entity.living.humanoid.npc.ai.NPCAI;
+
+/**
+ * Internal use class that calls a {@link net.canarymod.api.entity.living.humanoid.npc.NPCBehavior} method directly.
+ * Subclasses are generated by the {@link net.canarymod.hook.DispatcherFactory}, one for each method.
+ *
+ * @author Jason (darkdiplomat)
+ */
+public abstract class NPCBehaviorInvoker {
+
+    /**
+     * Calls the method on the listener
+     *
+     * @param listener
+     *         the {@link net.canarymod.api.entity.living.humanoid.npc.NPCBehaviorListener} declaring the method
+     * @param npcai
+     *         the AI event
+     */
+    public abstract void execute(NPCBehaviorListener listener, NPCAI npcai);
+}
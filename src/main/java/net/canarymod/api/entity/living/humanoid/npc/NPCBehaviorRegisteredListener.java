@@ -2,6 +2,7 @@ package net.canarymod.api.entity.living.humanoid.npc;
 
 import net.canarymod.api.entity.living.humanoid.NonPlayableCharacter;
 import net.canarymod.api.entity.living.humanoid.npc.ai.NPCAI;
+import net.canarymod.hook.DispatcherFactory;
 import net.canarymod.hook.HookExecutionException;
 
 import java.lang.reflect.Method;
@@ -16,11 +17,32 @@ final class NPCBehaviorRegisteredListener {
     private final NPCBehaviorListener listener;
     private final NonPlayableCharacter npc;
     private final Method method;
+    private final NPCBehaviorInvoker invoker; // null if the method has to be invoked through reflection
 
     NPCBehaviorRegisteredListener(final NPCBehaviorListener listener, final NonPlayableCharacter npc, final Method method) {
         this.listener = listener;
         this.npc = npc;
         this.method = method;
+        this.invoker = DispatcherFactory.newDirectCaller(NPCBehaviorInvoker.class, method);
+        if (invoker == null) {
+            try {
+                // Skips the access check on every invoke
+                method.setAccessible(true);
+            }
+            catch (SecurityException ex) {
+                // Not allowed, invoke will do the checks then
+            }
+        }
+    }
+
+    /**
+     * Gets the {@link NPCAI} class the method handles
+     *
+     * @return the {@link NPCAI} class
+     */
+    @SuppressWarnings("unchecked")
+    final Class<? extends NPCAI> getAIClass() {
+        return (Class<? extends NPCAI>) method.getParameterTypes()[0];
     }
 
     final boolean isFor(NonPlayableCharacter npc) {
@@ -29,7 +51,12 @@ final class NPCBehaviorRegisteredListener {
 
     void execute(NPCAI npcai) {
         try {
-            method.invoke(listener, npcai);
+            if (invoker != null) {
+                invoker.execute(listener, npcai);
+            }
+            else {
+                method.invoke(listener, npcai);
+            }
         }
         catch (Throwable thrown) {
             throw new HookExecutionException(String.format("Failed to execute NPCAI (NPC:'%s' Listener:'%s')", npc, listener.getClass().getName()), thrown);
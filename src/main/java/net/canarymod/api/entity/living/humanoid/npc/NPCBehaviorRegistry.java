@@ -1,22 +1,34 @@
 package net.canarymod.api.entity.living.humanoid.npc;
 
-import com.google.common.collect.ArrayListMultimap;
 import net.canarymod.ToolBox;
 import net.canarymod.api.entity.living.humanoid.NonPlayableCharacter;
 import net.canarymod.api.entity.living.humanoid.npc.ai.NPCAI;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.canarymod.Canary.log;
 
 /**
+ * Keeps one dispatch table per {@link net.canarymod.api.entity.living.humanoid.NonPlayableCharacter},
+ * so an AI event only ever looks at the listeners of its own NPC.
+ * The tables are replaced as a whole when listeners change, dispatching does not lock.
+ *
  * @author Jason (darkdiplomat)
  */
 public final class NPCBehaviorRegistry {
-    private final static ArrayListMultimap<Class<? extends NPCAI>, NPCBehaviorRegisteredListener> registered = ArrayListMultimap.create();
+    private final static ConcurrentHashMap<NonPlayableCharacter, DispatchTable> tables = new ConcurrentHashMap<NonPlayableCharacter, DispatchTable>();
+    // Which NPCs a listener is registered to, so unregistering a listener does not have to look at every NPC
+    private final static IdentityHashMap<NPCBehaviorListener, LinkedHashSet<NonPlayableCharacter>> npcsByListener = new IdentityHashMap<NPCBehaviorListener, LinkedHashSet<NonPlayableCharacter>>();
+    private final static Object lock = new Object();
 
     /**
      * Registers a new {@link net.canarymod.api.entity.living.humanoid.npc.NPCBehaviorListener}
@@ -29,31 +41,47 @@ public final class NPCBehaviorRegistry {
      *         {@code true} to override existing keys if existant; {@code false} to error out on duplicate keys (recommended)
      */
     public static void registerNPCListener(final NPCBehaviorListener listener, final NonPlayableCharacter npc, final boolean force) {
-        synchronized (registered) {
-            Method[] methods = ToolBox.safeArrayMerge(listener.getClass().getMethods(), listener.getClass().getDeclaredMethods(), new Method[1]);
-            for (final Method method : methods) {
-                // Check if the method is a NPCBehavior handling method
-                final NPCBehavior handler = method.getAnnotation(NPCBehavior.class);
+        ArrayList<NPCBehaviorRegisteredListener> added = new ArrayList<NPCBehaviorRegisteredListener>();
+        Method[] methods = ToolBox.safeArrayMerge(listener.getClass().getMethods(), listener.getClass().getDeclaredMethods(), new Method[1]);
+        for (final Method method : methods) {
+            // Check if the method is a NPCBehavior handling method
+            final NPCBehavior handler = method.getAnnotation(NPCBehavior.class);
 
-                if (handler == null) {
-                    continue; // Next, not one of our things
-                }
-                // Check the parameters for number and type and decide if it's one
-                // that is really a handler method
-                Class<?>[] parameters = method.getParameterTypes();
+            if (handler == null) {
+                continue; // Next, not one of our things
+            }
+            // Check the parameters for number and type and decide if it's one
+            // that is really a handler method
+            Class<?>[] parameters = method.getParameterTypes();
 
-                if (parameters.length != 1) {
-                    throw new NpcAiListenerMethodConsistancyException("Amount of parameters for " + method.getName() + " is invalid. Expected 1, was " + parameters.length);
-                }
-                Class<?> npcAICls = parameters[0];
+            if (parameters.length != 1) {
+                throw new NpcAiListenerMethodConsistancyException("Amount of parameters for " + method.getName() + " is invalid. Expected 1, was " + parameters.length);
+            }
+            Class<?> npcAICls = parameters[0];
 
-                if (!NPCAI.class.isAssignableFrom(npcAICls)) {
-                    throw new NpcAiListenerMethodConsistancyException("NPCAI is not assignable from " + npcAICls.getName());
-                }
+            if (!NPCAI.class.isAssignableFrom(npcAICls)) {
+                throw new NpcAiListenerMethodConsistancyException("NPCAI is not assignable from " + npcAICls.getName());
+            }
+            added.add(new NPCBehaviorRegisteredListener(listener, npc, method));
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            DispatchTable table = tables.get(npc);
+            List<NPCBehaviorRegisteredListener> all = new ArrayList<NPCBehaviorRegisteredListener>();
+            if (table != null) {
+                Collections.addAll(all, table.all);
+            }
+            all.addAll(added);
+            tables.put(npc, new DispatchTable(all));
 
-                // We checked the class above, ignore unchecked warnings.
-                registered.put((Class<? extends NPCAI>) npcAICls, new NPCBehaviorRegisteredListener(listener, npc, method));
+            LinkedHashSet<NonPlayableCharacter> npcs = npcsByListener.get(listener);
+            if (npcs == null) {
+                npcs = new LinkedHashSet<NonPlayableCharacter>();
+                npcsByListener.put(listener, npcs);
             }
+            npcs.add(npc);
         }
     }
 
@@ -64,13 +92,27 @@ public final class NPCBehaviorRegistry {
      *         the listener to unregister
      */
     public static void unregister(NPCBehaviorListener listener) {
-        synchronized (registered) {
-            Iterator<NPCBehaviorRegisteredListener> itr = registered.values().iterator();
-            while (itr.hasNext()) {
-                NPCBehaviorRegisteredListener nbrl = itr.next();
-                if (nbrl.equals(listener)) {
-                    itr.remove();
-                    return;
+        synchronized (lock) {
+            LinkedHashSet<NonPlayableCharacter> npcs = npcsByListener.remove(listener);
+            if (npcs == null) {
+                return;
+            }
+            for (NonPlayableCharacter npc : npcs) {
+                DispatchTable table = tables.get(npc);
+                if (table == null) {
+                    continue;
+                }
+                List<NPCBehaviorRegisteredListener> remaining = new ArrayList<NPCBehaviorRegisteredListener>(table.all.length);
+                for (NPCBehaviorRegisteredListener nbrl : table.all) {
+                    if (nbrl.getListener() != listener) {
+                        remaining.add(nbrl);
+                    }
+                }
+                if (remaining.isEmpty()) {
+                    tables.remove(npc);
+                }
+                else {
+                    tables.put(npc, new DispatchTable(remaining));
                 }
             }
         }
@@ -82,12 +124,18 @@ public final class NPCBehaviorRegistry {
      * the npc associated with the listener to be unregistered
      */
     public static void unregister(NonPlayableCharacter npc) {
-        synchronized (registered) {
-            Iterator<NPCBehaviorRegisteredListener> itr = registered.values().iterator();
-            while (itr.hasNext()) {
-                NPCBehaviorRegisteredListener nbrl = itr.next();
-                if (nbrl.isFor(npc)) {
-                    itr.remove();
+        synchronized (lock) {
+            DispatchTable table = tables.remove(npc);
+            if (table == null) {
+                return;
+            }
+            for (NPCBehaviorRegisteredListener nbrl : table.all) {
+                LinkedHashSet<NonPlayableCharacter> npcs = npcsByListener.get(nbrl.getListener());
+                if (npcs != null) {
+                    npcs.remove(npc);
+                    if (npcs.isEmpty()) {
+                        npcsByListener.remove(nbrl.getListener());
+                    }
                 }
             }
         }
@@ -104,18 +152,16 @@ public final class NPCBehaviorRegistry {
      *          not registered to the given {@link NonPlayableCharacter} 
      */
     public static NPCBehaviorListener getRegisteredListener(Class<? extends NPCBehaviorListener> clazz, NonPlayableCharacter npc) {
-        NPCBehaviorListener listener = null;
-        synchronized (registered) {
-            Iterator<NPCBehaviorRegisteredListener> itr = registered.values().iterator();
-            while (itr.hasNext()) {
-                NPCBehaviorRegisteredListener nbrl = itr.next();
-                if (nbrl.isFor(npc) && clazz.equals(nbrl.getListener().getClass())) {
-                    listener = nbrl.getListener();
-                    break;
-                }
+        DispatchTable table = tables.get(npc);
+        if (table == null) {
+            return null;
+        }
+        for (NPCBehaviorRegisteredListener nbrl : table.all) {
+            if (clazz.equals(nbrl.getListener().getClass())) {
+                return nbrl.getListener();
             }
         }
-        return listener;
+        return null;
     }
     
     /**
@@ -127,13 +173,10 @@ public final class NPCBehaviorRegistry {
      */
     public static List<NPCBehaviorListener> getRegisteredListeners(NonPlayableCharacter npc) {
         List<NPCBehaviorListener> listeners = new ArrayList<NPCBehaviorListener>();
-        synchronized (registered) {
-            Iterator<NPCBehaviorRegisteredListener> itr = registered.values().iterator();
-            while (itr.hasNext()) {
-                NPCBehaviorRegisteredListener nbrl = itr.next();
-                if (nbrl.isFor(npc)) {
-                    listeners.add(nbrl.getListener());
-                }
+        DispatchTable table = tables.get(npc);
+        if (table != null) {
+            for (NPCBehaviorRegisteredListener nbrl : table.all) {
+                listeners.add(nbrl.getListener());
             }
         }
         return listeners;
@@ -147,23 +190,47 @@ public final class NPCBehaviorRegistry {
      * the AI event called
      */
     public static void execute(NonPlayableCharacter npc, NPCAI npcai) {
-        synchronized (registered) {
-            if (!registered.containsKey(npcai.getClass())) {
-                return;
+        DispatchTable table = tables.get(npc);
+        if (table == null) {
+            return;
+        }
+        NPCBehaviorRegisteredListener[] listeners = table.byAI.get(npcai.getClass());
+        if (listeners == null) {
+            return;
+        }
+        for (NPCBehaviorRegisteredListener listener : listeners) {
+            try {
+                listener.execute(npcai);
+            }
+            catch (NPCAIExcutionException npcaieex) {
+                log.error(npcaieex.getCause());
             }
+        }
+    }
 
-            Iterator<NPCBehaviorRegisteredListener> iter = registered.get(npcai.getClass()).iterator();
-            while (iter.hasNext()) {
-                NPCBehaviorRegisteredListener listener = iter.next();
-                if (listener.isFor(npc)) {
-                    try {
-                        listener.execute(npcai);
-                    }
-                    catch (NPCAIExcutionException npcaieex) {
-                        log.error(npcaieex.getCause());
-                    }
+    /**
+     * The registered methods of one NPC, never changed after creation
+     */
+    private static final class DispatchTable {
+        // In registration order
+        private final NPCBehaviorRegisteredListener[] all;
+        private final Map<Class<? extends NPCAI>, NPCBehaviorRegisteredListener[]> byAI;
+
+        DispatchTable(List<NPCBehaviorRegisteredListener> listeners) {
+            this.all = listeners.toArray(new NPCBehaviorRegisteredListener[listeners.size()]);
+            HashMap<Class<? extends NPCAI>, NPCBehaviorRegisteredListener[]> byAI = new HashMap<Class<? extends NPCAI>, NPCBehaviorRegisteredListener[]>();
+            for (NPCBehaviorRegisteredListener listener : all) {
+                NPCBehaviorRegisteredListener[] current = byAI.get(listener.getAIClass());
+                if (current == null) {
+                    current = new NPCBehaviorRegisteredListener[]{ listener };
+                }
+                else {
+                    current = Arrays.copyOf(current, current.length + 1);
+                    current[current.length - 1] = listener;
                 }
+                byAI.put(listener.getAIClass(), current);
             }
+            this.byAI = byAI;
         }
     }
 }
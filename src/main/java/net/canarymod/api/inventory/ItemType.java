@@ -1,7 +1,9 @@
 package net.canarymod.api.inventory;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map.Entry;
 
 /**
@@ -536,7 +538,21 @@ public final class ItemType {
     private final int data;
     private final boolean blockCreating;
     private final String machineName;
+    // Ids below this are looked up in the arrays, the rest in the sparse maps
+    private static final int DENSE_IDS = 4096;
+
+    // None of the tables may have an initializer, they are first used while the constants above are created
     private static HashMap<Entry<String, Integer>, ItemType> itemTypes;
+    private static ArrayList<ItemType> registered;
+    private static volatile ItemType[] all; // values() snapshot, rebuilt after a type is added
+    // First registered type per id and per (id << 4 | data) for data 0-15
+    private static volatile ItemType[] byId;
+    private static volatile ItemType[] byIdAndData;
+    private static HashMap<Integer, ItemType> sparseById;
+    private static HashMap<Long, ItemType> sparseByIdAndData;
+    // First registered type per lower case name and per lower case name and data
+    private static HashMap<String, ItemType> byName;
+    private static HashMap<Entry<String, Integer>, ItemType> byNameAndData;
 
     public ItemType(int id) {
         this(id, 0, false, "unnamed_item_" + id + "_0");
@@ -563,24 +579,83 @@ public final class ItemType {
     }
 
     public ItemType(int id, int data, boolean isBlockCreating, String machineName) {
-        if (itemTypes == null) {
-            itemTypes = new HashMap<Entry<String, Integer>, ItemType>();
-        }
         if (machineName == null) {
             throw new ItemTypeException("ItemType name cannot be null");
         }
-
-        Entry<String, Integer> uniqueType = new SimpleImmutableEntry<String, Integer>(machineName, data);
-        if (itemTypes.containsKey(uniqueType)) {
-            throw new ItemTypeException("ItemType '" + machineName + ":" + data + "' is already is registered!");
-        }
         this.id = id;
         this.data = data;
         this.blockCreating = isBlockCreating;
         this.machineName = machineName;
+        register(this);
+    }
+
+    private static synchronized void register(ItemType type) {
+        if (itemTypes == null) {
+            itemTypes = new HashMap<Entry<String, Integer>, ItemType>();
+            registered = new ArrayList<ItemType>();
+            byId = new ItemType[256];
+            byIdAndData = new ItemType[256 << 4];
+            sparseById = new HashMap<Integer, ItemType>();
+            sparseByIdAndData = new HashMap<Long, ItemType>();
+            byName = new HashMap<String, ItemType>();
+            byNameAndData = new HashMap<Entry<String, Integer>, ItemType>();
+        }
+        int id = type.id;
+        int data = type.data;
+        Entry<String, Integer> uniqueType = new SimpleImmutableEntry<String, Integer>(type.machineName, data);
+        if (itemTypes.containsKey(uniqueType)) {
+            throw new ItemTypeException("ItemType '" + type.machineName + ":" + data + "' is already is registered!");
+        }
+        itemTypes.put(uniqueType, type);
+        registered.add(type);
+        all = null;
+
+        if (id >= 0 && id < DENSE_IDS) {
+            if (id >= byId.length) {
+                int length = byId.length;
+                while (length <= id) {
+                    length <<= 1;
+                }
+                ItemType[] grownById = new ItemType[length];
+                System.arraycopy(byId, 0, grownById, 0, byId.length);
+                ItemType[] grownByIdAndData = new ItemType[length << 4];
+                System.arraycopy(byIdAndData, 0, grownByIdAndData, 0, byIdAndData.length);
+                byIdAndData = grownByIdAndData;
+                byId = grownById;
+            }
+            if (byId[id] == null) {
+                byId[id] = type;
+            }
+            if (data >= 0 && data < 16) {
+                if (byIdAndData[id << 4 | data] == null) {
+                    byIdAndData[id << 4 | data] = type;
+                }
+            }
+            else if (!sparseByIdAndData.containsKey(idAndData(id, data))) {
+                sparseByIdAndData.put(idAndData(id, data), type);
+            }
+        }
+        else {
+            if (!sparseById.containsKey(id)) {
+                sparseById.put(id, type);
+            }
+            if (!sparseByIdAndData.containsKey(idAndData(id, data))) {
+                sparseByIdAndData.put(idAndData(id, data), type);
+            }
+        }
+
+        String name = type.machineName.toLowerCase(Locale.ENGLISH);
+        if (!byName.containsKey(name)) {
+            byName.put(name, type);
+        }
+        Entry<String, Integer> nameAndData = new SimpleImmutableEntry<String, Integer>(name, data);
+        if (!byNameAndData.containsKey(nameAndData)) {
+            byNameAndData.put(nameAndData, type);
+        }
+    }
 
-        @SuppressWarnings("LeakingThisInConstructor")
-        ItemType ignored = itemTypes.put(uniqueType, this);
+    private static long idAndData(int id, int data) {
+        return (long) id << 32 | data & 0xFFFFFFFFL;
     }
 
     /**
@@ -628,13 +703,10 @@ public final class ItemType {
         if (itemTypes.containsKey(custom)) {
             return itemTypes.get(custom);
         }
-
-        for (ItemType t : itemTypes.values()) {
-            if (t.data == data && t.machineName.equalsIgnoreCase(name)) {
-                return t;
-            }
+        if (name == null) {
+            return null;
         }
-        return null;
+        return byNameAndData.get(new SimpleImmutableEntry<String, Integer>(name.toLowerCase(Locale.ENGLISH), data));
     }
 
     /**
@@ -647,12 +719,10 @@ public final class ItemType {
      * @return the ItemType if found; {@code null} if not
      */
     public static ItemType fromString(String name) {
-        for (ItemType t : itemTypes.values()) {
-            if (t.machineName.equalsIgnoreCase(name)) {
-                return t;
-            }
+        if (name == null) {
+            return null;
         }
-        return null;
+        return byName.get(name.toLowerCase(Locale.ENGLISH));
     }
 
     /**
@@ -665,12 +735,11 @@ public final class ItemType {
      * @return the ItemType if found; {@code null} if not
      */
     public static ItemType fromId(int id) {
-        for (ItemType type : itemTypes.values()) {
-            if (type.id == id) {
-                return type;
-            }
+        if (id >= 0 && id < DENSE_IDS) {
+            ItemType[] table = byId;
+            return id < table.length ? table[id] : null;
         }
-        return null;
+        return sparseById.get(id);
     }
 
     /**
@@ -685,12 +754,16 @@ public final class ItemType {
      * @return the ItemType if found; {@code null} if not
      */
     public static ItemType fromIdAndData(int id, int data) {
-        for (ItemType type : itemTypes.values()) {
-            if (type.id == id && type.data == data) {
-                return type;
-            }
+        ItemType type;
+        if (id >= 0 && id < DENSE_IDS && data >= 0 && data < 16) {
+            ItemType[] table = byIdAndData;
+            int index = id << 4 | data;
+            type = index < table.length ? table[index] : null;
         }
-        return fromId(id);
+        else {
+            type = sparseByIdAndData.get(idAndData(id, data));
+        }
+        return type != null ? type : fromId(id);
     }
 
     /**
@@ -709,13 +782,11 @@ public final class ItemType {
         if (itemTypes.containsKey(needle)) {
             return itemTypes.get(needle);
         }
-
-        for (ItemType type : itemTypes.values()) {
-            if (type.data == data && type.machineName.equalsIgnoreCase(machineName)) {
-                return type;
-            }
+        if (machineName == null) {
+            return null;
         }
-        return fromString(machineName);
+        ItemType type = byNameAndData.get(new SimpleImmutableEntry<String, Integer>(machineName.toLowerCase(Locale.ENGLISH), data));
+        return type != null ? type : fromString(machineName);
     }
 
     /**
@@ -746,11 +817,21 @@ public final class ItemType {
     }
 
     /**
-     * Gets an array of all ItemTypes
+     * Gets an array of all ItemTypes, in the order they were created.
+     * The array is shared between calls until a new ItemType is added, it must not be modified.
      *
      * @return all ItemTypes
      */
     public static ItemType[] values() {
-        return itemTypes.values().toArray(new ItemType[itemTypes.size()]);
+        ItemType[] values = all;
+        if (values == null) {
+            synchronized (ItemType.class) {
+                if (all == null) {
+                    all = registered.toArray(new ItemType[registered.size()]);
+                }
+                values = all;
+            }
+        }
+        return values;
     }
 }
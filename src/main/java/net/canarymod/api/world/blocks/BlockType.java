@@ -1,7 +1,9 @@
 package net.canarymod.api.world.blocks;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map.Entry;
 
 /**
@@ -343,7 +345,21 @@ public final class BlockType {
     private final short data;
     private final String machineName;
 
+    // Ids below this are looked up in the arrays, the rest in the sparse maps
+    private static final int DENSE_IDS = 4096;
+
+    // None of the tables may have an initializer, they are first used while the constants above are created
     private static HashMap<Entry<String, Integer>, BlockType> blockTypes;
+    private static ArrayList<BlockType> registered;
+    private static volatile BlockType[] all; // values() snapshot, rebuilt after a type is added
+    // First registered type per id and per (id << 4 | data) for data 0-15
+    private static volatile BlockType[] byId;
+    private static volatile BlockType[] byIdAndData;
+    private static HashMap<Integer, BlockType> sparseById;
+    private static HashMap<Long, BlockType> sparseByIdAndData;
+    // First registered type per lower case name and per lower case name and data
+    private static HashMap<String, BlockType> byName;
+    private static HashMap<Entry<String, Integer>, BlockType> byNameAndData;
 
     public BlockType(int id, String machineName) {
         this(id, 0, "canarymod:" + machineName);
@@ -367,25 +383,84 @@ public final class BlockType {
      *         the block's machine name (new-style ID)
      */
     public BlockType(int id, int data, String machineName) {
-        if (blockTypes == null) {
-            blockTypes = new HashMap<Entry<String, Integer>, BlockType>();
-        }
         if (machineName == null) {
             throw new CustomBlockTypeException("BlockType name cannot be null!");
         }
         this.id = (short) id;
         this.data = (short) data;
         this.machineName = machineName;
-        Entry<String, Integer> uniqueType = new SimpleImmutableEntry<String, Integer>(machineName, data);
-        if (!blockTypes.containsKey(uniqueType)) {
-            @SuppressWarnings("LeakingThisInConstructor")
-            BlockType ignored = blockTypes.put(uniqueType, this);
+        register(this);
+    }
+
+    private static synchronized void register(BlockType type) {
+        if (blockTypes == null) {
+            blockTypes = new HashMap<Entry<String, Integer>, BlockType>();
+            registered = new ArrayList<BlockType>();
+            byId = new BlockType[256];
+            byIdAndData = new BlockType[256 << 4];
+            sparseById = new HashMap<Integer, BlockType>();
+            sparseByIdAndData = new HashMap<Long, BlockType>();
+            byName = new HashMap<String, BlockType>();
+            byNameAndData = new HashMap<Entry<String, Integer>, BlockType>();
+        }
+        int id = type.id;
+        int data = type.data;
+        Entry<String, Integer> uniqueType = new SimpleImmutableEntry<String, Integer>(type.machineName, data);
+        if (blockTypes.containsKey(uniqueType)) {
+            throw new CustomBlockTypeException("BlockType '" + type.machineName + ":" + data + "' already exists!");
+        }
+        blockTypes.put(uniqueType, type);
+        registered.add(type);
+        all = null;
+
+        if (id >= 0 && id < DENSE_IDS) {
+            if (id >= byId.length) {
+                int length = byId.length;
+                while (length <= id) {
+                    length <<= 1;
+                }
+                BlockType[] grownById = new BlockType[length];
+                System.arraycopy(byId, 0, grownById, 0, byId.length);
+                BlockType[] grownByIdAndData = new BlockType[length << 4];
+                System.arraycopy(byIdAndData, 0, grownByIdAndData, 0, byIdAndData.length);
+                byIdAndData = grownByIdAndData;
+                byId = grownById;
+            }
+            if (byId[id] == null) {
+                byId[id] = type;
+            }
+            if (data >= 0 && data < 16) {
+                if (byIdAndData[id << 4 | data] == null) {
+                    byIdAndData[id << 4 | data] = type;
+                }
+            }
+            else if (!sparseByIdAndData.containsKey(idAndData(id, data))) {
+                sparseByIdAndData.put(idAndData(id, data), type);
+            }
         }
         else {
-            throw new CustomBlockTypeException("BlockType '" + machineName + ":" + data + "' already exists!");
+            if (!sparseById.containsKey(id)) {
+                sparseById.put(id, type);
+            }
+            if (!sparseByIdAndData.containsKey(idAndData(id, data))) {
+                sparseByIdAndData.put(idAndData(id, data), type);
+            }
+        }
+
+        String name = type.machineName.toLowerCase(Locale.ENGLISH);
+        if (!byName.containsKey(name)) {
+            byName.put(name, type);
+        }
+        Entry<String, Integer> nameAndData = new SimpleImmutableEntry<String, Integer>(name, data);
+        if (!byNameAndData.containsKey(nameAndData)) {
+            byNameAndData.put(nameAndData, type);
         }
     }
 
+    private static long idAndData(int id, int data) {
+        return (long) id << 32 | data & 0xFFFFFFFFL;
+    }
+
     /**
      * Get the ID of this BlockType
      *
@@ -442,12 +517,10 @@ public final class BlockType {
     public static BlockType getCustomBlockType(String name, int data) {
         Entry<String, Integer> custom = new SimpleImmutableEntry<String, Integer>(name, data);
         if (!blockTypes.containsKey(custom)) {
-            for (BlockType t : blockTypes.values()) {
-                if (t.data == data && t.machineName.equalsIgnoreCase(name)) {
-                    return t;
-                }
+            if (name == null) {
+                return null;
             }
-            return null;
+            return byNameAndData.get(new SimpleImmutableEntry<String, Integer>(name.toLowerCase(Locale.ENGLISH), data));
         }
         return blockTypes.get(custom);
     }
@@ -462,12 +535,11 @@ public final class BlockType {
      * @return the associated {@link BlockType} or {@code null}
      */
     public static BlockType fromId(int id) {
-        for (BlockType t : blockTypes.values()) {
-            if (t.id == id) {
-                return t;
-            }
+        if (id >= 0 && id < DENSE_IDS) {
+            BlockType[] table = byId;
+            return id < table.length ? table[id] : null;
         }
-        return null;
+        return sparseById.get(id);
     }
 
     /**
@@ -482,12 +554,16 @@ public final class BlockType {
      * @return the associated {@link BlockType} or {@code null}
      */
     public static BlockType fromIdAndData(int id, int data) {
-        for (BlockType t : blockTypes.values()) {
-            if (t.id == id && t.data == data) {
-                return t;
-            }
+        BlockType type;
+        if (id >= 0 && id < DENSE_IDS && data >= 0 && data < 16) {
+            BlockType[] table = byIdAndData;
+            int index = id << 4 | data;
+            type = index < table.length ? table[index] : null;
+        }
+        else {
+            type = sparseByIdAndData.get(idAndData(id, data));
         }
-        return fromId(id); // if data has bit's set, it won't perfectly equal
+        return type != null ? type : fromId(id); // if data has bit's set, it won't perfectly equal
     }
 
     /**
@@ -500,12 +576,10 @@ public final class BlockType {
      * @return the associated {@link BlockType} or {@code null}
      */
     public static BlockType fromString(String name) {
-        for (BlockType t : blockTypes.values()) {
-            if (t.machineName.equalsIgnoreCase(name)) {
-                return t;
-            }
+        if (name == null) {
+            return null;
         }
-        return null;
+        return byName.get(name.toLowerCase(Locale.ENGLISH));
     }
 
     /**
@@ -522,23 +596,32 @@ public final class BlockType {
     public static BlockType fromStringAndData(String machineName, int data) {
         Entry<String, Integer> needle = new SimpleImmutableEntry<String, Integer>(machineName, data);
         if (!blockTypes.containsKey(needle)) {
-            for (BlockType t : blockTypes.values()) {
-                if (t.data == data && t.machineName.equalsIgnoreCase(machineName)) {
-                    return t;
-                }
+            if (machineName == null) {
+                return null;
             }
-            return fromString(machineName); // Some blocks have data values that aren't reflected in the typing (like positioning meta)
+            BlockType type = byNameAndData.get(new SimpleImmutableEntry<String, Integer>(machineName.toLowerCase(Locale.ENGLISH), data));
+            return type != null ? type : fromString(machineName); // Some blocks have data values that aren't reflected in the typing (like positioning meta)
         }
         return blockTypes.get(needle);
     }
 
     /**
-     * Gets an array of all BlockTypes.
+     * Gets an array of all BlockTypes, in the order they were created.
+     * The array is shared between calls until a new BlockType is added, it must not be modified.
      *
      * @return all BlockTypes
      */
     public static BlockType[] values() {
-        return blockTypes.values().toArray(new BlockType[blockTypes.size()]);
+        BlockType[] values = all;
+        if (values == null) {
+            synchronized (BlockType.class) {
+                if (all == null) {
+                    all = registered.toArray(new BlockType[registered.size()]);
+                }
+                values = all;
+            }
+        }
+        return values;
     }
 
 }
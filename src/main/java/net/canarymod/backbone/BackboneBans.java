@@ -74,7 +74,7 @@ public class BackboneBans extends Backbone {
     }
 
     /**
-     * Lift a ban that was issued for the player with the given uuid
+     * Lift all bans that were issued for the player with the given uuid
      *
      * @param uuid
      *         Player uuid to unban.
@@ -83,7 +83,7 @@ public class BackboneBans extends Backbone {
         try {
             HashMap<String, Object> filter = new HashMap<String, Object>();
             filter.put("uuid", uuid);
-            Database.get().remove(schema, filter);
+            Database.get().removeAll(schema, filter);
         }
         catch (DatabaseWriteException e) {
             log.error(e.getMessage(), e);
@@ -91,7 +91,7 @@ public class BackboneBans extends Backbone {
     }
 
     /**
-     * Lift an IP ban.
+     * Lift all bans on an IP.
      *
      * @param subject
      *         IP Address to unban.
@@ -100,7 +100,7 @@ public class BackboneBans extends Backbone {
         try {
             HashMap<String, Object> filter = new HashMap<String, Object>();
             filter.put("ip", subject);
-            Database.get().remove(schema, filter);
+            Database.get().removeAll(schema, filter);
         }
         catch (DatabaseWriteException e) {
             log.error(e.getMessage(), e);
@@ -3,6 +3,7 @@ package net.canarymod.backbone;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.canarymod.Canary;
@@ -18,6 +19,7 @@ import net.canarymod.permissionsystem.MultiworldPermissionProvider;
 import net.canarymod.permissionsystem.PermissionNode;
 import net.canarymod.permissionsystem.PermissionProvider;
 import net.canarymod.user.Group;
+import net.canarymod.user.UUIDResolver;
 
 /**
  * Backbone to the permissions System. This contains NO logic, it is only the
@@ -123,41 +125,7 @@ public class BackbonePermissions extends Backbone {
      *         Group to save permission from to the database.
      */
     public void saveGroupPermissions(Group g) {
-        PermissionProvider permissions = g.getPermissionProvider();
-        List<PermissionNode> permissionList = permissions.getPermissionMap();
-        HashMap<String, Object> filter = new HashMap<String, Object>();
-
-        try {
-            for (PermissionNode node : permissionList) {
-                ArrayList<PermissionNode> childs = new ArrayList<PermissionNode>();
-
-                for (PermissionNode child : permissions.getChildNodes(node, childs)) {
-                    PermissionDataAccess data = new PermissionDataAccess(g.getWorldName());
-                    filter.clear();
-                    filter.put("id", child.getId());
-                    Database.get().load(data, filter);
-                    if (data.hasData()) {
-                        data.path = child.getFullPath();
-                        data.value = child.getValue();
-                        Database.get().update(data, filter);
-                    }
-                    else {
-                        data.owner = g.getName();
-                        data.path = child.getFullPath();
-                        data.type = "group";
-                        data.value = child.getValue();
-                        Database.get().insert(data);
-                    }
-                }
-            }
-        }
-        catch (DatabaseWriteException e) {
-            log.error(e.getMessage(), e);
-        }
-        catch (DatabaseReadException e) {
-            log.error(e.getMessage(), e);
-        }
-
+        savePermissions(g.getPermissionProvider(), g.getName(), "group", g.getWorldName());
     }
 
     /**
@@ -168,32 +136,86 @@ public class BackbonePermissions extends Backbone {
      */
     public void saveUserPermissions(Player p) {
         PermissionProvider permissions = p.getPermissionProvider();
-        List<PermissionNode> permissionList = permissions.getPermissionMap();
+        savePermissions(permissions, p.getUUIDString(), "player", permissions.getWorld());
+    }
+
+    /**
+     * Writes the nodes of a provider to the database.
+     * All stored nodes of the subject are loaded with one query and compared to the provider,
+     * only new and changed nodes are written, in one batch each.
+     *
+     * @param permissions
+     *         the provider to save
+     * @param owner
+     *         group name or player uuid
+     * @param type
+     *         "player" or "group"
+     * @param world
+     *         the fully qualified world name, null for the global permissions table
+     */
+    private void savePermissions(PermissionProvider permissions, String owner, String type, String world) {
+        HashMap<Integer, PermissionDataAccess> byId = new HashMap<Integer, PermissionDataAccess>();
+        HashMap<String, PermissionDataAccess> byPath = new HashMap<String, PermissionDataAccess>();
+        ArrayList<DataAccess> stored = new ArrayList<DataAccess>();
         HashMap<String, Object> filter = new HashMap<String, Object>();
+        filter.put("owner", owner);
+        filter.put("type", type);
 
         try {
-            for (PermissionNode node : permissionList) {
+            Database.get().loadAll(new PermissionDataAccess(world), stored, filter);
+            for (DataAccess da : stored) {
+                PermissionDataAccess data = (PermissionDataAccess) da;
+                byId.put(data.id, data);
+                if (!byPath.containsKey(data.path)) {
+                    byPath.put(data.path, data);
+                }
+            }
+
+            List<DataAccess> updates = new ArrayList<DataAccess>();
+            List<Map<String, Object>> updateFilters = new ArrayList<Map<String, Object>>();
+            List<DataAccess> inserts = new ArrayList<DataAccess>();
+            for (PermissionNode node : permissions.getPermissionMap()) {
                 ArrayList<PermissionNode> childs = new ArrayList<PermissionNode>();
 
                 for (PermissionNode child : permissions.getChildNodes(node, childs)) {
-                    PermissionDataAccess data = new PermissionDataAccess(permissions.getWorld());
-                    filter.clear();
-                    filter.put("id", child.getId());
-                    Database.get().load(data, filter);
-                    if (data.hasData()) {
-                        data.path = child.getFullPath();
-                        data.value = child.getValue();
-                        Database.get().update(data, filter);
+                    String path = child.getFullPath();
+                    PermissionDataAccess data = byId.get(child.getId());
+                    if (data == null) {
+                        // Not saved under its id yet, it may still be stored already
+                        data = byPath.get(path);
+                        if (data != null && data.id != null) {
+                            child.setId(data.id);
+                        }
+                    }
+                    if (data != null) {
+                        if (!path.equals(data.path) || child.getValue() != data.value) {
+                            data.path = path;
+                            data.value = child.getValue();
+                            if (data.id != null) { // Otherwise it's queued for insertion already
+                                HashMap<String, Object> idFilter = new HashMap<String, Object>();
+                                idFilter.put("id", data.id);
+                                updates.add(data);
+                                updateFilters.add(idFilter);
+                            }
+                        }
                     }
                     else {
-                        data.owner = p.getUUIDString();
-                        data.path = child.getFullPath();
-                        data.type = "player";
+                        data = new PermissionDataAccess(world);
+                        data.owner = owner;
+                        data.path = path;
+                        data.type = type;
                         data.value = child.getValue();
-                        Database.get().insert(data);
+                        inserts.add(data);
+                        byPath.put(path, data);
                     }
                 }
             }
+            if (!updates.isEmpty()) {
+                Database.get().updateBatch(updates, updateFilters);
+            }
+            if (!inserts.isEmpty()) {
+                Database.get().insertBatch(inserts);
+            }
         }
         catch (DatabaseWriteException e) {
             log.error(e.getMessage(), e);
@@ -439,6 +461,15 @@ public class BackbonePermissions extends Backbone {
             HashMap<String, Object> filter = new HashMap<String, Object>();
             filter.put("type", "player");
             Database.get().loadAll(new PermissionDataAccess(world), dataList, filter);
+            // Look the names up in batches first, the single lookups below are answered from the cache then
+            ArrayList<String> names = new ArrayList<String>();
+            for (DataAccess da : dataList) {
+                PermissionDataAccess data = (PermissionDataAccess) da;
+                if (!ToolBox.isUUID(data.owner)) {
+                    names.add(data.owner);
+                }
+            }
+            UUIDResolver.getInstance().resolveAllNow(names);
             for (DataAccess da : dataList) {
                 PermissionDataAccess data = (PermissionDataAccess) da;
 
@@ -5,9 +5,11 @@ import net.canarymod.api.OfflinePlayer;
 import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.database.DataAccess;
 import net.canarymod.database.Database;
+import net.canarymod.database.RowHandler;
 import net.canarymod.database.exceptions.DatabaseReadException;
 import net.canarymod.database.exceptions.DatabaseWriteException;
 import net.canarymod.user.Group;
+import net.canarymod.user.UUIDResolver;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -244,20 +246,23 @@ public class BackboneUsers extends Backbone {
      * a prefix and group for a player, in that order.
      */
     public Map<String, String[]> loadUsers() {
-        Map<String, String[]> players = new HashMap<String, String[]>();
-        List<DataAccess> daos = new ArrayList<DataAccess>();
+        final Map<String, String[]> players = new HashMap<String, String[]>();
 
         try {
-            Database.get().loadAll(schema, daos, new HashMap<String, Object>());
-            for (DataAccess dao : daos) {
-                PlayerDataAccess data = (PlayerDataAccess) dao;
-                String[] row = new String[3];
-
-                row[0] = data.prefix;
-                row[1] = data.group;
-                row[2] = Boolean.toString(data.isMuted);
-                players.put(data.uuid == null ? "" : data.uuid, row);
-            }
+            // Only the values are kept, so one instance will do for all rows
+            Database.get().stream(schema, new HashMap<String, Object>(), true, new RowHandler() {
+                @Override
+                public boolean handle(DataAccess dao) {
+                    PlayerDataAccess data = (PlayerDataAccess) dao;
+                    String[] row = new String[3];
+
+                    row[0] = data.prefix;
+                    row[1] = data.group;
+                    row[2] = Boolean.toString(data.isMuted);
+                    players.put(data.uuid == null ? "" : data.uuid, row);
+                    return true;
+                }
+            });
             return players;
         }
         catch (DatabaseReadException e) {
@@ -331,26 +336,40 @@ public class BackboneUsers extends Backbone {
      * entry does not, it attempts to retrieve it from Mojang's web service and
      */
     public void validateUsers() {
-        List<DataAccess> daos = new ArrayList<DataAccess>();
+        final List<PlayerDataAccess> invalid = new ArrayList<PlayerDataAccess>();
 
         try {
-            Database.get().loadAll(schema, daos, new HashMap<String, Object>());
-            for (DataAccess dao : daos) {
-                PlayerDataAccess data = (PlayerDataAccess) dao;
-                if (data.uuid != null && !data.uuid.trim().equals("")) continue;
-                    String uuid = ToolBox.usernameToUUID(data.name);
-                    data.uuid = uuid == null ? "" : uuid;
-                    HashMap<String, Object> filter = new HashMap<String, Object>();
-                    filter.put("name", data.name);
-                    try {
-                        Database.get().update(data, filter);
-                    } catch (DatabaseWriteException e) {
-                        log.error(e.getMessage(), e);
+            // Only the few rows without UUID are kept, they are fixed once the stream is done
+            Database.get().stream(schema, new HashMap<String, Object>(), false, new RowHandler() {
+                @Override
+                public boolean handle(DataAccess dao) {
+                    PlayerDataAccess data = (PlayerDataAccess) dao;
+                    if (data.uuid == null || data.uuid.trim().equals("")) {
+                        invalid.add(data);
                     }
-            }
+                    return true;
+                }
+            });
         }
         catch (DatabaseReadException e) {
             log.error(e.getMessage(), e);
         }
+        // Look the names up in batches first, the single lookups below are answered from the cache then
+        ArrayList<String> names = new ArrayList<String>(invalid.size());
+        for (PlayerDataAccess data : invalid) {
+            names.add(data.name);
+        }
+        UUIDResolver.getInstance().resolveAllNow(names);
+        for (PlayerDataAccess data : invalid) {
+            String uuid = ToolBox.usernameToUUID(data.name);
+            data.uuid = uuid == null ? "" : uuid;
+            HashMap<String, Object> filter = new HashMap<String, Object>();
+            filter.put("name", data.name);
+            try {
+                Database.get().update(data, filter);
+            } catch (DatabaseWriteException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
     }
 }
@@ -1,26 +1,52 @@
 package net.canarymod.bansystem;
 
+import net.canarymod.Canary;
 import net.canarymod.ToolBox;
 import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.backbone.BackboneBans;
+import net.canarymod.tasks.ServerTask;
+import net.canarymod.tasks.ServerTaskManager;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.canarymod.Canary.log;
 
 /**
  * Used to issue bans
+ * <p/>
+ * Bans are indexed by UUID, IP and name, lookups don't need to lock or look at other bans.
+ * Temporary bans are lifted by a task once a minute after they expired, or earlier if they are looked up.
  *
  * @author Chris (damagefilter)
  */
 public class BanManager {
     private BackboneBans backbone;
-    private List<Ban> bans = new ArrayList<Ban>();
+    // All bans in the order they were added, guarded by this
+    private final LinkedHashSet<Ban> bans = new LinkedHashSet<Ban>();
+    // Lower case UUID, IP and lower case name to the bans for it, the arrays are replaced on change
+    private final ConcurrentHashMap<String, Ban[]> byUUID = new ConcurrentHashMap<String, Ban[]>();
+    private final ConcurrentHashMap<String, Ban[]> byIp = new ConcurrentHashMap<String, Ban[]>();
+    private final ConcurrentHashMap<String, Ban[]> byName = new ConcurrentHashMap<String, Ban[]>();
+    // Temporary bans by expiry, guarded by this
+    private final PriorityQueue<Expiry> expiries = new PriorityQueue<Expiry>();
+    // Unix timestamp of the first expiry in the queue
+    private volatile long nextExpiry = Long.MAX_VALUE;
 
     public BanManager() {
         backbone = new BackboneBans();
-        bans = backbone.loadBans();
+        load();
+        if (Canary.instance() != null) {
+            ServerTaskManager.addTask(new ServerTask(Canary.instance(), 1200, true) {
+                @Override
+                public void run() {
+                    liftExpired();
+                }
+            });
+        }
     }
 
     /**
@@ -34,7 +60,7 @@ public class BanManager {
     public void issueBan(Player player, String reason) {
         Ban ban = new Ban(player, reason, false);
 
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -45,7 +71,7 @@ public class BanManager {
      *         the {@link Ban} to be issued
      */
     public void issueBan(Ban ban) {
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -73,7 +99,7 @@ public class BanManager {
         }
         Ban ban = new Ban(player, reason, ToolBox.getUnixTimestamp() + timeToAdd, false);
 
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -88,7 +114,7 @@ public class BanManager {
     public void issueIpBan(Player player, String reason) {
         Ban ban = new Ban(player, reason, true);
 
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -115,7 +141,7 @@ public class BanManager {
         }
         Ban ban = new Ban(player, reason, ToolBox.getUnixTimestamp() + timeToAdd, true);
 
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -123,7 +149,7 @@ public class BanManager {
 
         Ban ban = new Ban(player, reason, ToolBox.getUnixTimestamp() + bantime, false);
 
-        bans.add(ban);
+        add(ban);
         backbone.addBan(ban);
     }
 
@@ -137,34 +163,19 @@ public class BanManager {
      * @return {@code true} if banned; {@code false} if not
      */
     public boolean isBanned(String subject) {
-        Ban test = null;
-
-        for (Ban b : bans) {
-            if (b.getUUID().equals(subject)) {
-                test = b;
-                break;
-            }
-            else if (b.getIp().equals(subject)) {
-                test = b;
-                break;
-            }
-        }
-        if (test == null) {
-            return false;
-        }
-        else if (test.isExpired()) {
-            if (test.isIpBan()) {
-                backbone.liftIpBan(test.getIp());
-            }
-            else {
-                backbone.liftBan(test.getUUID());
-            }
-            bans.remove(test);
+        liftExpiredIfDue();
+        Ban[] byId = byUUID.get(subject.toLowerCase(Locale.ENGLISH));
+        Ban[] byAddress = byIp.get(subject);
+        if (byId == null && byAddress == null) {
             return false;
         }
-        else {
+        if (hasActive(byId) || hasActive(byAddress)) {
             return true;
         }
+        // Everything found is expired
+        liftExpired(byId);
+        liftExpired(byAddress);
+        return false;
     }
 
     /**
@@ -176,12 +187,8 @@ public class BanManager {
      * @return {@code true} if banned; {@code false} if not
      */
     public boolean isIpBanned(String ip) {
-        for (Ban b : bans) {
-            if (b.getIp().equals(ip)) {
-                return true;
-            }
-        }
-        return false;
+        liftExpiredIfDue();
+        return hasActive(byIp.get(ip));
     }
 
     /**
@@ -193,12 +200,9 @@ public class BanManager {
      * @return the Ban if exists; {@code null} otherwise
      */
     public Ban getBanFromName(String player) {
-        for (Ban b : bans) {
-            if (b.getSubject().equalsIgnoreCase(player)) {
-                return b;
-            }
-        }
-        return null;
+        liftExpiredIfDue();
+        Ban[] found = byName.get(player.toLowerCase(Locale.ENGLISH));
+        return found != null ? found[0] : null;
     }
 
     /**
@@ -210,12 +214,9 @@ public class BanManager {
      * @return the Ban if exists; {@code null} otherwise
      */
     public Ban getBan(String uuid) {
-        for (Ban b : bans) {
-            if (b.getUUID().equalsIgnoreCase(uuid)) {
-                return b;
-            }
-        }
-        return null;
+        liftExpiredIfDue();
+        Ban[] found = byUUID.get(uuid.toLowerCase(Locale.ENGLISH));
+        return found != null ? found[0] : null;
     }
 
     /**
@@ -225,28 +226,13 @@ public class BanManager {
      *         the uuid/ip of the subject
      */
     public void unban(String subject) {
-        Ban test = null;
-
-        for (Ban b : bans) {
-            if (b.getUUID().equals(subject)) {
-                test = b;
-                break;
-            }
-            else if (b.getIp().equals(subject)) {
-                test = b;
-                break;
-            }
+        Ban[] found = byUUID.get(subject.toLowerCase(Locale.ENGLISH));
+        if (found == null) {
+            found = byIp.get(subject);
         }
-        if (test == null) {
-            return;
-        }
-        if (test.isIpBan()) {
-            backbone.liftIpBan(test.getIp());
-        }
-        else {
-            backbone.liftBan(test.getUUID());
+        if (found != null) {
+            lift(found[0]);
         }
-        bans.remove(test);
     }
 
     /**
@@ -256,21 +242,16 @@ public class BanManager {
      *         the {@link Player} to unban
      */
     public void unban(Player player) {
-        Ban test = null;
-
-        for (Ban b : bans) {
+        Ban[] found = byUUID.get(player.getUUIDString().toLowerCase(Locale.ENGLISH));
+        if (found == null) {
+            return;
+        }
+        for (Ban b : found) {
             if (!b.isIpBan()) {
-                if (b.getUUID().equals(player.getUUID())) {
-                    test = b;
-                    break;
-                }
+                lift(b);
+                return;
             }
         }
-        if (test == null) {
-            return;
-        }
-        backbone.liftBan(test.getUUID());
-        bans.remove(test);
     }
 
     /**
@@ -278,10 +259,9 @@ public class BanManager {
      *
      * @return an Array of {@link Ban}(s)
      */
-    public Ban[] getAllBans() {
-        Ban[] retT = { };
-
-        return bans.toArray(retT);
+    public synchronized Ban[] getAllBans() {
+        liftExpiredIfDue();
+        return bans.toArray(new Ban[bans.size()]);
     }
 
     /**
@@ -319,7 +299,177 @@ public class BanManager {
 
     /** Reloads the bans from datasource */
     public void reload() {
+        load();
+    }
+
+    private synchronized void load() {
         bans.clear();
-        bans = backbone.loadBans();
+        byUUID.clear();
+        byIp.clear();
+        byName.clear();
+        expiries.clear();
+        nextExpiry = Long.MAX_VALUE;
+        for (Ban ban : backbone.loadBans()) {
+            add(ban);
+        }
+    }
+
+    private synchronized void add(Ban ban) {
+        bans.add(ban);
+        if (ban.getUUID() != null) {
+            index(byUUID, ban.getUUID().toLowerCase(Locale.ENGLISH), ban);
+        }
+        if (ban.getIp() != null) {
+            index(byIp, ban.getIp(), ban);
+        }
+        if (ban.getSubject() != null) {
+            index(byName, ban.getSubject().toLowerCase(Locale.ENGLISH), ban);
+        }
+        if (ban.getTimestamp() != -1) {
+            expiries.add(new Expiry(ban));
+            nextExpiry = expiries.peek().timestamp;
+        }
+    }
+
+    private synchronized void remove(Ban ban) {
+        if (!bans.remove(ban)) {
+            return;
+        }
+        if (ban.getUUID() != null) {
+            unindex(byUUID, ban.getUUID().toLowerCase(Locale.ENGLISH), ban);
+        }
+        if (ban.getIp() != null) {
+            unindex(byIp, ban.getIp(), ban);
+        }
+        if (ban.getSubject() != null) {
+            unindex(byName, ban.getSubject().toLowerCase(Locale.ENGLISH), ban);
+        }
+        // Stale entries in the expiry queue are skipped when they come up
+    }
+
+    private static void index(ConcurrentHashMap<String, Ban[]> index, String key, Ban ban) {
+        Ban[] current = index.get(key);
+        if (current == null) {
+            index.put(key, new Ban[]{ ban });
+        }
+        else {
+            Ban[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = ban;
+            index.put(key, grown);
+        }
+    }
+
+    private static void unindex(ConcurrentHashMap<String, Ban[]> index, String key, Ban ban) {
+        Ban[] current = index.get(key);
+        if (current == null) {
+            return;
+        }
+        Ban[] shrunk = new Ban[current.length - 1];
+        int i = 0;
+        for (Ban b : current) {
+            if (b != ban) {
+                if (i == shrunk.length) {
+                    return; // Not in there
+                }
+                shrunk[i++] = b;
+            }
+        }
+        if (shrunk.length == 0) {
+            index.remove(key);
+        }
+        else {
+            index.put(key, shrunk);
+        }
+    }
+
+    private static boolean hasActive(Ban[] found) {
+        if (found != null) {
+            for (Ban b : found) {
+                if (!b.isExpired()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lifts a ban in the database and drops every ban from memory that the database lift removed as well,
+     * an IP ban is lifted for all bans on the IP, any other for all bans on the UUID
+     *
+     * @param ban
+     *         the {@link Ban} to lift
+     */
+    private synchronized void lift(Ban ban) {
+        if (!bans.contains(ban)) {
+            return; // Lifted already
+        }
+        Ban[] affected;
+        if (ban.isIpBan()) {
+            backbone.liftIpBan(ban.getIp());
+            affected = byIp.get(ban.getIp());
+        }
+        else {
+            backbone.liftBan(ban.getUUID());
+            affected = ban.getUUID() != null ? byUUID.get(ban.getUUID().toLowerCase(Locale.ENGLISH)) : null;
+        }
+        remove(ban);
+        if (affected != null) {
+            for (Ban b : affected) {
+                remove(b);
+            }
+        }
+    }
+
+    private void liftExpired(Ban[] found) {
+        if (found != null) {
+            for (Ban b : found) {
+                if (b.isExpired()) {
+                    lift(b);
+                }
+            }
+        }
+    }
+
+    private void liftExpiredIfDue() {
+        if (System.currentTimeMillis() / 1000L >= nextExpiry) {
+            liftExpired();
+        }
+    }
+
+    /** Lifts all temporary bans that have expired */
+    private synchronized void liftExpired() {
+        long now = System.currentTimeMillis() / 1000L;
+        while (!expiries.isEmpty() && expiries.peek().timestamp <= now) {
+            Ban ban = expiries.poll().ban;
+            if (!bans.contains(ban)) {
+                continue; // Lifted already
+            }
+            if (ban.isExpired()) {
+                lift(ban);
+            }
+            else if (ban.getTimestamp() != -1) {
+                expiries.add(new Expiry(ban)); // The time was changed after it was issued
+            }
+        }
+        nextExpiry = expiries.isEmpty() ? Long.MAX_VALUE : expiries.peek().timestamp;
+    }
+
+    /**
+     * A temporary ban in the expiry queue, with its expiry as it was when queued
+     */
+    private static final class Expiry implements Comparable<Expiry> {
+        private final long timestamp;
+        private final Ban ban;
+
+        Expiry(Ban ban) {
+            this.timestamp = ban.getTimestamp();
+            this.ban = ban;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return timestamp < other.timestamp ? -1 : timestamp == other.timestamp ? 0 : 1;
+        }
     }
 }
@@ -98,6 +98,7 @@ public class CommandList implements CommandListener {
         temp.put("playerinfo", new PlayerInformation());
         temp.put("sysinfo", new SystemInformation());
         temp.put("uptime", new Uptime());
+        temp.put("hookprofile", new HookProfileCommand());
         temp.put("loadworld", new LoadWorldCommand());
         temp.put("createworld", new CreateWorldCommand());
         natives = Collections.unmodifiableMap(temp);
@@ -890,6 +891,22 @@ public class CommandList implements CommandListener {
         natives.get("uptime").execute(caller, parameters);
     }
 
+    @Command(aliases = { "hookprofile" },
+            description = "hook profiler",
+            permissions = { "canary.command.super.hookprofile" },
+            toolTip = "/hookprofile [on|off|reset|<entries>]",
+            max = 2,
+            tabCompleteMethod = "hookprofileTabComplete"
+    )
+    public void hookprofile(MessageReceiver caller, String[] parameters) {
+        natives.get("hookprofile").execute(caller, parameters);
+    }
+
+    @TabComplete
+    public List<String> hookprofileTabComplete(MessageReceiver caller, String[] parameters) {
+        return parameters.length == 1 ? matchTo(parameters, new String[]{ "on", "off", "reset" }) : null;
+    }
+
     @Command(
             aliases = { "loadworld" },
             description = "loads a world",
@@ -0,0 +1,74 @@
+package net.canarymod.commandsys.commands;
+
+import net.canarymod.Canary;
+import net.canarymod.chat.MessageReceiver;
+import net.canarymod.chat.TextFormat;
+import net.canarymod.commandsys.NativeCommand;
+import net.canarymod.hook.HookProfile;
+import net.canarymod.hook.HookProfiler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command to control the hook profiler and show the plugins spending the most time in hooks
+ *
+ * @author Chris (damagefilter)
+ */
+public class HookProfileCommand implements NativeCommand {
+    private static final int DEFAULT_ENTRIES = 10;
+
+    @Override
+    public void execute(MessageReceiver caller, String[] parameters) {
+        HookProfiler profiler = Canary.hooks().getProfiler();
+        int entries = DEFAULT_ENTRIES;
+
+        if (parameters.length > 1) {
+            String arg = parameters[1];
+            if (arg.equalsIgnoreCase("on")) {
+                profiler.reset();
+                profiler.setEnabled(true);
+                caller.notice("Hook profiling enabled.");
+                return;
+            }
+            else if (arg.equalsIgnoreCase("off")) {
+                profiler.setEnabled(false);
+                caller.notice("Hook profiling disabled.");
+                return;
+            }
+            else if (arg.equalsIgnoreCase("reset")) {
+                profiler.reset();
+                caller.notice("Hook profile reset.");
+                return;
+            }
+            try {
+                entries = Math.max(1, Integer.parseInt(arg));
+            }
+            catch (NumberFormatException nfex) {
+                caller.notice("Usage: /hookprofile [on|off|reset|<entries>]");
+                return;
+            }
+        }
+
+        long window = profiler.getWindowNanos();
+        caller.message(TextFormat.ORANGE + "   *** " + TextFormat.LIGHT_RED + "HOOK PROFILE" + TextFormat.ORANGE + " ***");
+        caller.message(TextFormat.ORANGE + "Profiling: " + TextFormat.WHITE + (profiler.isEnabled() ? "on" : "off") + TextFormat.ORANGE + " | Window: " + TextFormat.WHITE + TimeUnit.NANOSECONDS.toSeconds(window) + "s");
+
+        List<HookProfile> top = profiler.getTopProfiles(entries);
+        if (top.isEmpty()) {
+            caller.message(TextFormat.LIGHT_GRAY + "Nothing recorded.");
+            return;
+        }
+        for (HookProfile profile : top) {
+            caller.message(String.format(TextFormat.ORANGE + "%s " + TextFormat.WHITE + "%s" + TextFormat.LIGHT_GRAY + " %.2fms total (%.2f%%), %d calls, %.3fms avg, %.3fms max, %d errors",
+                    profile.getPluginName(),
+                    profile.getHookClass().getSimpleName(),
+                    profile.getTotalNanos() / 1000000.0D,
+                    window > 0 ? profile.getTotalNanos() * 100.0D / window : 0.0D,
+                    profile.getInvocations(),
+                    profile.getAverageNanos() / 1000000.0D,
+                    profile.getMaxNanos() / 1000000.0D,
+                    profile.getExceptions()));
+        }
+    }
+}
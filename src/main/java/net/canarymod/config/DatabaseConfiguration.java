@@ -89,6 +89,25 @@ public class DatabaseConfiguration implements ConfigurationContainer {
         cfg.getInt("statement-cache-close-threads", 1);
         cfg.addComment("statement-cache-close-threads", "Number of threads to use when closing statements is deferred (happens when parent connection is still in use)");
 
+        // write-behind settings
+
+        cfg.getBoolean("write-behind-enabled", false);
+        cfg.addComment("write-behind-enabled", "Queues database writes and writes them in batches on a background thread instead of on the server thread.");
+
+        cfg.getInt("write-behind-interval", 1000);
+        cfg.addComment("write-behind-interval", "Time in milliseconds between two write-behind flushes.");
+
+        cfg.getInt("write-behind-batch-size", 100);
+        cfg.addComment("write-behind-batch-size", "Amount of queued writes that triggers a write-behind flush before the interval is up.");
+
+        // xml settings
+
+        cfg.getInt("xml-journal-max-entries", 1000);
+        cfg.addComment("xml-journal-max-entries", "Amount of journaled writes after which an XML table file is rewritten in full.");
+
+        cfg.getInt("xml-compact-interval", 300);
+        cfg.addComment("xml-compact-interval", "Time in seconds after which an XML table file with journaled writes is rewritten in full on the next write.");
+
         cfg.save();
     }
 
@@ -274,4 +293,49 @@ public class DatabaseConfiguration implements ConfigurationContainer {
     public int getMaxConnectionIdleTime() {
         return cfg.getInt("max-connection-idle-time", 900);
     }
+
+    /**
+     * Whether database writes are queued and written in batches on a background thread.
+     *
+     * @return true if write-behind is enabled
+     */
+    public boolean isWriteBehindEnabled() {
+        return cfg.getBoolean("write-behind-enabled", false);
+    }
+
+    /**
+     * Time in milliseconds between two flushes of the queued writes.
+     *
+     * @return write-behind flush interval
+     */
+    public int getWriteBehindInterval() {
+        return cfg.getInt("write-behind-interval", 1000);
+    }
+
+    /**
+     * Amount of queued writes that triggers a flush before the interval is up.
+     *
+     * @return write-behind batch size
+     */
+    public int getWriteBehindBatchSize() {
+        return cfg.getInt("write-behind-batch-size", 100);
+    }
+
+    /**
+     * Amount of journaled writes after which an XML table file is rewritten in full.
+     *
+     * @return max journal entries per xml table
+     */
+    public int getXmlJournalMaxEntries() {
+        return cfg.getInt("xml-journal-max-entries", 1000);
+    }
+
+    /**
+     * Time in seconds after which an XML table file with journaled writes is rewritten in full on the next write.
+     *
+     * @return xml compaction interval
+     */
+    public int getXmlCompactInterval() {
+        return cfg.getInt("xml-compact-interval", 300);
+    }
 }
@@ -51,6 +51,12 @@ public class ServerConfiguration implements ConfigurationContainer {
         cfg.setComments("announce-player-achievements", "Sets whether to inform all of a Player's Achievement");
         cfg.getBoolean("allow-enchantment-stacking", false);
         cfg.setComments("allow-enchantment-stacking", "Sets whether to allow items with enchantments to stack with non-enchanted items");
+        cfg.getInt("async-hook-threads", 2);
+        cfg.setComments("async-hook-threads", "The amount of threads running plugin hook handlers marked as async");
+        cfg.getInt("async-hook-queue-size", 1024);
+        cfg.setComments("async-hook-queue-size", "The amount of hooks an async hook handler may fall behind before further hooks for it are dropped");
+        cfg.getInt("async-task-threads", 4);
+        cfg.setComments("async-task-threads", "The amount of threads running async plugin tasks");
         cfg.getString("ban-default-message", "You are banned from this server.");
         cfg.setComments("ban-default-message", "The default message to use for user bans");
         cfg.getString("ban-expiration-date-message", "Your Ban will be lifted at ");
@@ -85,6 +91,8 @@ public class ServerConfiguration implements ConfigurationContainer {
         }
         cfg.getString("logger-level", "INFO");
         cfg.setComments("logger-level", "Sets the level of logging.", "Acceptable Values: OFF FATAL ERROR WARN INFO DEBUG TRACE ALL");
+        cfg.getInt("main-thread-callback-budget", 5);
+        cfg.setComments("main-thread-callback-budget", "Milliseconds per tick that may be spent running callbacks handed back to the server thread by async tasks");
 
         // RESERVED SPACE
         cfg.getInt("max-players", 20);
@@ -94,6 +102,8 @@ public class ServerConfiguration implements ConfigurationContainer {
         cfg.getBoolean("online-mode", true);
         cfg.setComments("online-mode", "Sets whether to authenticate connecting users.",
                 "WARNING: Setting to false is INSECURE and should not be done in a production environment ");
+        cfg.getInt("permission-cache-size", 256);
+        cfg.setComments("permission-cache-size", "Amount of permission check results each permission provider remembers. Set 0 to disable");
         cfg.getInt("player-idle-timeout", 1);
         cfg.setComments("player-idle-timeout", "Timeout in minutes before kicking an idle player");
         cfg.getBoolean("playerlist-enabled", true);
@@ -133,6 +143,11 @@ public class ServerConfiguration implements ConfigurationContainer {
         cfg.setComments("snooper-enabled", "Sets whether Mojang may snoop or not");
         cfg.getString("spam-protection", "default");
         cfg.setComments("spam-protection", "Level of protection against Spam. Options: default - on for all but ignorerestiction users; off - no protections; all - on for all");
+        cfg.getInt("task-tick-budget", 0);
+        cfg.setComments("task-tick-budget", "Milliseconds per tick that may be spent running scheduled plugin tasks, 0 for no limit.",
+                "Due tasks that don't fit are run first thing the next tick");
+        cfg.getBoolean("task-stagger", false);
+        cfg.setComments("task-stagger", "Sets whether repeating plugin tasks with the same period get spread over different ticks instead of running together");
         cfg.getBoolean("strict-sign-characters", true);
         cfg.setComments("strict-sign-characters", "Sets whether to strictly check characters on signs for invalid chat characters. Set to false to disable (and allow more characters)");
         cfg.getString("texture-pack", "");
@@ -166,6 +181,33 @@ public class ServerConfiguration implements ConfigurationContainer {
         return cfg.getBoolean("alllow-enchantment-stacking", false);
     }
 
+    /**
+     * Get the amount of threads for async hook handlers
+     *
+     * @return thread count, at least 1
+     */
+    public int getAsyncHookThreads() {
+        return Math.max(1, cfg.getInt("async-hook-threads", 2));
+    }
+
+    /**
+     * Get the amount of hooks queued per async hook handler before new ones are dropped
+     *
+     * @return queue size, at least 1
+     */
+    public int getAsyncHookQueueSize() {
+        return Math.max(1, cfg.getInt("async-hook-queue-size", 1024));
+    }
+
+    /**
+     * Get the amount of threads for async plugin tasks
+     *
+     * @return thread count, at least 1
+     */
+    public int getAsyncTaskThreads() {
+        return Math.max(1, cfg.getInt("async-task-threads", 4));
+    }
+
     /**
      * Gets the ban default message
      *
@@ -275,6 +317,15 @@ public class ServerConfiguration implements ConfigurationContainer {
         return Level.toLevel(cfg.getString("logger-level", "INFO"), Level.INFO);
     }
 
+    /**
+     * Get the time per tick the server thread may spend on callbacks from async tasks
+     *
+     * @return budget in milliseconds, at least 1
+     */
+    public long getMainThreadCallbackBudget() {
+        return Math.max(1, cfg.getInt("main-thread-callback-budget", 5));
+    }
+
     /**
      * Get maximum amount of player allowed online
      *
@@ -305,6 +356,15 @@ public class ServerConfiguration implements ConfigurationContainer {
         return cfg.getBoolean("online-mode", true);
     }
 
+    /**
+     * Gets the amount of permission check results each permission provider caches
+     *
+     * @return permission cache size, 0 if disabled
+     */
+    public int getPermissionCacheSize() {
+        return Math.max(0, cfg.getInt("permission-cache-size", 256));
+    }
+
     /**
      * Gets the time in minutes before a player is kicked for idling
      *
@@ -505,6 +565,24 @@ public class ServerConfiguration implements ConfigurationContainer {
         return cfg.getBoolean("strict-sign-characters");
     }
 
+    /**
+     * Gets the time per tick that may be spent on scheduled tasks
+     *
+     * @return budget in milliseconds; 0 for no limit
+     */
+    public long getTaskTickBudget() {
+        return Math.max(0, cfg.getInt("task-tick-budget", 0));
+    }
+
+    /**
+     * Gets whether repeating tasks with the same period are spread over different ticks
+     *
+     * @return {@code true} if staggered; {@code false} if not
+     */
+    public boolean isTaskStaggerEnabled() {
+        return cfg.getBoolean("task-stagger", false);
+    }
+
     /**
      * Server Texture/Resource Pack name
      *
@@ -1,14 +1,13 @@
 package net.canarymod.database;
 
-import net.canarymod.ToolBox;
 import net.canarymod.database.exceptions.DatabaseAccessException;
 import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
 import net.canarymod.database.exceptions.DatabaseWriteException;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -89,55 +88,50 @@ public abstract class DataAccess {
      * @throws DatabaseTableInconsistencyException
      */
     public final HashMap<Column, Object> toDatabaseEntryList() throws DatabaseTableInconsistencyException {
-        List<Field> fields = Arrays.asList(ToolBox.safeArrayMerge(getClass().getFields(), getClass().getDeclaredFields(), new Field[1]));
-        HashMap<Column, Object> fieldMap = new HashMap<Column, Object>();
-        for (Field field : fields) {
-            Column colInfo = field.getAnnotation(Column.class);
-
-            if (colInfo == null) {
-                // Not what we're looking for
-                continue;
-            }
-            if (fieldMap.containsKey(colInfo)) {
-                // Seriously ...
-                isInconsistent = true;
-                throw new DatabaseTableInconsistencyException("Found duplicate column field: " + colInfo.columnName());
-            }
+        TableSchema schema = getSchema();
+        Field[] fields = schema.getFields();
+        Column[] columns = schema.getColumns();
+        HashMap<Column, Object> fieldMap = new HashMap<Column, Object>(columns.length * 2);
+        for (int i = 0; i < fields.length; i++) {
             try {
-                fieldMap.put(colInfo, field.get(this));
+                fieldMap.put(columns[i], fields[i].get(this));
             }
             catch (IllegalArgumentException e) {
                 log.error(e.getMessage(), e);
             }
             catch (IllegalAccessException e) {
                 isInconsistent = true;
-                throw new DatabaseTableInconsistencyException("Could not access an annotated column field: " + field.getName());
+                throw new DatabaseTableInconsistencyException("Could not access an annotated column field: " + fields[i].getName());
             }
         }
         return fieldMap;
     }
 
     public final void applyDataSet(HashMap<String, Object> dataSet) throws DatabaseAccessException, IllegalArgumentException, IllegalAccessException {
-        Field[] fields = ToolBox.safeArrayMerge(getClass().getFields(), getClass().getDeclaredFields(), new Field[1]);
-        int columnFields = 0;
+        TableSchema schema;
+        try {
+            schema = getSchema();
+        }
+        catch (DatabaseTableInconsistencyException e) {
+            throw new DatabaseAccessException(e.getMessage());
+        }
+        Field[] fields = schema.getFields();
+        Column[] columns = schema.getColumns();
 
-        for (Field field : fields) {
-            Column col = field.getAnnotation(Column.class);
+        for (int i = 0; i < fields.length; i++) {
+            String name = columns[i].columnName();
+            Object value = dataSet.get(name);
 
-            if (col == null) {
-                continue;
-            }
-            if (!dataSet.containsKey(col.columnName())) {
+            if (value == null && !dataSet.containsKey(name)) {
                 isInconsistent = true;
-                throw new DatabaseAccessException("Cannot apply data to " + getClass().getSimpleName() + ". Column name mismatches! (" + col.columnName() + " does not exist) - " + dataSet.keySet().toString());
+                throw new DatabaseAccessException("Cannot apply data to " + getClass().getSimpleName() + ". Column name mismatches! (" + name + " does not exist) - " + dataSet.keySet().toString());
             }
-            field.set(this, dataSet.get(col.columnName()));
-            columnFields++;
+            fields[i].set(this, value);
         }
-        // If the columnFields is not the size of the dataSet,
+        // If the column count is not the size of the dataSet,
         // There is either excess data or data that has not been put in the AccessObject.
         // This causes inconsistency and therefore must throw an exception
-        if (columnFields != dataSet.size()) {
+        if (fields.length != dataSet.size()) {
             isInconsistent = true;
             throw new DatabaseAccessException("Supplied Data set cannot be applied to this DataAccess(" + getClass().getSimpleName() + "). Column count mismatches!");
         }
@@ -151,27 +145,29 @@ public abstract class DataAccess {
      * @throws DatabaseTableInconsistencyException
      */
     public final HashSet<Column> getTableLayout() throws DatabaseTableInconsistencyException {
-        Field[] fields = ToolBox.safeArrayMerge(getClass().getFields(), getClass().getDeclaredFields(), new Field[1]);
-        HashSet<Column> layout = new HashSet<Column>(fields.length);
+        return new HashSet<Column>(getSchema().getLayout());
+    }
 
-        for (Field field : fields) {
-            if (field == null) {
-                throw new DatabaseTableInconsistencyException("A field of " + getClass().getSimpleName() + " is not initialized, check your DataAccess!");
-            }
-            Column colInfo = field.getAnnotation(Column.class);
+    /**
+     * Gets the columns of this {@link DataAccess} in a fixed order without copying them.
+     * The column meta data is worked out once per class.
+     *
+     * @return unmodifiable list of all Columns as defined in this {@link DataAccess} object
+     *
+     * @throws DatabaseTableInconsistencyException
+     */
+    public final List<Column> getColumns() throws DatabaseTableInconsistencyException {
+        return getSchema().getLayout();
+    }
 
-            if (colInfo == null) {
-                // Not what we're looking for
-                continue;
-            }
-            if (layout.contains(colInfo)) {
-                // Dude!
-                isInconsistent = true;
-                throw new DatabaseTableInconsistencyException("Found duplicate column field: " + colInfo.columnName());
-            }
-            layout.add(colInfo);
+    private TableSchema getSchema() throws DatabaseTableInconsistencyException {
+        try {
+            return TableSchema.of(getClass());
+        }
+        catch (DatabaseTableInconsistencyException e) {
+            isInconsistent = true;
+            throw e;
         }
-        return layout;
     }
 
     /**
@@ -224,18 +220,7 @@ public abstract class DataAccess {
      * @return true if DataAccess has this column, false otherwise
      */
     public final boolean hasColumn(String name) {
-        try {
-            for (Column col : getTableLayout()) {
-                if (col.columnName().equals(name)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        catch (DatabaseTableInconsistencyException e) {
-            log.error("Could not finish column name lookup in database for " + tableName, e);
-            return false;
-        }
+        return getColumnForName(name) != null;
     }
 
     /**
@@ -248,12 +233,7 @@ public abstract class DataAccess {
      */
     public final Column getColumnForName(String name) {
         try {
-            for (Column col : getTableLayout()) {
-                if (col.columnName().equals(name)) {
-                    return col;
-                }
-            }
-            return null;
+            return getSchema().getColumn(name);
         }
         catch (DatabaseTableInconsistencyException e) {
             log.error("Could not finish column name lookup in database for " + tableName, e);
@@ -263,17 +243,42 @@ public abstract class DataAccess {
 
     /** Makes sure the database file for this DataAccess exists before anything starts to use it */
     private void createTable() {
-        if (!schemaUpdated.contains(getClass())) {
-            try {
-                Database.get().updateSchema(this);
-            }
-            catch (DatabaseWriteException e) {
-                log.error(e.getMessage(), e);
+        synchronized (schemaUpdated) {
+            if (schemaUpdated.contains(getClass())) {
+                return;
             }
+        }
+        try {
+            Database.get().updateSchema(this);
+        }
+        catch (DatabaseWriteException e) {
+            log.error(e.getMessage(), e);
+        }
+        synchronized (schemaUpdated) {
             schemaUpdated.add(getClass());
         }
     }
 
+    /**
+     * Forgets what is cached about the DataAccess classes of the given class loader,
+     * so a plugin's classes and its loader can be collected once the plugin is unloaded.
+     * Called when a {@link net.canarymod.CanaryClassLoader} is closed.
+     *
+     * @param loader
+     *         the class loader of the plugin
+     */
+    public static void forgetClasses(ClassLoader loader) {
+        TableSchema.forget(loader);
+        synchronized (schemaUpdated) {
+            Iterator<Class<? extends DataAccess>> it = schemaUpdated.iterator();
+            while (it.hasNext()) {
+                if (it.next().getClassLoader() == loader) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
     /**
      * Converts this DataAccess object into a string representation.<br>
      * Format: Table : tableName { [`columnName`,'fieldName'] }
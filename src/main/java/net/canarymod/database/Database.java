@@ -8,6 +8,7 @@ import net.canarymod.database.mysql.MySQLDatabase;
 import net.canarymod.database.sqlite.SQLiteDatabase;
 import net.canarymod.database.xml.XmlDatabase;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,14 +61,45 @@ public abstract class Database {
         }
     }
 
+    // Write-behind layer around the configured database, if enabled
+    private static volatile WriteBehindDatabase writeBehind;
+
     public static Database get() {
         Database ret = Database.Type.getDatabaseFromType(Configuration.getServerConfig().getDatasourceType());
-        if (ret != null) {
-            return ret;
-        }
-        else {
+        if (ret == null) {
             log.warn("Database type " + Configuration.getServerConfig().getDatasourceType() + " is not available, falling back to XML! Fix your server.cfg");
-            return XmlDatabase.getInstance();
+            ret = XmlDatabase.getInstance();
+        }
+        if (Configuration.getDbConfig().isWriteBehindEnabled()) {
+            WriteBehindDatabase current = writeBehind;
+            if (current != null && current.getBackend() == ret) {
+                return current;
+            }
+            return getWriteBehind(ret);
+        }
+        return ret;
+    }
+
+    private static synchronized Database getWriteBehind(Database backend) {
+        if (writeBehind == null || writeBehind.getBackend() != backend) {
+            if (writeBehind != null) {
+                writeBehind.shutdown();
+            }
+            writeBehind = new WriteBehindDatabase(backend, Configuration.getDbConfig().getWriteBehindInterval(), Configuration.getDbConfig().getWriteBehindBatchSize());
+        }
+        return writeBehind;
+    }
+
+    /**
+     * Writes all queued writes to the database and stops the write-behind thread.
+     * If write-behind is still enabled, the next {@link #get()} starts a new write-behind layer.
+     * Does nothing if write-behind is not in use.
+     * Must be called before the server goes down, otherwise queued writes are lost.
+     */
+    public static synchronized void shutdownWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            writeBehind = null;
         }
     }
 
@@ -82,6 +114,23 @@ public abstract class Database {
      */
     public abstract void insert(DataAccess data) throws DatabaseWriteException;
 
+    /**
+     * Inserts the given DataAccess objects as new sets of data into database, in the given order.
+     * All of them must belong to the same table.
+     * The default implementation inserts them one by one, JDBC databases send them as one batch.
+     *
+     * @param data
+     *         the data to insert
+     *
+     * @throws DatabaseWriteException
+     *         when something went wrong during the write operation
+     */
+    public void insertBatch(List<DataAccess> data) throws DatabaseWriteException {
+        for (DataAccess da : data) {
+            insert(da);
+        }
+    }
+
     /**
      * Updates the record in the database that fits to your fields and values given.
      * Those are NOT the values and fields to update. Those are values and fields to identify
@@ -96,6 +145,54 @@ public abstract class Database {
      */
     public abstract void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException;
 
+    /**
+     * Updates a record for each of the given DataAccess objects, in the given order.
+     * All of them must belong to the same table and their filters must use the same field names.
+     * The default implementation updates them one by one, JDBC databases send them as one batch.
+     *
+     * @param data
+     *         the data to be updated
+     * @param filters
+     *         FieldName->Value maps to filter which rows should be updated, one for each DataAccess
+     *
+     * @throws DatabaseWriteException
+     * @see #update(DataAccess, java.util.Map)
+     */
+    public void updateBatch(List<DataAccess> data, List<Map<String, Object>> filters) throws DatabaseWriteException {
+        for (int i = 0; i < data.size(); i++) {
+            update(data.get(i), filters.get(i));
+        }
+    }
+
+    /**
+     * Updates the record that fits to the given filters, or inserts the data if there is none.
+     * The default implementation loads the record first, JDBC databases try the update first
+     * and only insert when it did not change a row.
+     *
+     * @param data
+     *         the data to be updated or inserted. Additionally this acts as information about the table schema
+     * @param filters
+     *         FieldName->Value map to filter which row should be updated
+     *
+     * @throws DatabaseWriteException
+     * @see #update(DataAccess, java.util.Map)
+     */
+    public void upsert(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        DataAccess existing = data.getInstance();
+        try {
+            load(existing, filters);
+        }
+        catch (DatabaseReadException dre) {
+            throw new DatabaseWriteException("Could not check for an existing record in " + data.getName(), dre);
+        }
+        if (existing.hasData()) {
+            update(data, filters);
+        }
+        else {
+            insert(data);
+        }
+    }
+
     /**
      * Removes the data set from the given table that suits the given field names and values.
      *
@@ -151,6 +248,33 @@ public abstract class Database {
      */
     public abstract void loadAll(DataAccess typeTemplate, List<DataAccess> datasets, Map<String, Object> filters) throws DatabaseReadException;
 
+    /**
+     * Loads all results that match the field - values given and hands them to the handler one by one,
+     * without keeping the whole result in memory.
+     * The default implementation loads everything with {@link #loadAll(DataAccess, java.util.List, java.util.Map)} first,
+     * the built-in databases read row by row.
+     *
+     * @param typeTemplate
+     *         The type template (an instance of the dataaccess type you want to load)
+     * @param filters
+     *         FieldName->Value map to filter which rows should be loaded
+     * @param reuseInstance
+     *         true to load every row into the same DataAccess instance, the handler must not keep the rows then
+     * @param handler
+     *         the handler that receives the rows
+     *
+     * @throws DatabaseReadException
+     */
+    public void stream(DataAccess typeTemplate, Map<String, Object> filters, boolean reuseInstance, RowHandler handler) throws DatabaseReadException {
+        ArrayList<DataAccess> datasets = new ArrayList<DataAccess>();
+        loadAll(typeTemplate, datasets, filters);
+        for (DataAccess row : datasets) {
+            if (!handler.handle(row)) {
+                return;
+            }
+        }
+    }
+
     /**
      * Updates the database table fields for the given DataAccess object.
      * This method will remove fields that aren't there anymore and add new ones if applicable.
@@ -4,6 +4,7 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
 import net.canarymod.config.Configuration;
 import net.canarymod.config.DatabaseConfiguration;
 import net.canarymod.database.exceptions.DatabaseAccessException;
+import net.canarymod.database.xml.XmlDatabase;
 
 import java.beans.PropertyVetoException;
 import java.sql.Connection;
@@ -111,6 +112,31 @@ public class JdbcConnectionManager {
         c.close();
     }
 
+    /**
+     * Instantiates the connection manager around a single SQLite connection, without a pool
+     *
+     * @param sqliteConnection
+     *         the connection
+     */
+    private JdbcConnectionManager(Connection sqliteConnection) {
+        this.type = Type.SQLITE;
+        this.sqliteConnection = sqliteConnection;
+    }
+
+    /**
+     * Makes SQLite use the given connection instead of a pool set up from the configuration,
+     * an embedded in-memory database for instance. A pool opened before is closed.
+     *
+     * @param connection
+     *         the connection to hand out
+     */
+    static synchronized void useSQLiteConnection(Connection connection) {
+        if (instance != null && instance.cpds != null) {
+            instance.cpds.close();
+        }
+        instance = new JdbcConnectionManager(connection);
+    }
+
     /**
      * Get the Database type.
      *
@@ -179,11 +205,17 @@ public class JdbcConnectionManager {
      * Should be called when the system is reloaded or goes down to prevent data loss.
      */
     public static void shutdown() {
+        // Queued writes need the pool, get them out first
+        Database.shutdownWriteBehind();
+        // XML tables journal their writes, put them back into the table files
+        XmlDatabase.shutdown();
         if (instance == null) {
             // already shut down or never instantiated (perhaps because we're running on a non-jdbc database)
             return;
         }
-        instance.cpds.close();
+        if (instance.cpds != null) {
+            instance.cpds.close();
+        }
         if (instance.sqliteConnection != null) {
             try {
                 instance.sqliteConnection.close();
@@ -0,0 +1,24 @@
+package net.canarymod.database;
+
+/**
+ * Receives the rows of a {@link Database#stream(DataAccess, java.util.Map, boolean, RowHandler)} call one by one.
+ * <p/>
+ * Rows are handed over while the database is still reading, so writing to the streamed table
+ * from within the handler is not a good idea. Collect the changes and write them once the stream is done.
+ *
+ * @author Chris (damagefilter)
+ */
+public interface RowHandler {
+
+    /**
+     * Handles one row.
+     * If the stream was started with instance reuse, the given DataAccess is overwritten
+     * with the next row after this call returns and must not be kept.
+     *
+     * @param row
+     *         the row
+     *
+     * @return true to continue with the next row, false to stop the stream
+     */
+    boolean handle(DataAccess row);
+}
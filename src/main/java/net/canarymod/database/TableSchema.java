@@ -0,0 +1,154 @@
+package net.canarymod.database;
+
+import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The columns of a {@link DataAccess} class, worked out once per class.
+ * <p/>
+ * Holds the annotated fields in a fixed order (public fields first, then the other declared fields)
+ * together with their {@link Column} meta data, so reading and writing a DataAccess
+ * doesn't have to look up fields and annotations for every row.
+ *
+ * @author Chris (damagefilter)
+ */
+final class TableSchema {
+    private static final ConcurrentHashMap<Class<? extends DataAccess>, TableSchema> schemas = new ConcurrentHashMap<Class<? extends DataAccess>, TableSchema>();
+
+    private final Field[] fields;
+    private final Column[] columns;
+    private final List<Column> layout;
+    // The first column with a name wins, same as the old lookup
+    private final HashMap<String, Column> byName;
+
+    private TableSchema(Field[] fields, Column[] columns) {
+        this.fields = fields;
+        this.columns = columns;
+        this.layout = Collections.unmodifiableList(Arrays.asList(columns));
+        this.byName = new HashMap<String, Column>(columns.length * 2);
+        for (Column column : columns) {
+            if (!byName.containsKey(column.columnName())) {
+                byName.put(column.columnName(), column);
+            }
+        }
+    }
+
+    /**
+     * Gets the schema of the given DataAccess class
+     *
+     * @param type
+     *         the DataAccess class
+     *
+     * @return the schema
+     *
+     * @throws DatabaseTableInconsistencyException
+     *         when the class declares a column twice
+     */
+    static TableSchema of(Class<? extends DataAccess> type) throws DatabaseTableInconsistencyException {
+        TableSchema schema = schemas.get(type);
+        if (schema == null) {
+            schema = build(type);
+            TableSchema other = schemas.putIfAbsent(type, schema);
+            if (other != null) {
+                schema = other;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Forgets the schemas of the DataAccess classes defined by the given class loader,
+     * the fields of a schema would keep its class and the loader from being collected otherwise
+     *
+     * @param loader
+     *         the class loader
+     */
+    static void forget(ClassLoader loader) {
+        Iterator<Class<? extends DataAccess>> it = schemas.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getClassLoader() == loader) {
+                it.remove();
+            }
+        }
+    }
+
+    private static TableSchema build(Class<? extends DataAccess> type) throws DatabaseTableInconsistencyException {
+        LinkedHashSet<Field> candidates = new LinkedHashSet<Field>();
+        Collections.addAll(candidates, type.getFields());
+        Collections.addAll(candidates, type.getDeclaredFields());
+
+        ArrayList<Field> fields = new ArrayList<Field>(candidates.size());
+        ArrayList<Column> columns = new ArrayList<Column>(candidates.size());
+        HashSet<Column> seen = new HashSet<Column>();
+        for (Field field : candidates) {
+            Column colInfo = field.getAnnotation(Column.class);
+
+            if (colInfo == null) {
+                // Not what we're looking for
+                continue;
+            }
+            if (!seen.add(colInfo)) {
+                throw new DatabaseTableInconsistencyException("Found duplicate column field: " + colInfo.columnName());
+            }
+            try {
+                // Skips the access check on every get and set
+                field.setAccessible(true);
+            }
+            catch (SecurityException e) {
+                // Then the access check it is
+            }
+            fields.add(field);
+            columns.add(colInfo);
+        }
+        return new TableSchema(fields.toArray(new Field[fields.size()]), columns.toArray(new Column[columns.size()]));
+    }
+
+    /**
+     * Gets the annotated fields, in the same order as {@link #getColumns()}
+     *
+     * @return the fields, do not modify
+     */
+    Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * Gets the column meta data
+     *
+     * @return the columns, do not modify
+     */
+    Column[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the columns as an unmodifiable list
+     *
+     * @return the columns
+     */
+    List<Column> getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets the column with the given name
+     *
+     * @param name
+     *         the column name
+     *
+     * @return the column or null if there is none
+     */
+    Column getColumn(String name) {
+        return byName.get(name);
+    }
+}
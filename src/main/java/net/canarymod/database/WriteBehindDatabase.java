@@ -0,0 +1,389 @@
+package net.canarymod.database;
+
+import net.canarymod.database.exceptions.DatabaseAccessException;
+import net.canarymod.database.exceptions.DatabaseReadException;
+import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
+import net.canarymod.database.exceptions.DatabaseWriteException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * Wraps a {@link Database} and writes to it from a background thread.
+ * <p/>
+ * Inserts, updates, upserts and removes are queued per table and handed to the wrapped database in batches,
+ * either every flush interval or as soon as enough writes are queued.
+ * An update of a row that already has a queued update (same table and filters) replaces the queued one,
+ * unless an other kind of write was queued on that table in between. The same goes for upserts.
+ * Loads flush the queued writes of their table first, so they always see earlier writes.
+ * <p/>
+ * As writes happen after the calls returned, write errors are logged instead of thrown.
+ *
+ * @author Chris (damagefilter)
+ * @see Database#shutdownWriteBehind()
+ */
+public final class WriteBehindDatabase extends Database {
+    private final Database backend;
+    private final long interval;
+    private final int batchSize;
+    // Queued writes by table, guarded by itself
+    private final LinkedHashMap<String, TableQueue> queues = new LinkedHashMap<String, TableQueue>();
+    // Held while writes are handed to the backend so flushes can't overtake each other.
+    // The backend's monitor is taken first: SQLite holds it while it runs statements (and stream handlers),
+    // a handler that flushes must not wait for a flusher that waits for SQLite
+    private final Object flushLock = new Object();
+    private final Thread flusher;
+    private int queued;
+    private boolean running = true;
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    WriteBehindDatabase(Database backend, long interval, int batchSize) {
+        this.backend = backend;
+        this.interval = Math.max(1L, interval);
+        this.batchSize = Math.max(1, batchSize);
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "Canary Write-Behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Gets the database the writes end up in
+     *
+     * @return the wrapped database
+     */
+    public Database getBackend() {
+        return backend;
+    }
+
+    @Override
+    public void insert(DataAccess data) throws DatabaseWriteException {
+        enqueue(new PendingWrite(WriteType.INSERT, snapshot(data), null));
+    }
+
+    @Override
+    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        enqueue(new PendingWrite(WriteType.UPDATE, snapshot(data), new HashMap<String, Object>(filters)));
+    }
+
+    @Override
+    public void upsert(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        enqueue(new PendingWrite(WriteType.UPSERT, snapshot(data), new HashMap<String, Object>(filters)));
+    }
+
+    @Override
+    public void remove(DataAccess da, Map<String, Object> filters) throws DatabaseWriteException {
+        enqueue(new PendingWrite(WriteType.REMOVE, da, new HashMap<String, Object>(filters)));
+    }
+
+    @Override
+    public void removeAll(DataAccess da, Map<String, Object> filters) throws DatabaseWriteException {
+        enqueue(new PendingWrite(WriteType.REMOVE_ALL, da, new HashMap<String, Object>(filters)));
+    }
+
+    @Override
+    public void load(DataAccess dataset, Map<String, Object> filters) throws DatabaseReadException {
+        flush(dataset.getName());
+        backend.load(dataset, filters);
+    }
+
+    @Override
+    public void loadAll(DataAccess typeTemplate, List<DataAccess> datasets, Map<String, Object> filters) throws DatabaseReadException {
+        flush(typeTemplate.getName());
+        backend.loadAll(typeTemplate, datasets, filters);
+    }
+
+    @Override
+    public void stream(DataAccess typeTemplate, Map<String, Object> filters, boolean reuseInstance, RowHandler handler) throws DatabaseReadException {
+        flush(typeTemplate.getName());
+        backend.stream(typeTemplate, filters, reuseInstance, handler);
+    }
+
+    @Override
+    public void updateSchema(DataAccess schemaTemplate) throws DatabaseWriteException {
+        flush(schemaTemplate.getName());
+        backend.updateSchema(schemaTemplate);
+    }
+
+    /** Writes everything that is queued right now and waits until it is done */
+    public void flush() {
+        synchronized (backend) {
+            synchronized (flushLock) {
+                ArrayList<TableQueue> toWrite;
+                synchronized (queues) {
+                    toWrite = new ArrayList<TableQueue>(queues.values());
+                    queues.clear();
+                    queued = 0;
+                }
+                for (TableQueue queue : toWrite) {
+                    write(queue.writes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes everything that is queued for the given table and waits until it is done
+     *
+     * @param table
+     *         the table name
+     */
+    public void flush(String table) {
+        synchronized (backend) {
+            synchronized (flushLock) {
+                TableQueue queue;
+                synchronized (queues) {
+                    queue = queues.remove(table);
+                    if (queue != null) {
+                        queued -= queue.writes.size();
+                    }
+                }
+                if (queue != null) {
+                    write(queue.writes);
+                }
+            }
+        }
+    }
+
+    /** Stops the background thread and writes what is left. Later writes are done right away. */
+    void shutdown() {
+        synchronized (queues) {
+            running = false;
+            queues.notifyAll();
+        }
+        flush();
+    }
+
+    /**
+     * Gets the amount of writes waiting to be flushed
+     *
+     * @return queued writes
+     */
+    public int getQueuedWrites() {
+        synchronized (queues) {
+            return queued;
+        }
+    }
+
+    /**
+     * Gets how many updates and upserts were merged into one that was already queued
+     *
+     * @return coalesced writes
+     */
+    public long getCoalescedWrites() {
+        return coalesced.get();
+    }
+
+    /**
+     * Gets how many writes were handed to the wrapped database
+     *
+     * @return written count
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Gets how many writes failed
+     *
+     * @return failed count
+     */
+    public long getFailedWrites() {
+        return failed.get();
+    }
+
+    private void enqueue(PendingWrite write) {
+        String table = write.data.getName();
+        boolean flushNow;
+        synchronized (queues) {
+            TableQueue queue = queues.get(table);
+            if (queue == null) {
+                queue = new TableQueue();
+                queues.put(table, queue);
+            }
+            HashMap<Map<String, Object>, PendingWrite> mergeable = null;
+            if (write.type == WriteType.UPDATE) {
+                mergeable = queue.updates;
+                queue.upserts.clear(); // Later upserts must not be merged across this write
+            }
+            else if (write.type == WriteType.UPSERT) {
+                mergeable = queue.upserts;
+                queue.updates.clear();
+            }
+            else {
+                // Later updates and upserts must not be merged across this write
+                queue.updates.clear();
+                queue.upserts.clear();
+            }
+            if (mergeable != null) {
+                PendingWrite previous = mergeable.get(write.filters);
+                if (previous != null) {
+                    previous.data = write.data;
+                    coalesced.incrementAndGet();
+                    return;
+                }
+                mergeable.put(write.filters, write);
+            }
+            queue.writes.add(write);
+            queued++;
+            if (queued >= batchSize) {
+                queues.notifyAll();
+            }
+            flushNow = !running;
+        }
+        if (flushNow) {
+            flush(table);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (queues) {
+                if (running && queued < batchSize) {
+                    try {
+                        queues.wait(interval);
+                    }
+                    catch (InterruptedException iex) {
+                        // Just flush
+                    }
+                }
+                if (!running) {
+                    return; // shutdown() takes care of the rest
+                }
+            }
+            flush();
+        }
+    }
+
+    /** Hands the writes of one table to the backend, consecutive inserts and updates in batches */
+    private void write(List<PendingWrite> writes) {
+        int start = 0;
+        while (start < writes.size()) {
+            PendingWrite first = writes.get(start);
+            int end = start + 1;
+            while (end < writes.size() && first.batchesWith(writes.get(end))) {
+                end++;
+            }
+            try {
+                switch (first.type) {
+                    case INSERT: {
+                        ArrayList<DataAccess> data = new ArrayList<DataAccess>(end - start);
+                        for (int i = start; i < end; i++) {
+                            data.add(writes.get(i).data);
+                        }
+                        backend.insertBatch(data);
+                        break;
+                    }
+                    case UPDATE: {
+                        ArrayList<DataAccess> data = new ArrayList<DataAccess>(end - start);
+                        ArrayList<Map<String, Object>> filters = new ArrayList<Map<String, Object>>(end - start);
+                        for (int i = start; i < end; i++) {
+                            data.add(writes.get(i).data);
+                            filters.add(writes.get(i).filters);
+                        }
+                        backend.updateBatch(data, filters);
+                        break;
+                    }
+                    case UPSERT:
+                        backend.upsert(first.data, first.filters);
+                        break;
+                    case REMOVE:
+                        backend.remove(first.data, first.filters);
+                        break;
+                    case REMOVE_ALL:
+                        backend.removeAll(first.data, first.filters);
+                        break;
+                }
+                written.addAndGet(end - start);
+            }
+            catch (DatabaseWriteException dwe) {
+                failed.addAndGet(end - start);
+                log.error("Failed to write " + (end - start) + " queued write(s) to " + first.data.getName(), dwe);
+            }
+            catch (RuntimeException rex) {
+                failed.addAndGet(end - start);
+                log.error("Failed to write " + (end - start) + " queued write(s) to " + first.data.getName(), rex);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Copies the column values of a DataAccess, the caller is free to change or reuse it once the call returned.
+     * Falls back to the original if the copy can't be made.
+     */
+    private DataAccess snapshot(DataAccess data) {
+        try {
+            DataAccess copy = data.getInstance();
+            if (copy == null || !copy.getName().equals(data.getName())) {
+                return data;
+            }
+            HashMap<String, Object> dataSet = new HashMap<String, Object>();
+            for (Map.Entry<Column, Object> entry : data.toDatabaseEntryList().entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof List) {
+                    value = new ArrayList<Object>((List<?>) value);
+                }
+                dataSet.put(entry.getKey().columnName(), value);
+            }
+            copy.load(dataSet);
+            return copy;
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.debug("Could not copy " + data.getName() + " for write-behind, queueing the original", dtie);
+            return data;
+        }
+        catch (DatabaseAccessException dae) {
+            log.debug("Could not copy " + data.getName() + " for write-behind, queueing the original", dae);
+            return data;
+        }
+    }
+
+    private enum WriteType {
+        INSERT, UPDATE, UPSERT, REMOVE, REMOVE_ALL
+    }
+
+    private static final class PendingWrite {
+        private final WriteType type;
+        private final Map<String, Object> filters;
+        private DataAccess data;
+
+        PendingWrite(WriteType type, DataAccess data, Map<String, Object> filters) {
+            this.type = type;
+            this.data = data;
+            this.filters = filters;
+        }
+
+        /** Whether the other write can go into the same batch as this one */
+        boolean batchesWith(PendingWrite other) {
+            if (type != other.type) {
+                return false;
+            }
+            if (type == WriteType.INSERT) {
+                return true;
+            }
+            return type == WriteType.UPDATE && filters.keySet().equals(other.filters.keySet());
+        }
+    }
+
+    private static final class TableQueue {
+        // Writes in the order they were issued
+        private final ArrayList<PendingWrite> writes = new ArrayList<PendingWrite>();
+        // Queued updates by filters that later updates of the same row can be merged into
+        private final HashMap<Map<String, Object>, PendingWrite> updates = new HashMap<Map<String, Object>, PendingWrite>();
+        // The same for upserts
+        private final HashMap<Map<String, Object>, PendingWrite> upserts = new HashMap<Map<String, Object>, PendingWrite>();
+    }
+}
@@ -4,6 +4,7 @@ import net.canarymod.database.Column;
 import net.canarymod.database.DataAccess;
 import net.canarymod.database.Database;
 import net.canarymod.database.JdbcConnectionManager;
+import net.canarymod.database.RowHandler;
 import net.canarymod.database.exceptions.DatabaseAccessException;
 import net.canarymod.database.exceptions.DatabaseReadException;
 import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
@@ -15,12 +16,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 
@@ -35,6 +39,10 @@ import static net.canarymod.Canary.log;
 public class MySQLDatabase extends Database {
 
     private static MySQLDatabase instance;
+    // Fetch size for streamed reads, tells the driver to hand out rows one by one instead of reading the whole result
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+    // Generated insert and update statements by table and filter fields
+    private final ConcurrentHashMap<String, TableStatement> statements = new ConcurrentHashMap<String, TableStatement>();
     private final String LIST_REGEX = "\u00B6";
     private final String NULL_STRING = "NULL";
 
@@ -58,34 +66,9 @@ public class MySQLDatabase extends Database {
         PreparedStatement ps = null;
 
         try {
-            StringBuilder fields = new StringBuilder();
-            StringBuilder values = new StringBuilder();
-            HashMap<Column, Object> columns = data.toDatabaseEntryList();
-            Iterator<Column> it = columns.keySet().iterator();
-
-            Column column;
-            while (it.hasNext()) {
-                column = it.next();
-                if (!column.autoIncrement()) {
-                    fields.append("`").append(column.columnName()).append("`").append(",");
-                    values.append("?").append(",");
-                }
-            }
-            if (fields.length() > 0) {
-                fields.deleteCharAt(fields.length() - 1);
-            }
-            if (values.length() > 0) {
-                values.deleteCharAt(values.length() - 1);
-            }
-            ps = conn.prepareStatement("INSERT INTO `" + data.getName() + "` (" + fields.toString() + ") VALUES(" + values.toString() + ")");
-
-            int i = 1;
-            for (Column c : columns.keySet()) {
-                if (!c.autoIncrement()) {
-                    setToStatement(i, columns.get(c), ps, c);
-                    i++;
-                }
-            }
+            TableStatement insert = getInsertStatement(data, false);
+            ps = conn.prepareStatement(insert.sql);
+            bind(ps, insert, data.toDatabaseEntryList(), null);
 
             if (ps.executeUpdate() == 0) {
                 throw new DatabaseWriteException("Error inserting MySQL: no rows updated!");
@@ -105,58 +88,136 @@ public class MySQLDatabase extends Database {
     }
 
     @Override
-    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
-        if (!this.doesEntryExist(data)) {
+    public void insertBatch(List<DataAccess> data) throws DatabaseWriteException {
+        if (data.isEmpty()) {
             return;
         }
         Connection conn = JdbcConnectionManager.getConnection();
-        ResultSet rs = null;
+        PreparedStatement ps = null;
 
         try {
-            rs = this.getResultSet(conn, data, filters, true);
-            if (rs != null) {
-                if (rs.next()) {
-                    HashMap<Column, Object> columns = data.toDatabaseEntryList();
-                    Iterator<Column> it = columns.keySet().iterator();
-                    Column column;
-                    while (it.hasNext()) {
-                        column = it.next();
-                        if (column.isList()) {
-                            rs.updateObject(column.columnName(), this.getString((List<?>) columns.get(column)));
-                        }
-                        else {
-                            rs.updateObject(column.columnName(), columns.get(column));
-                        }
-                    }
-                    rs.updateRow();
-                }
-                else {
-                    throw new DatabaseWriteException("Error updating DataAccess to MySQL, no such entry: " + data.toString());
+            TableStatement insert = getInsertStatement(data.get(0), false);
+            ps = conn.prepareStatement(insert.sql);
+
+            int batched = 0;
+            for (DataAccess da : data) {
+                if (this.doesEntryExist(da)) {
+                    continue;
                 }
+                bind(ps, insert, da.toDatabaseEntryList(), null);
+                ps.addBatch();
+                batched++;
+            }
+            if (batched > 0) {
+                executeBatch(conn, ps);
             }
         }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error batch inserting MySQL in " + data.get(0).getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
+        }
+        finally {
+            close(conn, ps, null);
+        }
+    }
+
+    @Override
+    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        Connection conn = JdbcConnectionManager.getConnection();
+        PreparedStatement ps = null;
+
+        try {
+            TableStatement update = getUpdateStatement(data, filters);
+            ps = conn.prepareStatement(update.sql);
+            bind(ps, update, data.toDatabaseEntryList(), filters);
+            ps.executeUpdate();
+        }
         catch (SQLException ex) {
             log.error(ex.getMessage(), ex);
         }
         catch (DatabaseTableInconsistencyException dtie) {
             log.error(dtie.getMessage(), dtie);
         }
-        catch (DatabaseReadException e) {
-            log.error(e.getMessage(), e);
+        finally {
+            close(conn, ps, null);
+        }
+    }
+
+    @Override
+    public void updateBatch(List<DataAccess> data, List<Map<String, Object>> filters) throws DatabaseWriteException {
+        if (data.isEmpty()) {
+            return;
+        }
+        Connection conn = JdbcConnectionManager.getConnection();
+        PreparedStatement ps = null;
+
+        try {
+            TableStatement update = getUpdateStatement(data.get(0), filters.get(0));
+            ps = conn.prepareStatement(update.sql);
+
+            for (int i = 0; i < data.size(); i++) {
+                bind(ps, update, data.get(i).toDatabaseEntryList(), filters.get(i));
+                ps.addBatch();
+            }
+            executeBatch(conn, ps);
+        }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error batch updating MySQL in " + data.get(0).getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
         }
         finally {
-            PreparedStatement st = null;
-            try {
-                st = rs != null && rs.getStatement() instanceof PreparedStatement ? (PreparedStatement) rs.getStatement() : null;
+            close(conn, ps, null);
+        }
+    }
+
+    @Override
+    public void upsert(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        Connection conn = JdbcConnectionManager.getConnection();
+        PreparedStatement ps = null;
+
+        try {
+            HashMap<Column, Object> entry = data.toDatabaseEntryList();
+            if (isPrimaryKeyFilter(data, filters)) {
+                // The key decides, let MySQL pick between insert and update in one go.
+                // The row is the one the filter names, not whatever key the DataAccess carries
+                String keyName = filters.keySet().iterator().next();
+                HashMap<Column, Object> keyed = new HashMap<Column, Object>(entry);
+                keyed.put(data.getColumnForName(keyName), filters.get(keyName));
+                TableStatement upsert = getInsertStatement(data, true);
+                ps = conn.prepareStatement(upsert.sql);
+                bind(ps, upsert, keyed, null);
+                ps.executeUpdate();
+                return;
+            }
+            TableStatement update = getUpdateStatement(data, filters);
+            ps = conn.prepareStatement(update.sql);
+            bind(ps, update, entry, filters);
+            if (ps.executeUpdate() > 0) {
+                return;
             }
-            catch (SQLException e) {
-                log.error(e.getMessage(), e);
+            ps.close();
+            TableStatement insert = getInsertStatement(data, false);
+            ps = conn.prepareStatement(insert.sql);
+            bind(ps, insert, entry, null);
+            if (ps.executeUpdate() == 0) {
+                throw new DatabaseWriteException("Error inserting MySQL: no rows updated!");
             }
-            close(conn, st, rs);
+        }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error upserting MySQL in " + data.getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
+        }
+        finally {
+            close(conn, ps, null);
         }
     }
 
-
     @Override
     public void remove(DataAccess dataAccess, Map<String, Object> filters) throws DatabaseWriteException {
         Connection conn = JdbcConnectionManager.getConnection();
@@ -252,7 +313,7 @@ public class MySQLDatabase extends Database {
             rs = this.getResultSet(conn, da, filters, true);
             if (rs != null) {
                 if (rs.next()) {
-                    for (Column column : da.getTableLayout()) {
+                    for (Column column : da.getColumns()) {
                         if (column.isList()) {
                             dataSet.put(column.columnName(), this.getList(column.dataType(), rs.getString(column.columnName())));
                         }
@@ -299,19 +360,7 @@ public class MySQLDatabase extends Database {
             rs = this.getResultSet(conn, typeTemplate, filters, false);
             if (rs != null) {
                 while (rs.next()) {
-                    HashMap<String, Object> dataSet = new HashMap<String, Object>();
-                    for (Column column : typeTemplate.getTableLayout()) {
-                        if (column.isList()) {
-                            dataSet.put(column.columnName(), this.getList(column.dataType(), rs.getString(column.columnName())));
-                        }
-                        else if (rs.getObject(column.columnName()) instanceof Boolean) {
-                            dataSet.put(column.columnName(), rs.getBoolean(column.columnName()));
-                        }
-                        else {
-                            dataSet.put(column.columnName(), rs.getObject(column.columnName()));
-                        }
-                    }
-                    stuff.add(dataSet);
+                    stuff.add(readRow(rs, typeTemplate));
                 }
             }
 
@@ -347,8 +396,48 @@ public class MySQLDatabase extends Database {
         }
     }
 
+    @Override
+    public void stream(DataAccess typeTemplate, Map<String, Object> filters, boolean reuseInstance, RowHandler handler) throws DatabaseReadException {
+        ResultSet rs = null;
+        Connection conn = JdbcConnectionManager.getConnection();
+        try {
+            rs = this.getResultSet(conn, typeTemplate, filters, false, STREAM_FETCH_SIZE);
+            DataAccess row = null;
+            while (rs.next()) {
+                if (row == null || !reuseInstance) {
+                    row = typeTemplate.getInstance();
+                }
+                row.load(readRow(rs, typeTemplate));
+                if (!handler.handle(row)) {
+                    break;
+                }
+            }
+        }
+        catch (SQLException ex) {
+            throw new DatabaseReadException("Error streaming MySQL rows in " + typeTemplate.getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            throw new DatabaseReadException("Error streaming MySQL rows in " + typeTemplate.getName(), dtie);
+        }
+        catch (DatabaseAccessException dae) {
+            throw new DatabaseReadException("Error streaming MySQL rows in " + typeTemplate.getName(), dae);
+        }
+        finally {
+            try {
+                if (rs != null) {
+                    PreparedStatement st = rs.getStatement() instanceof PreparedStatement ? (PreparedStatement) rs.getStatement() : null;
+                    close(conn, st, rs);
+                }
+            }
+            catch (SQLException ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
     @Override
     public void updateSchema(DataAccess schemaTemplate) throws DatabaseWriteException {
+        forgetStatements(schemaTemplate.getName());
         Connection conn = JdbcConnectionManager.getConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -365,7 +454,7 @@ public class MySQLDatabase extends Database {
 
                 LinkedList<String> toRemove = new LinkedList<String>();
                 HashMap<String, Column> toAdd = new HashMap<String, Column>();
-                Iterator<Column> it = schemaTemplate.getTableLayout().iterator();
+                Iterator<Column> it = schemaTemplate.getColumns().iterator();
 
                 Column column;
                 while (it.hasNext()) {
@@ -549,7 +638,58 @@ public class MySQLDatabase extends Database {
         return toRet;
     }
 
+    /**
+     * Reads the current row of a result set into a data set for {@link DataAccess#load(java.util.HashMap)}
+     *
+     * @param rs
+     *         the result set, positioned on the row to read
+     * @param typeTemplate
+     *         the DataAccess describing the table
+     *
+     * @return the data set
+     *
+     * @throws SQLException
+     * @throws DatabaseTableInconsistencyException
+     */
+    private HashMap<String, Object> readRow(ResultSet rs, DataAccess typeTemplate) throws SQLException, DatabaseTableInconsistencyException {
+        HashMap<String, Object> dataSet = new HashMap<String, Object>();
+        for (Column column : typeTemplate.getColumns()) {
+            if (column.isList()) {
+                dataSet.put(column.columnName(), this.getList(column.dataType(), rs.getString(column.columnName())));
+            }
+            else if (rs.getObject(column.columnName()) instanceof Boolean) {
+                dataSet.put(column.columnName(), rs.getBoolean(column.columnName()));
+            }
+            else {
+                dataSet.put(column.columnName(), rs.getObject(column.columnName()));
+            }
+        }
+        return dataSet;
+    }
+
     public ResultSet getResultSet(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne) throws DatabaseReadException {
+        return getResultSet(conn, data, filters, limitOne, 0);
+    }
+
+    /**
+     * Runs a SELECT on the table of the given DataAccess.
+     *
+     * @param conn
+     *         the connection to use
+     * @param data
+     *         the DataAccess describing the table
+     * @param filters
+     *         FieldName->Value map to filter which rows should be selected
+     * @param limitOne
+     *         true to select only the first matching row
+     * @param fetchSize
+     *         the JDBC fetch size hint, 0 to leave the driver default
+     *
+     * @return the result set
+     *
+     * @throws DatabaseReadException
+     */
+    public ResultSet getResultSet(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne, int fetchSize) throws DatabaseReadException {
         PreparedStatement ps;
         ResultSet toRet;
 
@@ -589,6 +729,9 @@ public class MySQLDatabase extends Database {
                     ps = conn.prepareStatement("SELECT * FROM `" + data.getName() + "`");
                 }
             }
+            if (fetchSize != 0) {
+                ps.setFetchSize(fetchSize);
+            }
             toRet = ps.executeQuery();
         }
         catch (SQLException ex) {
@@ -670,6 +813,161 @@ public class MySQLDatabase extends Database {
         return String.valueOf(o);
     }
 
+    /**
+     * Checks if the filters consist of the primary key column only
+     *
+     * @param data
+     *         the DataAccess describing the table
+     * @param filters
+     *         the filters
+     *
+     * @return true if the filters select by primary key
+     */
+    private boolean isPrimaryKeyFilter(DataAccess data, Map<String, Object> filters) {
+        if (filters.size() != 1) {
+            return false;
+        }
+        Column col = data.getColumnForName(filters.keySet().iterator().next());
+        return col != null && col.columnType() == Column.ColumnType.PRIMARY && filters.values().iterator().next() != null;
+    }
+
+    /**
+     * Drops the generated statements of a table, so they are generated anew for its current columns.
+     *
+     * @param table
+     *         the table name
+     */
+    private void forgetStatements(String table) {
+        Iterator<String> it = statements.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.equals("insert:" + table) || key.equals("upsert:" + table) || key.startsWith("update:" + table + ":")) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the INSERT statement for the table of the given DataAccess.
+     *
+     * @param data
+     *         the DataAccess describing the table
+     * @param onDuplicateKey
+     *         true to insert the auto-increment columns as well and update the row if the key exists already
+     *
+     * @return the statement
+     *
+     * @throws DatabaseTableInconsistencyException
+     */
+    private TableStatement getInsertStatement(DataAccess data, boolean onDuplicateKey) throws DatabaseTableInconsistencyException {
+        String key = (onDuplicateKey ? "upsert:" : "insert:") + data.getName();
+        TableStatement statement = statements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+        ArrayList<Column> columns = new ArrayList<Column>();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (Column column : data.getColumns()) {
+            if (column.autoIncrement() && !onDuplicateKey) {
+                continue;
+            }
+            columns.add(column);
+            fields.append("`").append(column.columnName()).append("`").append(",");
+            values.append("?").append(",");
+            if (!column.autoIncrement()) {
+                updates.append("`").append(column.columnName()).append("`=VALUES(`").append(column.columnName()).append("`),");
+            }
+        }
+        if (fields.length() > 0) {
+            fields.deleteCharAt(fields.length() - 1);
+        }
+        if (values.length() > 0) {
+            values.deleteCharAt(values.length() - 1);
+        }
+        if (updates.length() > 0) {
+            updates.deleteCharAt(updates.length() - 1);
+        }
+        String sql = "INSERT INTO `" + data.getName() + "` (" + fields.toString() + ") VALUES(" + values.toString() + ")";
+        if (onDuplicateKey) {
+            sql += " ON DUPLICATE KEY UPDATE " + updates.toString();
+        }
+        statement = new TableStatement(sql, columns, new ArrayList<Column>(0));
+        statements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Gets the UPDATE statement for the table of the given DataAccess that updates the first row matching the given filter fields.
+     *
+     * @param data
+     *         the DataAccess describing the table
+     * @param filters
+     *         the filters, only their field names matter
+     *
+     * @return the statement
+     *
+     * @throws DatabaseTableInconsistencyException
+     * @throws DatabaseWriteException
+     *         when a filter names a column that does not exist
+     */
+    private TableStatement getUpdateStatement(DataAccess data, Map<String, Object> filters) throws DatabaseTableInconsistencyException, DatabaseWriteException {
+        String key = "update:" + data.getName() + ":" + new TreeSet<String>(filters.keySet());
+        TableStatement statement = statements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+        ArrayList<Column> columns = new ArrayList<Column>();
+        StringBuilder sb = new StringBuilder();
+        for (Column column : data.getColumns()) {
+            if (!column.autoIncrement()) {
+                columns.add(column);
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append("`").append(column.columnName()).append("`=?");
+            }
+        }
+        ArrayList<Column> filterColumns = new ArrayList<Column>();
+        for (String fieldName : new TreeSet<String>(filters.keySet())) {
+            Column col = data.getColumnForName(fieldName);
+            if (col == null) {
+                throw new DatabaseWriteException("Error updating MySQL rows in " + data.getName() + ". Column " + fieldName + " does not exist!");
+            }
+            sb.append(filterColumns.isEmpty() ? " WHERE " : " AND ");
+            sb.append("`").append(fieldName).append("`=?");
+            filterColumns.add(col);
+        }
+        statement = new TableStatement("UPDATE `" + data.getName() + "` SET " + sb.toString() + " LIMIT 1", columns, filterColumns);
+        statements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Sets the values and filters to a statement in the order the statement expects them.
+     *
+     * @param ps
+     *         the prepared statement
+     * @param statement
+     *         the statement description
+     * @param entry
+     *         the column values
+     * @param filters
+     *         the filter values, may be null if the statement has no filters
+     *
+     * @throws DatabaseWriteException
+     */
+    private void bind(PreparedStatement ps, TableStatement statement, HashMap<Column, Object> entry, Map<String, Object> filters) throws DatabaseWriteException {
+        int index = 1;
+        for (Column column : statement.columns) {
+            setToStatement(index++, entry.get(column), ps, column);
+        }
+        for (Column column : statement.filters) {
+            setToStatement(index++, filters.get(column.columnName()), ps, column);
+        }
+    }
+
     /**
      * Sets the given object as the given type to the given index
      * of the given PreparedStatement.
@@ -691,6 +989,9 @@ public class MySQLDatabase extends Database {
             if (t.isList()) {
                 ps.setString(index, getString((List<?>) o));
             }
+            else if (o == null) {
+                ps.setNull(index, Types.NULL);
+            }
             else {
                 switch (t.dataType()) {
                     case BYTE:
@@ -846,6 +1147,34 @@ public class MySQLDatabase extends Database {
         return sb.toString();
     }
 
+    /**
+     * Executes the batch of the given statement in one transaction.
+     * If one statement fails, none of them is applied.
+     *
+     * @param conn
+     *         the connection the statement belongs to
+     * @param ps
+     *         the prepared statement with the batch
+     *
+     * @throws SQLException
+     *         when executing the batch failed
+     */
+    private void executeBatch(Connection conn, PreparedStatement ps) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            ps.executeBatch();
+            conn.commit();
+        }
+        catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        }
+        finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
     /**
      * Close a set of working data.
      * This will return all the data to the connection pool.
@@ -875,4 +1204,17 @@ public class MySQLDatabase extends Database {
         }
 
     }
+
+    /** Generated SQL for one table, with the columns in the order their values are set */
+    private static final class TableStatement {
+        private final String sql;
+        private final Column[] columns;
+        private final Column[] filters;
+
+        TableStatement(String sql, List<Column> columns, List<Column> filters) {
+            this.sql = sql;
+            this.columns = columns.toArray(new Column[columns.size()]);
+            this.filters = filters.toArray(new Column[filters.size()]);
+        }
+    }
 }
@@ -5,6 +5,7 @@ import net.canarymod.database.Column.DataType;
 import net.canarymod.database.DataAccess;
 import net.canarymod.database.Database;
 import net.canarymod.database.JdbcConnectionManager;
+import net.canarymod.database.RowHandler;
 import net.canarymod.database.exceptions.DatabaseAccessException;
 import net.canarymod.database.exceptions.DatabaseReadException;
 import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
@@ -24,6 +25,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 
@@ -31,12 +34,19 @@ import static net.canarymod.Canary.log;
 
 /**
  * SQLite Database
+ * <p/>
+ * There is a single connection to SQLite, everything that uses it holds the monitor of this database,
+ * so statements from other threads cannot end up in a batch transaction or be rolled back with it.
  *
  * @author Jason (darkdiplomat)
  */
 public class SQLiteDatabase extends Database {
 
     private static SQLiteDatabase instance;
+    // Fetch size for streamed reads
+    private static final int STREAM_FETCH_SIZE = 256;
+    // Generated insert and update statements by table and filter fields
+    private final ConcurrentHashMap<String, TableStatement> statements = new ConcurrentHashMap<String, TableStatement>();
     private final String LIST_REGEX = "\u00B6";
     private final String NULL_STRING = "NULL";
 
@@ -65,45 +75,16 @@ public class SQLiteDatabase extends Database {
     }
 
     @Override
-    public void insert(DataAccess data) throws DatabaseWriteException {
+    public synchronized void insert(DataAccess data) throws DatabaseWriteException {
         if (doesEntryExist(data)) {
             return;
         }
         PreparedStatement ps = null;
 
         try {
-            StringBuilder fields = new StringBuilder();
-            StringBuilder values = new StringBuilder();
-            HashMap<Column, Object> columns = data.toDatabaseEntryList();
-            Iterator<Column> it = columns.keySet().iterator();
-
-            Column column;
-            while (it.hasNext()) {
-                column = it.next();
-                if (!column.autoIncrement()) {
-                    fields.append("`").append(column.columnName()).append("`").append(",");
-                    values.append("?").append(",");
-                }
-            }
-            if (fields.length() > 0) {
-                fields.deleteCharAt(fields.length() - 1);
-            }
-            if (values.length() > 0) {
-                values.deleteCharAt(values.length() - 1);
-            }
-            String state = "INSERT INTO `" + data.getName() + "` (" + fields.toString() + ") VALUES(" + values.toString() + ")";
-            ps = JdbcConnectionManager.getConnection().prepareStatement(state);
-
-            int i = 1;
-            for (Column c : columns.keySet()) {
-                if (!c.autoIncrement()) {
-                    if (c.isList()) {
-                        ps.setString(i, getString((List<?>) columns.get(c)));
-                    }
-                    ps.setObject(i, convert(columns.get(c)));
-                    i++;
-                }
-            }
+            TableStatement insert = getInsertStatement(data);
+            ps = JdbcConnectionManager.getConnection().prepareStatement(insert.sql);
+            bind(ps, insert, data.toDatabaseEntryList(), null);
 
             if (ps.executeUpdate() == 0) {
                 throw new DatabaseWriteException("Error inserting SQLite: no rows updated!");
@@ -122,35 +103,50 @@ public class SQLiteDatabase extends Database {
     }
 
     @Override
-    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
-        if (!doesEntryExist(data)) {
+    public synchronized void insertBatch(List<DataAccess> data) throws DatabaseWriteException {
+        if (data.isEmpty()) {
             return;
         }
         Connection conn = JdbcConnectionManager.getConnection();
-        ResultSet rs = null;
+        PreparedStatement ps = null;
 
         try {
-            rs = this.getResultSet(conn, data, filters, true);
-            if (rs != null) {
-                if (rs.next()) {
-                    HashMap<Column, Object> columns = data.toDatabaseEntryList();
-                    Iterator<Column> it = columns.keySet().iterator();
-                    Column column;
-                    while (it.hasNext()) {
-                        column = it.next();
-                        if (column.isList()) {
-                            rs.updateObject(column.columnName(), this.getString((List<?>) columns.get(column)));
-                        }
-                        else {
-                            rs.updateObject(column.columnName(), columns.get(column));
-                        }
-                    }
-                    rs.updateRow();
-                }
-                else {
-                    throw new DatabaseWriteException("Error updating DataAccess to SQLite, no such entry: " + data.toString());
+            TableStatement insert = getInsertStatement(data.get(0));
+            ps = conn.prepareStatement(insert.sql);
+
+            int batched = 0;
+            for (DataAccess da : data) {
+                if (doesEntryExist(da)) {
+                    continue;
                 }
+                bind(ps, insert, da.toDatabaseEntryList(), null);
+                ps.addBatch();
+                batched++;
             }
+            if (batched > 0) {
+                executeBatch(conn, ps);
+            }
+        }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error batch inserting SQLite in " + data.get(0).getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
+        }
+        finally {
+            close(null, ps, null);
+        }
+    }
+
+    @Override
+    public synchronized void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        PreparedStatement ps = null;
+
+        try {
+            TableStatement update = getUpdateStatement(data, filters);
+            ps = JdbcConnectionManager.getConnection().prepareStatement(update.sql);
+            bind(ps, update, data.toDatabaseEntryList(), filters);
+            ps.executeUpdate();
         }
         catch (SQLException ex) {
             log.error(ex.getMessage(), ex);
@@ -158,44 +154,96 @@ public class SQLiteDatabase extends Database {
         catch (DatabaseTableInconsistencyException dtie) {
             log.error(dtie.getMessage(), dtie);
         }
-        catch (DatabaseReadException e) {
-            log.error(e.getMessage(), e);
+        finally {
+            close(null, ps, null);
+        }
+    }
+
+    @Override
+    public synchronized void updateBatch(List<DataAccess> data, List<Map<String, Object>> filters) throws DatabaseWriteException {
+        if (data.isEmpty()) {
+            return;
+        }
+        Connection conn = JdbcConnectionManager.getConnection();
+        PreparedStatement ps = null;
+
+        try {
+            TableStatement update = getUpdateStatement(data.get(0), filters.get(0));
+            ps = conn.prepareStatement(update.sql);
+
+            for (int i = 0; i < data.size(); i++) {
+                bind(ps, update, data.get(i).toDatabaseEntryList(), filters.get(i));
+                ps.addBatch();
+            }
+            executeBatch(conn, ps);
+        }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error batch updating SQLite in " + data.get(0).getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
         }
         finally {
-            PreparedStatement st = null;
-            try {
-                st = rs != null && rs.getStatement() instanceof PreparedStatement ? (PreparedStatement) rs.getStatement() : null;
+            close(null, ps, null);
+        }
+    }
+
+    @Override
+    public synchronized void upsert(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        Connection conn = JdbcConnectionManager.getConnection();
+        PreparedStatement ps = null;
+
+        try {
+            // The bundled SQLite has no INSERT ... ON CONFLICT yet, the update tells if the insert is needed
+            HashMap<Column, Object> entry = data.toDatabaseEntryList();
+            TableStatement update = getUpdateStatement(data, filters);
+            ps = conn.prepareStatement(update.sql);
+            bind(ps, update, entry, filters);
+            if (ps.executeUpdate() > 0) {
+                return;
             }
-            catch (SQLException e) {
-                log.error(e.getMessage(), e);
+            ps.close();
+            TableStatement insert = getInsertStatement(data);
+            ps = conn.prepareStatement(insert.sql);
+            bind(ps, insert, entry, null);
+            if (ps.executeUpdate() == 0) {
+                throw new DatabaseWriteException("Error inserting SQLite: no rows updated!");
             }
-            close(conn, st, rs);
+        }
+        catch (SQLException ex) {
+            throw new DatabaseWriteException("Error upserting SQLite in " + data.getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            log.error(dtie.getMessage(), dtie);
+        }
+        finally {
+            close(null, ps, null);
         }
     }
 
     @Override
-    public void remove(DataAccess dataAccess, Map<String, Object> filters) throws DatabaseWriteException {
+    public synchronized void remove(DataAccess dataAccess, Map<String, Object> filters) throws DatabaseWriteException {
         Connection conn = JdbcConnectionManager.getConnection();
 
         this.deleteRows(conn, dataAccess, filters, false);
     }
 
     @Override
-    public void removeAll(DataAccess dataAccess, Map<String, Object> filters) throws DatabaseWriteException {
+    public synchronized void removeAll(DataAccess dataAccess, Map<String, Object> filters) throws DatabaseWriteException {
         Connection conn = JdbcConnectionManager.getConnection();
 
         this.deleteRows(conn, dataAccess, filters, true);
     }
 
     @Override
-    public void load(DataAccess dataset, Map<String, Object> filters) throws DatabaseReadException {
+    public synchronized void load(DataAccess dataset, Map<String, Object> filters) throws DatabaseReadException {
         ResultSet rs = null;
         HashMap<String, Object> dataSet = new HashMap<String, Object>();
         try {
             rs = this.getResultSet(JdbcConnectionManager.getConnection(), dataset, filters, true);
             if (rs != null) {
                 if (rs.next()) {
-                    for (Column column : dataset.getTableLayout()) {
+                    for (Column column : dataset.getColumns()) {
                         if (column.isList()) {
                             dataSet.put(column.columnName(), getList(column.dataType(), rs.getString(column.columnName())));
                         }
@@ -240,26 +288,14 @@ public class SQLiteDatabase extends Database {
     }
 
     @Override
-    public void loadAll(DataAccess typeTemplate, List<DataAccess> datasets, Map<String, Object> filters) throws DatabaseReadException {
+    public synchronized void loadAll(DataAccess typeTemplate, List<DataAccess> datasets, Map<String, Object> filters) throws DatabaseReadException {
         ResultSet rs = null;
         List<HashMap<String, Object>> stuff = new ArrayList<HashMap<String, Object>>();
         try {
             rs = this.getResultSet(JdbcConnectionManager.getConnection(), typeTemplate, filters, false);
             if (rs != null) {
                 while (rs.next()) {
-                    HashMap<String, Object> dataSet = new HashMap<String, Object>();
-                    for (Column column : typeTemplate.getTableLayout()) {
-                        if (column.isList()) {
-                            dataSet.put(column.columnName(), getList(column.dataType(), rs.getString(column.columnName())));
-                        }
-                        else if (column.dataType() == DataType.BOOLEAN) {
-                            dataSet.put(column.columnName(), rs.getBoolean(column.columnName()));
-                        }
-                        else {
-                            dataSet.put(column.columnName(), rs.getObject(column.columnName()));
-                        }
-                    }
-                    stuff.add(dataSet);
+                    stuff.add(readRow(rs, typeTemplate));
                 }
             }
 
@@ -298,7 +334,47 @@ public class SQLiteDatabase extends Database {
     }
 
     @Override
-    public void updateSchema(DataAccess schemaTemplate) throws DatabaseWriteException {
+    public synchronized void stream(DataAccess typeTemplate, Map<String, Object> filters, boolean reuseInstance, RowHandler handler) throws DatabaseReadException {
+        ResultSet rs = null;
+        Connection conn = JdbcConnectionManager.getConnection();
+        try {
+            rs = this.getResultSet(conn, typeTemplate, filters, false, STREAM_FETCH_SIZE);
+            DataAccess row = null;
+            while (rs.next()) {
+                if (row == null || !reuseInstance) {
+                    row = typeTemplate.getInstance();
+                }
+                row.load(readRow(rs, typeTemplate));
+                if (!handler.handle(row)) {
+                    break;
+                }
+            }
+        }
+        catch (SQLException ex) {
+            throw new DatabaseReadException("Error streaming SQLite rows in " + typeTemplate.getName(), ex);
+        }
+        catch (DatabaseTableInconsistencyException dtie) {
+            throw new DatabaseReadException("Error streaming SQLite rows in " + typeTemplate.getName(), dtie);
+        }
+        catch (DatabaseAccessException dae) {
+            throw new DatabaseReadException("Error streaming SQLite rows in " + typeTemplate.getName(), dae);
+        }
+        finally {
+            try {
+                if (rs != null) {
+                    PreparedStatement st = rs.getStatement() instanceof PreparedStatement ? (PreparedStatement) rs.getStatement() : null;
+                    close(null, st, rs);
+                }
+            }
+            catch (SQLException ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void updateSchema(DataAccess schemaTemplate) throws DatabaseWriteException {
+        forgetStatements(schemaTemplate.getName());
         ResultSet rs = null;
 
         try {
@@ -317,7 +393,7 @@ public class SQLiteDatabase extends Database {
 
                 LinkedList<String> toRemove = new LinkedList<String>();
                 HashMap<String, Column> toAdd = new HashMap<String, Column>();
-                Iterator<Column> it = schemaTemplate.getTableLayout().iterator();
+                Iterator<Column> it = schemaTemplate.getColumns().iterator();
 
                 Column column;
                 while (it.hasNext()) {
@@ -355,7 +431,7 @@ public class SQLiteDatabase extends Database {
         }
     }
 
-    public void createTable(DataAccess data) throws DatabaseWriteException {
+    public synchronized void createTable(DataAccess data) throws DatabaseWriteException {
         PreparedStatement ps = null;
 
         try {
@@ -407,7 +483,7 @@ public class SQLiteDatabase extends Database {
         }
     }
 
-    public void insertColumn(String tableName, Column column) throws DatabaseWriteException {
+    public synchronized void insertColumn(String tableName, Column column) throws DatabaseWriteException {
         PreparedStatement ps = null;
 
         try {
@@ -427,7 +503,7 @@ public class SQLiteDatabase extends Database {
 
     // SQLite sucks.
     // precondition: toRetain is not null and not empty.
-    public void retainColumns(DataAccess table, List<String> toRetain) throws DatabaseWriteException {
+    public synchronized void retainColumns(DataAccess table, List<String> toRetain) throws DatabaseWriteException {
         Statement stmt = null;
 
         try {
@@ -464,7 +540,7 @@ public class SQLiteDatabase extends Database {
         }
     }
 
-    public boolean doesEntryExist(DataAccess data) throws DatabaseWriteException {
+    public synchronized boolean doesEntryExist(DataAccess data) throws DatabaseWriteException {
         PreparedStatement ps = null;
         ResultSet rs = null;
         boolean toRet = false;
@@ -548,7 +624,58 @@ public class SQLiteDatabase extends Database {
 
     }
 
-    public ResultSet getResultSet(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne) throws DatabaseReadException {
+    /**
+     * Reads the current row of a result set into a data set for {@link DataAccess#load(java.util.HashMap)}
+     *
+     * @param rs
+     *         the result set, positioned on the row to read
+     * @param typeTemplate
+     *         the DataAccess describing the table
+     *
+     * @return the data set
+     *
+     * @throws SQLException
+     * @throws DatabaseTableInconsistencyException
+     */
+    private HashMap<String, Object> readRow(ResultSet rs, DataAccess typeTemplate) throws SQLException, DatabaseTableInconsistencyException {
+        HashMap<String, Object> dataSet = new HashMap<String, Object>();
+        for (Column column : typeTemplate.getColumns()) {
+            if (column.isList()) {
+                dataSet.put(column.columnName(), getList(column.dataType(), rs.getString(column.columnName())));
+            }
+            else if (column.dataType() == DataType.BOOLEAN) {
+                dataSet.put(column.columnName(), rs.getBoolean(column.columnName()));
+            }
+            else {
+                dataSet.put(column.columnName(), rs.getObject(column.columnName()));
+            }
+        }
+        return dataSet;
+    }
+
+    public synchronized ResultSet getResultSet(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne) throws DatabaseReadException {
+        return getResultSet(conn, data, filters, limitOne, 0);
+    }
+
+    /**
+     * Runs a SELECT on the table of the given DataAccess.
+     *
+     * @param conn
+     *         the connection to use
+     * @param data
+     *         the DataAccess describing the table
+     * @param filters
+     *         FieldName->Value map to filter which rows should be selected
+     * @param limitOne
+     *         true to select only the first matching row
+     * @param fetchSize
+     *         the JDBC fetch size hint, 0 to leave the driver default
+     *
+     * @return the result set
+     *
+     * @throws DatabaseReadException
+     */
+    public synchronized ResultSet getResultSet(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne, int fetchSize) throws DatabaseReadException {
         PreparedStatement ps;
         ResultSet toRet;
 
@@ -588,6 +715,9 @@ public class SQLiteDatabase extends Database {
                     ps = conn.prepareStatement("SELECT * FROM `" + data.getName() + "`");
                 }
             }
+            if (fetchSize != 0) {
+                ps.setFetchSize(fetchSize);
+            }
             toRet = ps.executeQuery();
         }
         catch (SQLException ex) {
@@ -600,7 +730,7 @@ public class SQLiteDatabase extends Database {
         return toRet;
     }
 
-    public void deleteRows(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne) throws DatabaseWriteException {
+    public synchronized void deleteRows(Connection conn, DataAccess data, Map<String, Object> filters, boolean limitOne) throws DatabaseWriteException {
         PreparedStatement ps;
         try {
             if (filters.size() > 0) {
@@ -692,7 +822,187 @@ public class SQLiteDatabase extends Database {
 
     }
 
-    public List<String> getColumnNames(DataAccess data) {
+    /**
+     * Drops the generated statements of a table, so they are generated anew for its current columns.
+     *
+     * @param table
+     *         the table name
+     */
+    private void forgetStatements(String table) {
+        Iterator<String> it = statements.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.equals("insert:" + table) || key.equals("upsert:" + table) || key.startsWith("update:" + table + ":")) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the INSERT statement for the table of the given DataAccess.
+     *
+     * @param data
+     *         the DataAccess describing the table
+     *
+     * @return the statement
+     *
+     * @throws DatabaseTableInconsistencyException
+     */
+    private TableStatement getInsertStatement(DataAccess data) throws DatabaseTableInconsistencyException {
+        String key = "insert:" + data.getName();
+        TableStatement statement = statements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+        ArrayList<Column> columns = new ArrayList<Column>();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (Column column : data.getColumns()) {
+            if (!column.autoIncrement()) {
+                columns.add(column);
+                fields.append("`").append(column.columnName()).append("`").append(",");
+                values.append("?").append(",");
+            }
+        }
+        if (fields.length() > 0) {
+            fields.deleteCharAt(fields.length() - 1);
+        }
+        if (values.length() > 0) {
+            values.deleteCharAt(values.length() - 1);
+        }
+        String sql = "INSERT INTO `" + data.getName() + "` (" + fields.toString() + ") VALUES(" + values.toString() + ")";
+        statement = new TableStatement(sql, columns, new ArrayList<Column>(0));
+        statements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Gets the UPDATE statement for the table of the given DataAccess that updates the first row matching the given filter fields.
+     *
+     * @param data
+     *         the DataAccess describing the table
+     * @param filters
+     *         the filters, only their field names matter
+     *
+     * @return the statement
+     *
+     * @throws DatabaseTableInconsistencyException
+     * @throws DatabaseWriteException
+     *         when a filter names a column that does not exist
+     */
+    private TableStatement getUpdateStatement(DataAccess data, Map<String, Object> filters) throws DatabaseTableInconsistencyException, DatabaseWriteException {
+        String key = "update:" + data.getName() + ":" + new TreeSet<String>(filters.keySet());
+        TableStatement statement = statements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+        ArrayList<Column> columns = new ArrayList<Column>();
+        StringBuilder sb = new StringBuilder();
+        for (Column column : data.getColumns()) {
+            if (!column.autoIncrement()) {
+                columns.add(column);
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append("`").append(column.columnName()).append("`=?");
+            }
+        }
+        // SQLite has no UPDATE ... LIMIT, pick the first matching row by its rowid instead
+        sb.append(" WHERE rowid IN (SELECT rowid FROM `").append(data.getName()).append("`");
+        ArrayList<Column> filterColumns = new ArrayList<Column>();
+        for (String fieldName : new TreeSet<String>(filters.keySet())) {
+            Column col = data.getColumnForName(fieldName);
+            if (col == null) {
+                throw new DatabaseWriteException("Error updating SQLite rows in " + data.getName() + ". Column " + fieldName + " does not exist!");
+            }
+            sb.append(filterColumns.isEmpty() ? " WHERE " : " AND ");
+            sb.append("`").append(fieldName).append("`=?");
+            filterColumns.add(col);
+        }
+        sb.append(" LIMIT 1)");
+        statement = new TableStatement("UPDATE `" + data.getName() + "` SET " + sb.toString(), columns, filterColumns);
+        statements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Sets the values and filters to a statement in the order the statement expects them.
+     *
+     * @param ps
+     *         the prepared statement
+     * @param statement
+     *         the statement description
+     * @param entry
+     *         the column values
+     * @param filters
+     *         the filter values, may be null if the statement has no filters
+     *
+     * @throws SQLException
+     *         when a value could not be set
+     */
+    private void bind(PreparedStatement ps, TableStatement statement, HashMap<Column, Object> entry, Map<String, Object> filters) throws SQLException {
+        int index = 1;
+        for (Column column : statement.columns) {
+            setValue(index++, entry.get(column), ps, column);
+        }
+        for (Column column : statement.filters) {
+            setValue(index++, filters.get(column.columnName()), ps, column);
+        }
+    }
+
+    /**
+     * Sets a value to a statement, lists are stored as their string form.
+     *
+     * @param index
+     *         the index to set to
+     * @param o
+     *         the object to set
+     * @param ps
+     *         the prepared statement
+     * @param column
+     *         the column the value belongs to
+     *
+     * @throws SQLException
+     *         when the value could not be set
+     */
+    private void setValue(int index, Object o, PreparedStatement ps, Column column) throws SQLException {
+        if (column.isList()) {
+            ps.setString(index, getString((List<?>) o));
+        }
+        else {
+            ps.setObject(index, convert(o));
+        }
+    }
+
+    /**
+     * Executes the batch of the given statement in one transaction.
+     * If one statement fails, none of them is applied.
+     *
+     * @param conn
+     *         the connection the statement belongs to
+     * @param ps
+     *         the prepared statement with the batch
+     *
+     * @throws SQLException
+     *         when executing the batch failed
+     */
+    private void executeBatch(Connection conn, PreparedStatement ps) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            ps.executeBatch();
+            conn.commit();
+        }
+        catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        }
+        finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public synchronized List<String> getColumnNames(DataAccess data) {
         Statement s = null;
         ResultSet rs = null;
 
@@ -865,4 +1175,17 @@ public class SQLiteDatabase extends Database {
         }
         return sb.toString();
     }
+
+    /** Generated SQL for one table, with the columns in the order their values are set */
+    private static final class TableStatement {
+        private final String sql;
+        private final Column[] columns;
+        private final Column[] filters;
+
+        TableStatement(String sql, List<Column> columns, List<Column> filters) {
+            this.sql = sql;
+            this.columns = columns.toArray(new Column[columns.size()]);
+            this.filters = filters.toArray(new Column[filters.size()]);
+        }
+    }
 }
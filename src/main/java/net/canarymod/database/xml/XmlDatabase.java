@@ -1,33 +1,30 @@
 package net.canarymod.database.xml;
 
+import net.canarymod.config.Configuration;
 import net.canarymod.database.Column;
 import net.canarymod.database.Column.DataType;
 import net.canarymod.database.DataAccess;
 import net.canarymod.database.Database;
+import net.canarymod.database.RowHandler;
 import net.canarymod.database.exceptions.DatabaseAccessException;
 import net.canarymod.database.exceptions.DatabaseReadException;
 import net.canarymod.database.exceptions.DatabaseTableInconsistencyException;
 import net.canarymod.database.exceptions.DatabaseWriteException;
-import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import static net.canarymod.Canary.log;
+
 /**
  * Represent access to an XML database
  *
@@ -52,32 +49,27 @@ public class XmlDatabase extends Database {
         return instance;
     }
 
-    /** Used to serialize the XML data into a bytestream */
-    private XMLOutputter xmlSerializer = new XMLOutputter(Format.getPrettyFormat().setExpandEmptyElements(true).setOmitDeclaration(true).setOmitEncoding(true).setLineSeparator("\n"));
+    /** Writes back the journaled XML tables, if the XML database was used at all */
+    public static void shutdown() {
+        if (instance != null) {
+            instance.compactAll();
+        }
+    }
 
     private SAXBuilder fileBuilder = new SAXBuilder();
+    // Tables that were read already, by name. Guarded by itself, each table by its own monitor
+    private final HashMap<String, XmlTable> tables = new HashMap<String, XmlTable>();
 
     @Override
     public void insert(DataAccess data) throws DatabaseWriteException {
-        File file = new File("db/" + data.getName() + ".xml");
+        try {
+            XmlTable table = getTable(data.getName(), true);
 
-        if (!file.exists()) {
-            try {
-                file.createNewFile();
-                initFile(file, data.getName());
-            }
-            catch (IOException e) {
-                throw new DatabaseWriteException(e.getMessage());
+            synchronized (table) {
+                table.rowChanged(insertData(data, table.getDocument()));
+                commit(table);
             }
         }
-        Document dbTable;
-
-        try {
-            FileInputStream in = new FileInputStream(file);
-            dbTable = fileBuilder.build(in);
-            in.close();
-            insertData(file, data, dbTable);
-        }
         catch (JDOMException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
         }
@@ -91,18 +83,15 @@ public class XmlDatabase extends Database {
 
     @Override
     public void load(DataAccess data, Map<String, Object> filters) throws DatabaseReadException {
-        File file = new File("db/" + data.getName() + ".xml");
-
-        if (!file.exists()) {
-            throw new DatabaseReadException("Table " + data.getName() + " does not exist!");
-        }
-
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(data.getName(), false);
 
-            loadData(data, table, filters);
+            if (table == null) {
+                throw new DatabaseReadException("Table " + data.getName() + " does not exist!");
+            }
+            synchronized (table) {
+                loadData(data, table, filters);
+            }
         }
         catch (JDOMException e) {
             throw new DatabaseReadException(e.getMessage(), e);
@@ -117,18 +106,15 @@ public class XmlDatabase extends Database {
 
     @Override
     public void loadAll(DataAccess typeTemplate, List<DataAccess> datasets, Map<String, Object> filters) throws DatabaseReadException {
-        File file = new File("db/" + typeTemplate.getName() + ".xml");
-
-        if (!file.exists()) {
-            throw new DatabaseReadException("Table " + typeTemplate.getName() + " does not exist!");
-        }
-
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(typeTemplate.getName(), false);
 
-            loadAllData(typeTemplate, datasets, table, filters);
+            if (table == null) {
+                throw new DatabaseReadException("Table " + typeTemplate.getName() + " does not exist!");
+            }
+            synchronized (table) {
+                loadAllData(typeTemplate, datasets, table, filters);
+            }
         }
         catch (JDOMException e) {
             throw new DatabaseReadException(e.getMessage(), e);
@@ -143,19 +129,63 @@ public class XmlDatabase extends Database {
     }
 
     @Override
-    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
-        File file = new File("db/" + data.getName() + ".xml");
+    public void stream(DataAccess typeTemplate, Map<String, Object> filters, boolean reuseInstance, RowHandler handler) throws DatabaseReadException {
+        String[] fields = new String[filters.size()];
+        filters.keySet().toArray(fields); // We know those are strings
+
+        try {
+            XmlTable table = getTable(typeTemplate.getName(), false);
 
-        if (!file.exists()) {
-            throw new DatabaseWriteException("Table " + data.getName() + " does not exist!");
+            if (table == null) {
+                throw new DatabaseReadException("Table " + typeTemplate.getName() + " does not exist!");
+            }
+            List<Element> rows;
+            synchronized (table) {
+                rows = table.candidates(filters);
+            }
+            DataAccess row = null;
+
+            // The table is only locked per row, so the handler can write to it
+            for (Element element : rows) {
+                HashMap<String, Object> dataSet;
+                synchronized (table) {
+                    if (element.getParent() == null || !matches(element, fields, filters)) {
+                        continue; // Removed in the meantime or not the entry we're looking for
+                    }
+                    dataSet = toDataSet(element);
+                }
+                if (row == null || !reuseInstance) {
+                    row = typeTemplate.getInstance();
+                }
+                row.load(dataSet);
+                if (!handler.handle(row)) {
+                    break;
+                }
+            }
+        }
+        catch (JDOMException e) {
+            throw new DatabaseReadException(e.getMessage(), e);
         }
+        catch (IOException e) {
+            throw new DatabaseReadException(e.getMessage(), e);
+        }
+        catch (DatabaseAccessException e) {
+            throw new DatabaseReadException(e.getMessage(), e);
+        }
+    }
 
+    @Override
+    public void update(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(data.getName(), false);
 
-            updateData(file, table, data, filters);
+            if (table == null) {
+                throw new DatabaseWriteException("Table " + data.getName() + " does not exist!");
+            }
+            synchronized (table) {
+                updateOrInsert(table, data, filters);
+                commit(table);
+            }
         }
         catch (JDOMException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
@@ -169,19 +199,25 @@ public class XmlDatabase extends Database {
     }
 
     @Override
-    public void remove(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
-        File file = new File("db/" + data.getName() + ".xml");
+    public void upsert(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        // update inserts already if nothing matched
+        update(data, filters);
+    }
 
-        if (!file.exists()) {
-            throw new DatabaseWriteException("Table " + data.getName() + " does not exist!");
+    @Override
+    public void insertBatch(List<DataAccess> data) throws DatabaseWriteException {
+        if (data.isEmpty()) {
+            return;
         }
-
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(data.get(0).getName(), true);
 
-            removeData(file, table, filters, false);
+            synchronized (table) {
+                for (DataAccess da : data) {
+                    table.rowChanged(insertData(da, table.getDocument()));
+                }
+                commit(table);
+            }
         }
         catch (JDOMException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
@@ -189,22 +225,28 @@ public class XmlDatabase extends Database {
         catch (IOException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
         }
+        catch (DatabaseTableInconsistencyException e) {
+            throw new DatabaseWriteException(e.getMessage(), e);
+        }
     }
 
     @Override
-    public void removeAll(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
-        File file = new File("db/" + data.getName() + ".xml");
-
-        if (!file.exists()) {
-            throw new DatabaseWriteException("Table " + data.getName() + " does not exist!");
+    public void updateBatch(List<DataAccess> data, List<Map<String, Object>> filters) throws DatabaseWriteException {
+        if (data.isEmpty()) {
+            return;
         }
-
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(data.get(0).getName(), false);
 
-            removeData(file, table, filters, true);
+            if (table == null) {
+                throw new DatabaseWriteException("Table " + data.get(0).getName() + " does not exist!");
+            }
+            synchronized (table) {
+                for (int i = 0; i < data.size(); i++) {
+                    updateOrInsert(table, data.get(i), filters.get(i));
+                }
+                commit(table);
+            }
         }
         catch (JDOMException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
@@ -212,33 +254,57 @@ public class XmlDatabase extends Database {
         catch (IOException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
         }
+        catch (DatabaseTableInconsistencyException e) {
+            throw new DatabaseWriteException(e.getMessage(), e);
+        }
     }
 
     @Override
-    public void updateSchema(DataAccess data) throws DatabaseWriteException {
-        File file = new File("db/" + data.getName() + ".xml");
+    public void remove(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        remove(data, filters, false);
+    }
 
-        if (!file.exists()) {
-            try {
-                file.createNewFile();
-                initFile(file, data.getName());
+    @Override
+    public void removeAll(DataAccess data, Map<String, Object> filters) throws DatabaseWriteException {
+        remove(data, filters, true);
+    }
+
+    private void remove(DataAccess data, Map<String, Object> filters, boolean removeAll) throws DatabaseWriteException {
+        try {
+            XmlTable table = getTable(data.getName(), false);
+
+            if (table == null) {
+                throw new DatabaseWriteException("Table " + data.getName() + " does not exist!");
             }
-            catch (IOException e) {
-                throw new DatabaseWriteException(e.getMessage(), e);
+            synchronized (table) {
+                removeData(table, filters, removeAll);
+                commit(table);
             }
         }
+        catch (JDOMException e) {
+            throw new DatabaseWriteException(e.getMessage(), e);
+        }
+        catch (IOException e) {
+            throw new DatabaseWriteException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void updateSchema(DataAccess data) throws DatabaseWriteException {
         try {
-            FileInputStream in = new FileInputStream(file);
-            Document table = fileBuilder.build(in);
-            in.close();
+            XmlTable table = getTable(data.getName(), true);
 
-            HashSet<Column> tableLayout = data.getTableLayout();
+            synchronized (table) {
+                HashSet<Column> tableLayout = data.getTableLayout();
 
-            for (Element element : table.getRootElement().getChildren()) {
-                addFields(element, tableLayout);
-                removeFields(element, tableLayout);
+                for (Element element : table.getDocument().getRootElement().getChildren()) {
+                    addFields(element, tableLayout);
+                    removeFields(element, tableLayout);
+                }
+                table.schemaChanged();
+                // Touches every row, write it in full
+                table.compact();
             }
-            write(file.getPath(), table);
         }
         catch (JDOMException e) {
             throw new DatabaseWriteException(e.getMessage(), e);
@@ -251,11 +317,87 @@ public class XmlDatabase extends Database {
         }
     }
 
-    private void initFile(File file, String rootName) throws IOException {
-        Document doc = new Document();
+    /**
+     * Writes all tables with journaled writes back to their files and closes the journals.
+     * Should be called when the server goes down, though nothing is lost if it isn't,
+     * the journals are replayed when the tables are read the next time.
+     */
+    public void compactAll() {
+        ArrayList<Map.Entry<String, XmlTable>> toCompact;
+        synchronized (tables) {
+            toCompact = new ArrayList<Map.Entry<String, XmlTable>>(tables.entrySet());
+        }
+        for (Map.Entry<String, XmlTable> entry : toCompact) {
+            XmlTable table = entry.getValue();
+            synchronized (table) {
+                try {
+                    table.close();
+                }
+                catch (IOException e) {
+                    log.error("Could not write back XML table " + entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the in-memory table with the given name, reads it if necessary
+     *
+     * @param name
+     *         the table name
+     * @param create
+     *         true to create the table if it doesn't exist yet
+     *
+     * @return the table or null if it does not exist and create was false
+     *
+     * @throws IOException
+     * @throws JDOMException
+     */
+    private XmlTable getTable(String name, boolean create) throws IOException, JDOMException {
+        XmlTable table;
+        boolean loaded = true;
+
+        synchronized (tables) {
+            table = tables.get(name);
+            if (table == null) {
+                table = new XmlTable(name);
+                if (!table.exists()) {
+                    if (!create) {
+                        return null;
+                    }
+                    table.create();
+                }
+                else {
+                    loaded = false;
+                }
+                tables.put(name, table);
+            }
+        }
+        synchronized (table) {
+            if (!loaded || table.getDocument() == null || table.isStale()) {
+                // First access or the file was edited by hand, (re)read it
+                table.load(fileBuilder);
+            }
+        }
+        return table;
+    }
+
+    private void commit(XmlTable table) throws IOException {
+        table.commit(Configuration.getDbConfig().getXmlJournalMaxEntries(), Configuration.getDbConfig().getXmlCompactInterval() * 1000L);
+    }
 
-        doc.setRootElement(new Element(rootName));
-        write(file.getPath(), doc);
+    private void updateOrInsert(XmlTable table, DataAccess data, Map<String, Object> filters) throws IOException, DatabaseTableInconsistencyException {
+        List<Element> updated = updateData(table, data, filters);
+
+        if (updated.isEmpty()) {
+            // No fields found, that means it is a new entry
+            table.rowChanged(insertData(data, table.getDocument()));
+        }
+        else {
+            for (Element element : updated) {
+                table.rowChanged(element);
+            }
+        }
     }
 
     /**
@@ -307,18 +449,17 @@ public class XmlDatabase extends Database {
     }
 
     /**
-     * Inserts data into the XML file. This does NOT update data.
-     * It will create a new entry if there isn't the exact same already present
+     * Inserts data into the XML document. This does NOT update data.
      *
-     * @param file
      * @param data
      * @param dbTable
      *
-     * @throws IOException
+     * @return the new row element
+     *
      * @throws DatabaseTableInconsistencyException
      *
      */
-    private void insertData(File file, DataAccess data, Document dbTable) throws IOException, DatabaseTableInconsistencyException {
+    private Element insertData(DataAccess data, Document dbTable) throws DatabaseTableInconsistencyException {
         HashMap<Column, Object> entry = data.toDatabaseEntryList();
 
         if (data.isInconsistent()) {
@@ -337,50 +478,28 @@ public class XmlDatabase extends Database {
             col.setAttribute("is-list", String.valueOf(column.isList()));
             addToElement(dbTable, col, entry.get(column), column);
             set.addContent(col);
-
-            boolean foundDupe = false;
-
-            for (Element c : dbTable.getRootElement().getChildren()) {
-                if (elementEquals(set, c)) {
-                    foundDupe = true;
-                }
-            }
-            if (!foundDupe) {
-            }
         }
         dbTable.getRootElement().addContent(set);
-        write(file.getPath(), dbTable);
+        return set;
     }
 
     /**
      * Updates an already existing element in the document.
      * IMPORTANT: the lengths of fields and content array must have been checked before this method is called!
      *
-     * @param file
      * @param table
      * @param filters
-     * @throws IOException
-     * @throws DatabaseTableInconsistencyException
      *
-     * @throws DatabaseWriteException
+     * @return the updated row elements, empty if there is no matching entry
+     *
+     * @throws DatabaseTableInconsistencyException
      */
-    private void updateData(File file, Document table, DataAccess data, Map<String, Object> filters) throws IOException, DatabaseTableInconsistencyException, DatabaseWriteException {
-        boolean hasUpdated = false;
+    private List<Element> updateData(XmlTable table, DataAccess data, Map<String, Object> filters) throws DatabaseTableInconsistencyException {
+        ArrayList<Element> updated = new ArrayList<Element>();
         String[] fields = new String[filters.size()];
         filters.keySet().toArray(fields); // We know those are strings
-        for (Element element : table.getRootElement().getChildren()) {
-            int equalFields = 0;
-
-            for (String field : fields) {
-                Element child = element.getChild(field);
-
-                if (child != null) {
-                    if (child.getText().equals(String.valueOf(filters.get(field)))) {
-                        equalFields++;
-                    }
-                }
-            }
-            if (equalFields != fields.length) {
+        for (Element element : table.candidates(filters)) {
+            if (!matches(element, fields, filters)) {
                 continue; // Not the entry we're looking for
             }
 
@@ -400,39 +519,21 @@ public class XmlDatabase extends Database {
                 if (column.autoIncrement()) {
                     continue;
                 }
-                addToElement(table, child, dataSet.get(column), column);
-                hasUpdated = true;
+                addToElement(table.getDocument(), child, dataSet.get(column), column);
             }
+            updated.add(element);
         }
-        if (hasUpdated) {
-            write(file.getPath(), table);
-        }
-        else {
-            // No fields found, that means it is a new entry
-            insert(data);
-        }
+        return updated;
     }
 
-    private void removeData(File file, Document table, Map<String, Object> filters, boolean removeAll) throws IOException {
+    private void removeData(XmlTable table, Map<String, Object> filters, boolean removeAll) throws IOException {
         ArrayList<Element> toremove = new ArrayList<Element>();
         String[] fields = new String[filters.size()];
         filters.keySet().toArray(fields); // We know those are strings
-        for (Element element : table.getRootElement().getChildren()) {
-            int equalFields = 0;
-
-            for (String field : fields) {
-                Element child = element.getChild(field);
-
-                if (child != null) {
-                    if (child.getText().equals(String.valueOf(filters.get(field)))) {
-                        equalFields++;
-                    }
-                }
-            }
-            if (equalFields != fields.length) {
+        for (Element element : table.candidates(filters)) {
+            if (!matches(element, fields, filters)) {
                 continue; // Not the entry we're looking for
             }
-            // table.getRootElement().removeContent(element);
             toremove.add(element);
             if(!removeAll) {
                 // Just remove one row
@@ -440,111 +541,81 @@ public class XmlDatabase extends Database {
             }
         }
         for (Element e : toremove) {
+            table.rowRemoved(e);
             e.detach();
         }
-        write(file.getPath(), table);
     }
 
-    private void loadData(DataAccess data, Document table, Map<String, Object> filters) throws DatabaseAccessException {
+    private void loadData(DataAccess data, XmlTable table, Map<String, Object> filters) throws DatabaseAccessException {
         String[] fields = new String[filters.size()];
         filters.keySet().toArray(fields); // We know those are strings
-        for (Element element : table.getRootElement().getChildren()) {
-            int equalFields = 0;
-
-            for (String field : fields) {
-                Element child = element.getChild(field);
-
-                if (child != null) {
-                    if (child.getText().equals(String.valueOf(filters.get(field)))) {
-                        equalFields++;
-                    }
-                }
-            }
-            if (equalFields != fields.length) {
+        for (Element element : table.candidates(filters)) {
+            if (!matches(element, fields, filters)) {
                 continue; // Not the entry we're looking for
             }
-            HashMap<String, Object> dataSet = new HashMap<String, Object>();
-            for (Element child : element.getChildren()) {
-                DataType type = DataType.fromString(child.getAttributeValue("data-type"));
-                addTypeToMap(child, dataSet, type);
-            }
-            data.load(dataSet);
+            data.load(toDataSet(element));
             return;
         }
     }
 
-    private void loadAllData(DataAccess template, List<DataAccess> datasets, Document table, Map<String, Object> filters) throws DatabaseAccessException {
+    private void loadAllData(DataAccess template, List<DataAccess> datasets, XmlTable table, Map<String, Object> filters) throws DatabaseAccessException {
         String[] fields = new String[filters.size()];
         filters.keySet().toArray(fields); // We know those are strings
-        for (Element element : table.getRootElement().getChildren()) {
-            int equalFields = 0;
-
-            for (String field : fields) {
-                Element child = element.getChild(field);
-
-                if (child != null) {
-                    if (child.getText().equals(String.valueOf(filters.get(field)))) {
-                        equalFields++;
-                    }
-                }
-            }
-            if (equalFields != fields.length) {
+        for (Element element : table.candidates(filters)) {
+            if (!matches(element, fields, filters)) {
                 continue; // Not the entry we're looking for
             }
-            HashMap<String, Object> dataSet = new HashMap<String, Object>();
-
-            for (Element child : element.getChildren()) {
-                DataType type = DataType.fromString(child.getAttributeValue("data-type"));
-
-                addTypeToMap(child, dataSet, type);
-            }
             DataAccess da = template.getInstance();
 
-            da.load(dataSet);
+            da.load(toDataSet(element));
             datasets.add(da);
         }
     }
 
     /**
-     * Performs a field-by-field comparison for the two given Contents.
-     * First they must be of type Element and then the fields are checked against each other.
-     * If the number of equal fields does not match the number of child elements ot Content a,
-     * this method will return false, true otherwise
+     * Checks if the given row element has the filtered values
      *
-     * @param a
-     * @param b
+     * @param element
+     *         the row element
+     * @param fields
+     *         the filtered field names
+     * @param filters
+     *         the filters
      *
-     * @return
+     * @return true if all filtered fields match
      */
-    private boolean elementEquals(Content a, Content b) {
-        if (!(b instanceof Element)) {
-            return false;
-        }
-        if (!(a instanceof Element)) {
-            return false;
-        }
-        if (a == b) {
-            return true;
-        }
-
-        Element elB = (Element) b;
-        Element elA = (Element) a;
+    private boolean matches(Element element, String[] fields, Map<String, Object> filters) {
+        int equalFields = 0;
 
-        if (elA.getContentSize() != elB.getContentSize()) {
-            return false;
-        }
-        int equalHits = 0;
+        for (String field : fields) {
+            Element child = element.getChild(field);
 
-        for (Element el : elA.getChildren()) {
-            for (Element other : elB.getChildren()) {
-                if (el.getName().equals(other.getName())) {
-                    if (el.getText().equalsIgnoreCase(other.getText())) {
-                        equalHits++;
-                    }
+            if (child != null) {
+                if (child.getText().equals(String.valueOf(filters.get(field)))) {
+                    equalFields++;
                 }
             }
         }
-        return equalHits == elA.getChildren().size();
+        return equalFields == fields.length;
+    }
+
+    /**
+     * Reads the fields of a row element into a data set for {@link DataAccess#load(java.util.HashMap)}
+     *
+     * @param element
+     *         the row element
+     *
+     * @return the data set
+     */
+    private HashMap<String, Object> toDataSet(Element element) {
+        HashMap<String, Object> dataSet = new HashMap<String, Object>();
+
+        for (Element child : element.getChildren()) {
+            DataType type = DataType.fromString(child.getAttributeValue("data-type"));
+
+            addTypeToMap(child, dataSet, type);
+        }
+        return dataSet;
     }
 
     /**
@@ -746,25 +817,4 @@ public class XmlDatabase extends Database {
         }
     }
 
-    private void write(String path, Document doc) throws IOException {
-        sortElements(doc);
-        File file = new File(path);
-        RandomAccessFile f = new RandomAccessFile(file.getPath(), "rw");
-        f.getChannel().lock();
-        f.setLength(0);
-        f.write(xmlSerializer.outputString(doc).getBytes(Charset.forName("UTF-8")));
-        f.close();
-    }
-
-    private void sortElements(Document doc) {
-        for (Element e : doc.getRootElement().getChildren()) {
-            e.sortChildren(new Comparator<Element>() {
-                @Override
-                public int compare(Element o1, Element o2) {
-                    return o1.getName().compareTo(o2.getName());
-                }
-            });
-        }
-    }
-
 }
@@ -0,0 +1,487 @@
+package net.canarymod.database.xml;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * An XML table that is kept in memory.
+ * <p/>
+ * Changed and removed rows are appended to a journal file next to the table file instead of rewriting the whole table.
+ * Once the journal grows too large or too old, the table is compacted: written to a temporary file,
+ * which then replaces the table file, and the journal is cleared.
+ * When the table is loaded, a leftover journal is replayed on top of the table file,
+ * so nothing is lost if the server goes down in between.
+ * <p/>
+ * Rows are identified by their id column in the journal. Tables with rows that have no unique id
+ * are written in full on every commit instead.
+ * <p/>
+ * Lookups by filter go through hash indexes of the filtered columns. Primary and unique columns are indexed
+ * when the table is read, other columns the first time they are filtered by.
+ * <p/>
+ * Not thread-safe, synchronize on the table.
+ *
+ * @author Chris (damagefilter)
+ */
+final class XmlTable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String ID = "id";
+
+    /** Used to serialize the XML data into a bytestream */
+    private static final XMLOutputter xmlSerializer = new XMLOutputter(Format.getPrettyFormat().setExpandEmptyElements(true).setOmitDeclaration(true).setOmitEncoding(true).setLineSeparator("\n"));
+    /** Used to serialize journal entries, one per line */
+    private static final XMLOutputter journalSerializer = new XMLOutputter(Format.getRawFormat().setOmitDeclaration(true).setOmitEncoding(true));
+
+    private final String name;
+    private final File file;
+    private final File tempFile;
+    private final File journalFile;
+    private final HashMap<String, Element> rowsById = new HashMap<String, Element>();
+    // Position of each row, index hits are handed out in this order, which is the document order
+    private final HashMap<Element, Long> order = new HashMap<Element, Long>();
+    private long nextOrder;
+    // Column name to index of that column
+    private final HashMap<String, ColumnIndex> indexes = new HashMap<String, ColumnIndex>();
+    private Document doc;
+    // false if rows can't be told apart by their id, the journal can't be used then
+    private boolean journalSafe;
+    private Writer journal;
+    private int journalEntries;
+    private long journalSince;
+    // Modification time of the table file when it was last read or written by us
+    private long lastModified;
+
+    XmlTable(String name) {
+        this.name = name;
+        this.file = new File("db/" + name + ".xml");
+        this.tempFile = new File("db/" + name + ".xml.tmp");
+        this.journalFile = new File("db/" + name + ".journal");
+    }
+
+    /**
+     * Checks if the table file exists. Finishes a compaction that was interrupted after the old file was deleted.
+     *
+     * @return true if the table exists
+     */
+    boolean exists() {
+        if (!file.exists() && tempFile.exists()) {
+            tempFile.renameTo(file);
+        }
+        return file.exists();
+    }
+
+    /**
+     * Creates a new, empty table file
+     *
+     * @throws IOException
+     */
+    void create() throws IOException {
+        doc = new Document();
+        doc.setRootElement(new Element(name));
+        reindex();
+        compact();
+    }
+
+    /**
+     * Reads the table file and replays the journal, if there is one
+     *
+     * @param builder
+     *         the builder to parse with
+     *
+     * @throws IOException
+     * @throws JDOMException
+     */
+    void load(SAXBuilder builder) throws IOException, JDOMException {
+        closeJournal();
+        if (tempFile.exists()) {
+            // Left over from an interrupted compaction, the journal still has everything
+            tempFile.delete();
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            doc = builder.build(in);
+        }
+        finally {
+            in.close();
+        }
+        lastModified = file.lastModified();
+        reindex();
+        journalEntries = 0;
+        if (journalFile.exists()) {
+            int replayed = replay(builder);
+            if (replayed > 0) {
+                log.info("Replayed " + replayed + " journaled write(s) for XML table " + name);
+                reindex();
+                compact();
+            }
+            else {
+                journalFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Drops the column indexes, call after changing the columns of the rows
+     */
+    void schemaChanged() {
+        reindex();
+    }
+
+    /**
+     * Gets the rows that may match the given filters, in document order.
+     * The rows still have to be checked against the filters.
+     *
+     * @param filters
+     *         FieldName->Value map
+     *
+     * @return the candidate rows, a copy that may be modified
+     */
+    List<Element> candidates(Map<String, Object> filters) {
+        if (filters.isEmpty()) {
+            return new ArrayList<Element>(doc.getRootElement().getChildren());
+        }
+        List<Element> best = null;
+        for (Map.Entry<String, Object> filter : filters.entrySet()) {
+            ColumnIndex index = indexes.get(filter.getKey());
+            if (index == null) {
+                index = new ColumnIndex(filter.getKey());
+                for (Element row : doc.getRootElement().getChildren()) {
+                    index.add(row);
+                }
+                indexes.put(filter.getKey(), index);
+            }
+            List<Element> rows = index.get(String.valueOf(filter.getValue()));
+            if (best == null || rows.size() < best.size()) {
+                best = rows;
+                if (best.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<Element>(best);
+    }
+
+    /**
+     * Checks if the table file was changed by someone else since it was read.
+     * Tables with pending journal entries are never stale, they would lose the journaled writes.
+     *
+     * @return true if the table should be loaded again
+     */
+    boolean isStale() {
+        return journalEntries == 0 && file.lastModified() != lastModified;
+    }
+
+    Document getDocument() {
+        return doc;
+    }
+
+    /**
+     * Records a row that was inserted or changed
+     *
+     * @param row
+     *         the row element
+     *
+     * @throws IOException
+     */
+    void rowChanged(Element row) throws IOException {
+        index(row);
+        for (ColumnIndex index : indexes.values()) {
+            index.update(row);
+        }
+        if (journalSafe) {
+            appendToJournal(row);
+        }
+    }
+
+    /**
+     * Records a row that is about to be removed. Call before detaching it.
+     *
+     * @param row
+     *         the row element
+     *
+     * @throws IOException
+     */
+    void rowRemoved(Element row) throws IOException {
+        for (ColumnIndex index : indexes.values()) {
+            index.remove(row);
+        }
+        order.remove(row);
+        String id = row.getChildText(ID);
+        if (id == null || rowsById.get(id) != row) {
+            journalSafe = false;
+            return;
+        }
+        rowsById.remove(id);
+        if (journalSafe) {
+            appendToJournal(new Element("delete").setAttribute(ID, id));
+        }
+    }
+
+    /**
+     * Makes the recorded changes durable. Compacts the table if the journal can't be used,
+     * has reached the given amount of entries or is older than the given time.
+     *
+     * @param maxEntries
+     *         the journal entries that trigger a compaction
+     * @param maxAge
+     *         the journal age in milliseconds that triggers a compaction
+     *
+     * @throws IOException
+     */
+    void commit(int maxEntries, long maxAge) throws IOException {
+        if (!journalSafe || journalEntries >= maxEntries || (journalEntries > 0 && System.currentTimeMillis() - journalSince >= maxAge)) {
+            compact();
+        }
+        else if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    /**
+     * Writes the whole table to its file and clears the journal.
+     * The table is written to a temporary file first, which then replaces the table file.
+     *
+     * @throws IOException
+     */
+    void compact() throws IOException {
+        sortElements(doc);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(xmlSerializer.outputString(doc).getBytes(UTF8));
+            out.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            // Some platforms can't rename over an existing file, exists() finishes this should we go down in between
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file.getPath() + " with " + tempFile.getPath());
+            }
+        }
+        lastModified = file.lastModified();
+        closeJournal();
+        journalFile.delete();
+        journalEntries = 0;
+        if (!journalSafe) {
+            // Give the journal another go, maybe the offending rows are gone
+            reindex();
+        }
+    }
+
+    /**
+     * Compacts the table if there are journaled writes and closes the journal
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+        if (journalEntries > 0) {
+            compact();
+        }
+        closeJournal();
+    }
+
+    /** Rebuilds the row ids and order and the indexes of the primary and unique columns */
+    private void reindex() {
+        rowsById.clear();
+        order.clear();
+        indexes.clear();
+        nextOrder = 0;
+        journalSafe = true;
+        List<Element> rows = doc.getRootElement().getChildren();
+        for (Element row : rows) {
+            index(row);
+        }
+        if (!rows.isEmpty()) {
+            for (Element column : rows.get(0).getChildren()) {
+                String type = column.getAttributeValue("column-type");
+                if ("PRIMARY".equals(type) || "UNIQUE".equals(type)) {
+                    ColumnIndex index = new ColumnIndex(column.getName());
+                    for (Element row : rows) {
+                        index.add(row);
+                    }
+                    indexes.put(column.getName(), index);
+                }
+            }
+        }
+    }
+
+    private void index(Element row) {
+        if (!order.containsKey(row)) {
+            order.put(row, nextOrder++);
+        }
+        String id = row.getChildText(ID);
+        if (id == null) {
+            journalSafe = false;
+            return;
+        }
+        Element other = rowsById.put(id, row);
+        if (other != null && other != row) {
+            journalSafe = false;
+        }
+    }
+
+    private void appendToJournal(Element entry) throws IOException {
+        if (journal == null) {
+            journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), UTF8));
+        }
+        // One entry per line, line breaks in values are written as character references
+        String line = journalSerializer.outputString(entry).replace("\r", "&#13;").replace("\n", "&#10;");
+        journal.write(line);
+        journal.write('\n');
+        if (journalEntries == 0) {
+            journalSince = System.currentTimeMillis();
+        }
+        journalEntries++;
+    }
+
+    /**
+     * Applies the journal to the loaded document
+     *
+     * @return the amount of replayed entries
+     */
+    private int replay(SAXBuilder builder) throws IOException {
+        int replayed = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF8));
+        try {
+            Element root = doc.getRootElement();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                Element entry;
+                try {
+                    entry = builder.build(new StringReader(line)).detachRootElement();
+                }
+                catch (JDOMException e) {
+                    // Most likely the last entry was cut off while it was written
+                    log.warn("Journal of XML table " + name + " has a broken entry, ignoring it and everything after it");
+                    break;
+                }
+                String id = entry.getName().equals("delete") ? entry.getAttributeValue(ID) : entry.getChildText(ID);
+                Element existing = id == null ? null : rowsById.get(id);
+                if (entry.getName().equals("delete")) {
+                    if (existing != null) {
+                        rowsById.remove(id);
+                        existing.detach();
+                    }
+                }
+                else if (existing != null) {
+                    root.setContent(root.indexOf(existing), entry);
+                    rowsById.put(id, entry);
+                }
+                else {
+                    root.addContent(entry);
+                    rowsById.put(id, entry);
+                }
+                replayed++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return replayed;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /** Hash index of one column, from the column text to the rows with that text in document order */
+    private final class ColumnIndex {
+        private final String column;
+        private final HashMap<String, ArrayList<Element>> rows = new HashMap<String, ArrayList<Element>>();
+        // The key each row is filed under, to find it again once its value changed
+        private final HashMap<Element, String> keys = new HashMap<Element, String>();
+
+        ColumnIndex(String column) {
+            this.column = column;
+        }
+
+        List<Element> get(String value) {
+            ArrayList<Element> hits = rows.get(value);
+            return hits == null ? Collections.<Element>emptyList() : hits;
+        }
+
+        void add(Element row) {
+            Element child = row.getChild(column);
+            if (child == null) {
+                return; // Never matches a filter on this column
+            }
+            String key = child.getText();
+            ArrayList<Element> bucket = rows.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<Element>(1);
+                rows.put(key, bucket);
+            }
+            // Keep the bucket in document order, rows are mostly appended
+            long position = order.get(row);
+            int i = bucket.size();
+            while (i > 0 && order.get(bucket.get(i - 1)) > position) {
+                i--;
+            }
+            bucket.add(i, row);
+            keys.put(row, key);
+        }
+
+        void remove(Element row) {
+            String key = keys.remove(row);
+            if (key == null) {
+                return;
+            }
+            ArrayList<Element> bucket = rows.get(key);
+            bucket.remove(row);
+            if (bucket.isEmpty()) {
+                rows.remove(key);
+            }
+        }
+
+        void update(Element row) {
+            Element child = row.getChild(column);
+            String key = keys.get(row);
+            if (key != null && child != null && key.equals(child.getText())) {
+                return; // Unchanged
+            }
+            remove(row);
+            add(row);
+        }
+    }
+
+    private static void sortElements(Document doc) {
+        for (Element e : doc.getRootElement().getChildren()) {
+            e.sortChildren(new Comparator<Element>() {
+                @Override
+                public int compare(Element o1, Element o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+        }
+    }
+}
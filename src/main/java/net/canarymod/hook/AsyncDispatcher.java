@@ -0,0 +1,104 @@
+package net.canarymod.hook;
+
+import net.canarymod.plugin.Plugin;
+import net.canarymod.plugin.PluginListener;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * Queues hooks for a handler and runs them on the {@link AsyncHookPool}.
+ * {@link CancelableHook}s are always passed through on the calling thread, their outcome is needed right away.
+ *
+ * @author Chris (damagefilter)
+ */
+final class AsyncDispatcher extends Dispatcher implements Runnable {
+    // Hooks handled per drain before the worker is handed back to the pool
+    private static final int DRAIN_BATCH = 64;
+
+    private final Dispatcher delegate;
+    private final PluginListener listener;
+    private final Plugin plugin;
+    private final AsyncHookPool pool;
+    private final ArrayBlockingQueue<Hook> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean canceled;
+
+    AsyncDispatcher(Dispatcher delegate, PluginListener listener, Plugin plugin, AsyncHookPool pool) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.plugin = plugin;
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<Hook>(pool.getQueueSize());
+    }
+
+    @Override
+    public void execute(PluginListener listener, Hook hook) {
+        if (hook instanceof CancelableHook) {
+            delegate.execute(listener, hook);
+            return;
+        }
+        if (canceled || !queue.offer(hook)) {
+            pool.dropped();
+            return;
+        }
+        pool.submitted();
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return; // Already queued or running, it will pick the hook up
+        }
+        try {
+            pool.execute(this);
+        } catch (RejectedExecutionException rejex) {
+            scheduled.set(false);
+            discardQueued();
+        }
+    }
+
+    @Override
+    public void run() {
+        int handled = 0;
+        Hook hook;
+        while (!canceled && handled++ < DRAIN_BATCH && (hook = queue.poll()) != null) {
+            try {
+                delegate.execute(listener, hook);
+                pool.completed();
+            } catch (Throwable t) {
+                pool.failed();
+                Throwable cause = t instanceof HookExecutionException && t.getCause() != null ? t.getCause() : t;
+                log.error("Exception while executing async Hook: " + hook.getHookName() + " in PluginListener: " +
+                        listener.getClass().getSimpleName() + " (Plugin: " + plugin.getName() + ")", cause);
+            }
+        }
+        scheduled.set(false);
+        if (canceled) {
+            discardQueued();
+        } else if (!queue.isEmpty()) {
+            schedule(); // More came in, or the batch limit was hit
+        }
+    }
+
+    /**
+     * Stops this dispatcher and drops every hook that has not run yet.
+     * Called when the owning plugin's listeners are unregistered.
+     */
+    void cancel() {
+        canceled = true;
+        discardQueued();
+    }
+
+    private void discardQueued() {
+        ArrayList<Hook> drained = new ArrayList<Hook>();
+        queue.drainTo(drained);
+        if (!drained.isEmpty()) {
+            pool.discarded(drained.size());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.canarymod.hook;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker threads executing asynchronous hook handlers, see {@link HookHandler#async()}.
+ * <p/>
+ * Every async handler has its own bounded queue and is drained by at most one worker at a time,
+ * so a handler sees hooks in the order they were called. When a handler falls too far behind,
+ * new hooks for it are dropped instead of stalling the server thread.
+ *
+ * @author Chris (damagefilter)
+ */
+public final class AsyncHookPool {
+    private final ThreadPoolExecutor pool;
+    private final int queueSize;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+
+    AsyncHookPool(int threads, int queueSize) {
+        this.queueSize = queueSize;
+        this.pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Canary Async Hook #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    void execute(Runnable drain) {
+        pool.execute(drain);
+    }
+
+    int getQueueSize() {
+        return queueSize;
+    }
+
+    void submitted() {
+        submitted.incrementAndGet();
+        pending.incrementAndGet();
+    }
+
+    void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    void discarded(int amount) {
+        dropped.addAndGet(amount);
+        pending.addAndGet(-amount);
+    }
+
+    void completed() {
+        completed.incrementAndGet();
+        pending.decrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Gets how many hooks were queued for async handlers
+     *
+     * @return submitted count
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * Gets how many hooks were not handled because the handler's queue was full
+     * or its plugin was disabled before they ran
+     *
+     * @return dropped count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets how many queued hooks were handled
+     *
+     * @return completed count
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Gets how many queued hooks ended in an exception
+     *
+     * @return failed count
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the amount of hooks waiting for a handler
+     *
+     * @return pending count
+     */
+    public long getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Gets the amount of worker threads currently running handlers
+     *
+     * @return active thread count
+     */
+    public int getActiveThreads() {
+        return pool.getActiveCount();
+    }
+}
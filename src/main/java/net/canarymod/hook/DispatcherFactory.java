@@ -0,0 +1,86 @@
+package net.canarymod.hook;
+
+import java.lang.reflect.Method;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * Creates {@link Dispatcher}s for hook handler methods.
+ * <p/>
+ * Where possible a small class is generated that calls the handler method directly,
+ * which avoids the boxing, access checks and exception wrapping of {@link Method#invoke(Object, Object...)}.
+ * Methods that can't be linked from outside their class (non-public listeners, anonymous classes, etc.)
+ * fall back to a {@link ReflectiveDispatcher}.
+ *
+ * @author Chris (damagefilter)
+ */
+public final class DispatcherFactory {
+    private static volatile boolean generate = !Boolean.getBoolean("canarymod.hooks.reflective");
+
+    private DispatcherFactory() {
+    }
+
+    /**
+     * Creates a {@link Dispatcher} for the given hook handler method
+     *
+     * @param method
+     *         the handler method, taking exactly one {@link Hook} parameter
+     *
+     * @return the {@link Dispatcher}
+     */
+    public static Dispatcher newDispatcher(Method method) {
+        if (generate && DispatcherGenerator.canGenerate(method)) {
+            try {
+                return DispatcherGenerator.generate(method);
+            } catch (Throwable t) {
+                log.debug("Could not generate a Dispatcher for " + method.getDeclaringClass().getName() + "." + method.getName() + ", using reflection", t);
+            }
+        }
+        return new ReflectiveDispatcher(method);
+    }
+
+    /**
+     * Creates a direct-call subclass of the given base class for a handler method,
+     * for listener systems other than hooks that want the same dispatching.
+     * The base class must be public, have a public no-args constructor and declare a single abstract
+     * {@code void execute(listener, argument)} method. The generated method wraps anything thrown
+     * in a {@link HookExecutionException}.
+     *
+     * @param base
+     *         the base class
+     * @param method
+     *         the handler method, taking exactly one parameter
+     *
+     * @return the new instance; {@code null} if none could be generated and the caller has to use reflection
+     */
+    public static <T> T newDirectCaller(Class<T> base, Method method) {
+        if (generate && DispatcherGenerator.canGenerate(base, method)) {
+            try {
+                return DispatcherGenerator.generate(base, method);
+            } catch (Throwable t) {
+                log.debug("Could not generate a direct caller for " + method.getDeclaringClass().getName() + "." + method.getName() + ", using reflection", t);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets whether direct-call dispatchers are generated.
+     * Only affects listeners registered after the change.
+     *
+     * @param enabled
+     *         {@code true} to generate dispatchers; {@code false} to always use reflection
+     */
+    public static void setGenerationEnabled(boolean enabled) {
+        generate = enabled;
+    }
+
+    /**
+     * Checks whether direct-call dispatchers are generated
+     *
+     * @return {@code true} if enabled; {@code false} if reflection is always used
+     */
+    public static boolean isGenerationEnabled() {
+        return generate;
+    }
+}
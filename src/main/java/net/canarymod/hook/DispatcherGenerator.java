@@ -0,0 +1,376 @@
+package net.canarymod.hook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the bytecode for a {@link Dispatcher} subclass that calls a hook handler method directly.
+ * Other base classes with the same shape, a public no-args constructor and one abstract
+ * {@code void execute(listener, argument)} method, are supported as well.
+ * <p/>
+ * The generated execute method is the equivalent of
+ * <pre>
+ * try {
+ *     ((ListenerClass) listener).handlerMethod((HookClass) hook);
+ * } catch (Throwable t) {
+ *     throw new HookExecutionException(t.getMessage(), t);
+ * }
+ * </pre>
+ * The class file version is kept at 49 so no stack map frames have to be written.
+ *
+ * @author Chris (damagefilter)
+ */
+final class DispatcherGenerator {
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private static final String HOOK_EXCEPTION = "net/canarymod/hook/HookExecutionException";
+    private static final String THROWABLE = "java/lang/Throwable";
+
+    private DispatcherGenerator() {
+    }
+
+    /**
+     * Checks if a direct call can be generated for the given method.
+     * The generated class lives in its own class loader, so it can only link against public members.
+     *
+     * @param method
+     *         the hook handler method
+     *
+     * @return {@code true} if a dispatcher can be generated; {@code false} otherwise
+     */
+    static boolean canGenerate(Method method) {
+        return canGenerate(Dispatcher.class, method);
+    }
+
+    /**
+     * Checks if a direct call subclass of the given base class can be generated for the given method.
+     *
+     * @param base
+     *         the base class, see the class description
+     * @param method
+     *         the handler method
+     *
+     * @return {@code true} if a subclass can be generated; {@code false} otherwise
+     */
+    static boolean canGenerate(Class<?> base, Method method) {
+        if (!Modifier.isPublic(base.getModifiers()) || findExecute(base) == null) {
+            return false;
+        }
+        try {
+            base.getConstructor();
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+        int mod = method.getModifiers();
+        if (!Modifier.isPublic(mod) || Modifier.isStatic(mod) || Modifier.isAbstract(mod)) {
+            return false;
+        }
+        Class<?> listenerCls = method.getDeclaringClass();
+        Class<?> hookCls = method.getParameterTypes()[0];
+        return Modifier.isPublic(listenerCls.getModifiers()) && !listenerCls.isInterface()
+                && Modifier.isPublic(hookCls.getModifiers()) && listenerCls.getClassLoader() != null;
+    }
+
+    /**
+     * Generates, defines and instantiates a direct-call {@link Dispatcher} for the given method.
+     *
+     * @param method
+     *         the hook handler method
+     *
+     * @return the new {@link Dispatcher}
+     *
+     * @throws Exception
+     *         if the class could not be generated or loaded
+     */
+    static Dispatcher generate(Method method) throws Exception {
+        return generate(Dispatcher.class, method);
+    }
+
+    /**
+     * Generates, defines and instantiates a direct-call subclass of the given base class for the given method.
+     *
+     * @param base
+     *         the base class, see the class description
+     * @param method
+     *         the handler method
+     *
+     * @return the new instance
+     *
+     * @throws Exception
+     *         if the class could not be generated or loaded
+     */
+    static <T> T generate(Class<T> base, Method method) throws Exception {
+        Method execute = findExecute(base);
+        Class<?> listenerCls = method.getDeclaringClass();
+        Class<?> hookCls = method.getParameterTypes()[0];
+        String name = "net.canarymod.hook.GeneratedDispatcher$" + counter.incrementAndGet();
+
+        byte[] bytes = writeClass(name.replace('.', '/'), base, execute, method);
+        // One loader per dispatcher so the class goes away together with the plugin that owns the listener
+        DispatcherClassLoader loader = new DispatcherClassLoader(listenerCls.getClassLoader());
+        loader.pin(listenerCls);
+        loader.pin(hookCls);
+        loader.pin(base);
+        loader.pin(execute.getParameterTypes()[0]);
+        loader.pin(execute.getParameterTypes()[1]);
+        loader.pin(HookExecutionException.class);
+        Class<?> cls = loader.define(name, bytes);
+        return base.cast(cls.newInstance());
+    }
+
+    /**
+     * Finds the abstract {@code void execute(listener, argument)} method of a base class
+     *
+     * @param base
+     *         the base class
+     *
+     * @return the method; {@code null} if there is none
+     */
+    private static Method findExecute(Class<?> base) {
+        for (Method method : base.getMethods()) {
+            if (method.getName().equals("execute") && Modifier.isAbstract(method.getModifiers())
+                    && method.getReturnType() == void.class && method.getParameterTypes().length == 2) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] writeClass(String className, Class<?> base, Method execute, Method method) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        String listener = internalName(method.getDeclaringClass());
+        String hook = internalName(method.getParameterTypes()[0]);
+        String superName = internalName(base);
+        Class<?>[] executeParams = execute.getParameterTypes();
+        Class<?> ret = method.getReturnType();
+
+        int thisCls = pool.classRef(className);
+        int superCls = pool.classRef(superName);
+        int superInit = pool.methodRef(superName, "<init>", "()V");
+        int listenerCls = pool.classRef(listener);
+        int hookCls = pool.classRef(hook);
+        int handler = pool.methodRef(listener, method.getName(), "(L" + hook + ";)" + descriptor(ret));
+        int throwableCls = pool.classRef(THROWABLE);
+        int getMessage = pool.methodRef(THROWABLE, "getMessage", "()Ljava/lang/String;");
+        int exceptionCls = pool.classRef(HOOK_EXCEPTION);
+        int exceptionInit = pool.methodRef(HOOK_EXCEPTION, "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V");
+        int initName = pool.utf8("<init>");
+        int initDesc = pool.utf8("()V");
+        int executeName = pool.utf8("execute");
+        int executeDesc = pool.utf8("(" + descriptor(executeParams[0]) + descriptor(executeParams[1]) + ")V");
+        int codeAttr = pool.utf8("Code");
+
+        // Constructor: super();
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        DataOutputStream initOut = new DataOutputStream(init);
+        initOut.writeByte(0x2A); // aload_0
+        initOut.writeByte(0xB7); // invokespecial
+        initOut.writeShort(superInit);
+        initOut.writeByte(0xB1); // return
+
+        // execute(PluginListener, Hook), or whatever the base class takes
+        ByteArrayOutputStream exec = new ByteArrayOutputStream();
+        DataOutputStream execOut = new DataOutputStream(exec);
+        execOut.writeByte(0x2B); // aload_1
+        execOut.writeByte(0xC0); // checkcast
+        execOut.writeShort(listenerCls);
+        execOut.writeByte(0x2C); // aload_2
+        execOut.writeByte(0xC0); // checkcast
+        execOut.writeShort(hookCls);
+        execOut.writeByte(0xB6); // invokevirtual
+        execOut.writeShort(handler);
+        if (ret == long.class || ret == double.class) {
+            execOut.writeByte(0x58); // pop2
+        } else if (ret != void.class) {
+            execOut.writeByte(0x57); // pop
+        }
+        int tryEnd = exec.size();
+        execOut.writeByte(0xB1); // return
+        int catchStart = exec.size();
+        execOut.writeByte(0x4E); // astore_3
+        execOut.writeByte(0xBB); // new
+        execOut.writeShort(exceptionCls);
+        execOut.writeByte(0x59); // dup
+        execOut.writeByte(0x2D); // aload_3
+        execOut.writeByte(0xB6); // invokevirtual
+        execOut.writeShort(getMessage);
+        execOut.writeByte(0x2D); // aload_3
+        execOut.writeByte(0xB7); // invokespecial
+        execOut.writeShort(exceptionInit);
+        execOut.writeByte(0xBF); // athrow
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor
+        out.writeShort(49); // major
+        pool.write(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisCls);
+        out.writeShort(superCls);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        out.writeShort(0x0001); // public
+        out.writeShort(initName);
+        out.writeShort(initDesc);
+        out.writeShort(1); // attributes
+        writeCode(out, codeAttr, 1, 1, init.toByteArray(), null);
+
+        out.writeShort(0x0001); // public
+        out.writeShort(executeName);
+        out.writeShort(executeDesc);
+        out.writeShort(1); // attributes
+        writeCode(out, codeAttr, 4, 4, exec.toByteArray(), new int[]{ 0, tryEnd, catchStart, throwableCls });
+
+        out.writeShort(0); // class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeCode(DataOutputStream out, int codeAttr, int maxStack, int maxLocals, byte[] code, int[] exceptionEntry) throws IOException {
+        int exceptionTableLength = exceptionEntry == null ? 0 : 1;
+        out.writeShort(codeAttr);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + exceptionTableLength * 8 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(exceptionTableLength);
+        if (exceptionEntry != null) {
+            for (int value : exceptionEntry) {
+                out.writeShort(value);
+            }
+        }
+        out.writeShort(0); // code attributes
+    }
+
+    private static String internalName(Class<?> cls) {
+        return cls.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> cls) {
+        if (cls.isArray()) {
+            return internalName(cls);
+        }
+        if (cls == void.class) {
+            return "V";
+        } else if (cls == boolean.class) {
+            return "Z";
+        } else if (cls == byte.class) {
+            return "B";
+        } else if (cls == char.class) {
+            return "C";
+        } else if (cls == short.class) {
+            return "S";
+        } else if (cls == int.class) {
+            return "I";
+        } else if (cls == long.class) {
+            return "J";
+        } else if (cls == float.class) {
+            return "F";
+        } else if (cls == double.class) {
+            return "D";
+        }
+        return "L" + internalName(cls) + ";";
+    }
+
+    /**
+     * Minimal class file constant pool
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) throws IOException {
+            String key = "U" + value;
+            Integer index = entries.get(key);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) throws IOException {
+            String key = "C" + internalName;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int name = utf8(internalName);
+                out.writeByte(7);
+                out.writeShort(name);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String desc) throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int cls = classRef(owner);
+                int nameIndex = utf8(name);
+                int descIndex = utf8(desc);
+                out.writeByte(12); // NameAndType
+                out.writeShort(nameIndex);
+                out.writeShort(descIndex);
+                int nameAndType = count++;
+                out.writeByte(10); // Methodref
+                out.writeShort(cls);
+                out.writeShort(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            target.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Loads a single generated dispatcher.
+     * Classes the dispatcher links against are pinned so they always resolve to the exact classes of the handler method.
+     */
+    private static final class DispatcherClassLoader extends ClassLoader {
+        private final HashMap<String, Class<?>> pinned = new HashMap<String, Class<?>>();
+
+        DispatcherClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        void pin(Class<?> cls) {
+            pinned.put(cls.getName(), cls);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> cls = pinned.get(name);
+            if (cls != null) {
+                return cls;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package net.canarymod.hook;
 
-import com.google.common.collect.ArrayListMultimap;
 import net.canarymod.ToolBox;
+import net.canarymod.config.Configuration;
 import net.canarymod.plugin.Plugin;
 import net.canarymod.plugin.PluginListener;
 import net.canarymod.plugin.Priority;
 import net.canarymod.plugin.RegisteredPluginListener;
 
 import java.lang.reflect.Method;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.canarymod.Canary.log;
 
@@ -23,7 +25,15 @@ import static net.canarymod.Canary.log;
  */
 public class HookExecutor implements HookExecutorInterface {
     private final PluginComparator listener_comp = new PluginComparator();
-    final ArrayListMultimap<Class<? extends Hook>, RegisteredPluginListener> listeners = ArrayListMultimap.create();
+    private static final RegisteredPluginListener[] NO_LISTENERS = new RegisteredPluginListener[0];
+    // Sorted listeners per hook class as they were registered. A published array is never modified, registration swaps in a new one
+    final HashMap<Class<? extends Hook>, RegisteredPluginListener[]> listeners = new HashMap<Class<? extends Hook>, RegisteredPluginListener[]>();
+    // Listeners of a concrete hook class and all of its super classes, resolved on first call and dropped on registration changes
+    private final ConcurrentHashMap<Class<? extends Hook>, RegisteredPluginListener[]> dispatch = new ConcurrentHashMap<Class<? extends Hook>, RegisteredPluginListener[]>();
+    // The hook classes each plugin has listeners for, so unregistering does not need to look at every hook
+    private final HashMap<Plugin, HashSet<Class<? extends Hook>>> pluginHooks = new HashMap<Plugin, HashSet<Class<? extends Hook>>>();
+    private final HookProfiler profiler = new HookProfiler();
+    private AsyncHookPool asyncPool;
 
     /**
      * Register a {@link PluginListener} for a system hook
@@ -51,17 +61,13 @@ public class HookExecutor implements HookExecutorInterface {
                 throw new HookConsistencyException("Hook is not assignable from " + hookCls.getName());
             }
 
-            Dispatcher dispatcher = new Dispatcher() {
-
-                @Override
-                public void execute(PluginListener listener, Hook hook) {
-                    try {
-                        method.invoke(listener, hook);
-                    } catch (Exception ex) {
-                        throw new HookExecutionException(ex.getMessage(), ex);
-                    }
+            Dispatcher dispatcher = DispatcherFactory.newDispatcher(method);
+            if (handler.async()) {
+                if (CancelableHook.class.isAssignableFrom(hookCls)) {
+                    throw new HookConsistencyException("Handler " + method.getName() + " for cancelable hook " + hookCls.getSimpleName() + " can not be async");
                 }
-            };
+                dispatcher = new AsyncDispatcher(dispatcher, listener, plugin, getAsyncPool());
+            }
             dispatcher.ignoreCanceled = handler.ignoreCanceled();
 
             registerHook(listener, plugin, hookCls, dispatcher, handler.priority());
@@ -71,10 +77,34 @@ public class HookExecutor implements HookExecutorInterface {
     /**
      * A more flexible hook interface used internally. Adds flexibility required for Scala hook registration.
      */
-    public void registerHook(PluginListener listener, Plugin plugin, Class<?> hookCls, Dispatcher dispatcher, Priority priority) {
+    public synchronized void registerHook(PluginListener listener, Plugin plugin, Class<?> hookCls, Dispatcher dispatcher, Priority priority) {
         // Caller is assumed to check class (this is an internal API)
-        listeners.put((Class<? extends Hook>) hookCls, new RegisteredPluginListener(listener, plugin, dispatcher, priority));
-        Collections.sort(listeners.get((Class<? extends Hook>) hookCls), listener_comp);
+        Class<? extends Hook> cls = (Class<? extends Hook>) hookCls;
+        RegisteredPluginListener registered = new RegisteredPluginListener(listener, plugin, dispatcher, priority);
+        RegisteredPluginListener[] current = listeners.get(cls);
+
+        if (current == null) {
+            listeners.put(cls, new RegisteredPluginListener[]{ registered });
+        } else {
+            // Insert behind all listeners that sort equal or higher, same order a stable sort would give
+            int index = current.length;
+            while (index > 0 && listener_comp.compare(current[index - 1], registered) > 0) {
+                index--;
+            }
+            RegisteredPluginListener[] updated = new RegisteredPluginListener[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = registered;
+            System.arraycopy(current, index, updated, index + 1, current.length - index);
+            listeners.put(cls, updated);
+        }
+
+        HashSet<Class<? extends Hook>> hooks = pluginHooks.get(plugin);
+        if (hooks == null) {
+            hooks = new HashSet<Class<? extends Hook>>();
+            pluginHooks.put(plugin, hooks);
+        }
+        hooks.add(cls);
+        dispatch.clear();
     }
 
     /**
@@ -83,14 +113,34 @@ public class HookExecutor implements HookExecutorInterface {
      * @param plugin the {@link Plugin} instance
      */
     @Override
-    public void unregisterPluginListeners(Plugin plugin) {
-        Iterator<RegisteredPluginListener> iter = listeners.values().iterator();
-        while (iter.hasNext()) {
-            RegisteredPluginListener listener = iter.next();
-            if (listener.getPlugin().equals(plugin)) {
-                iter.remove();
+    public synchronized void unregisterPluginListeners(Plugin plugin) {
+        HashSet<Class<? extends Hook>> hooks = pluginHooks.remove(plugin);
+        if (hooks != null) {
+            for (Class<? extends Hook> cls : hooks) {
+                RegisteredPluginListener[] current = listeners.get(cls);
+                if (current == null) {
+                    continue;
+                }
+                RegisteredPluginListener[] updated = new RegisteredPluginListener[current.length];
+                int size = 0;
+                for (RegisteredPluginListener listener : current) {
+                    if (!listener.getPlugin().equals(plugin)) {
+                        updated[size++] = listener;
+                    } else if (listener.getDispatcher() instanceof AsyncDispatcher) {
+                        ((AsyncDispatcher) listener.getDispatcher()).cancel();
+                    }
+                }
+                if (size == 0) {
+                    listeners.remove(cls);
+                } else if (size < current.length) {
+                    RegisteredPluginListener[] trimmed = new RegisteredPluginListener[size];
+                    System.arraycopy(updated, 0, trimmed, 0, size);
+                    listeners.put(cls, trimmed);
+                }
             }
         }
+        // Always drop the resolved chains, so none can outlive the plugin
+        dispatch.clear();
     }
 
     /**
@@ -102,19 +152,102 @@ public class HookExecutor implements HookExecutorInterface {
             return;
         }
         hook.hasExecuted();
-        if (!this.listeners.containsKey(hook.getClass())) {
-            return;
+        RegisteredPluginListener[] registered = dispatch.get(hook.getClass());
+        if (registered == null) {
+            registered = resolve(hook.getClass());
         }
-        Iterator<RegisteredPluginListener> iter = this.listeners.get(hook.getClass()).iterator();
-        while (iter.hasNext()) {
-            RegisteredPluginListener listener = iter.next();
+        boolean profiling = profiler.isEnabled();
+        for (RegisteredPluginListener listener : registered) {
+            long start = profiling ? System.nanoTime() : 0L;
+            boolean failed = false;
             try {
                 listener.execute(hook);
             } catch (HookExecutionException hexex) {
+                failed = true;
                 log.error("Exception while executing Hook: " + hook.getHookName() + " in PluginListener: " +
                         listener.getListener().getClass().getSimpleName() + " (Plugin: " + listener.getPlugin().getName() + ")", hexex.getCause());
             }
+            if (profiling) {
+                profiler.record(listener.getPlugin(), hook.getClass(), System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    /**
+     * Gets the {@link AsyncHookPool} running async hook handlers.
+     * The pool is started when the first async handler is registered.
+     *
+     * @return the {@link AsyncHookPool}
+     */
+    public synchronized AsyncHookPool getAsyncPool() {
+        if (asyncPool == null) {
+            asyncPool = new AsyncHookPool(Configuration.getServerConfig().getAsyncHookThreads(), Configuration.getServerConfig().getAsyncHookQueueSize());
+        }
+        return asyncPool;
+    }
+
+    /**
+     * Gets the {@link HookProfiler} recording listener execution times
+     *
+     * @return the {@link HookProfiler}
+     */
+    public HookProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Checks if any listener would receive a hook of the given class.
+     * This is a single lookup into the resolved dispatch table, cheap enough to guard
+     * the construction of high frequency hooks:
+     * <pre>
+     * if (Canary.hooks().hasListeners(PlayerMoveHook.class)) {
+     *     new PlayerMoveHook(player, from, to).call();
+     * }
+     * </pre>
+     */
+    @Override
+    public boolean hasListeners(Class<? extends Hook> hookCls) {
+        RegisteredPluginListener[] registered = dispatch.get(hookCls);
+        if (registered == null) {
+            registered = resolve(hookCls);
+        }
+        return registered.length > 0;
+    }
+
+    /**
+     * Collects the listeners for a hook class and every hook class it extends, ordered by priority,
+     * and caches them for the following calls.
+     *
+     * @param hookCls
+     *         the concrete hook class
+     *
+     * @return the listeners to call, never null
+     */
+    private synchronized RegisteredPluginListener[] resolve(Class<? extends Hook> hookCls) {
+        // Registration changes hold the same lock, so nothing stale can be cached here
+        RegisteredPluginListener[] resolved = dispatch.get(hookCls);
+        if (resolved != null) {
+            return resolved;
+        }
+        resolved = NO_LISTENERS;
+        for (Class<?> cls = hookCls; cls != null && Hook.class.isAssignableFrom(cls); cls = cls.getSuperclass()) {
+            RegisteredPluginListener[] registered = listeners.get(cls);
+            if (registered == null) {
+                continue;
+            }
+            if (resolved.length == 0) {
+                resolved = registered;
+            } else {
+                RegisteredPluginListener[] merged = new RegisteredPluginListener[resolved.length + registered.length];
+                System.arraycopy(resolved, 0, merged, 0, resolved.length);
+                System.arraycopy(registered, 0, merged, resolved.length, registered.length);
+                // Stable, so listeners of the more specific hook go first within the same priority
+                Arrays.sort(merged, listener_comp);
+                resolved = merged;
+            }
         }
+        dispatch.put(hookCls, resolved);
+        return resolved;
     }
 
     class PluginComparator implements Comparator<RegisteredPluginListener> {
@@ -35,4 +35,15 @@ public interface HookExecutorInterface {
      *         the {@link Hook} instance
      */
     public void callHook(Hook hook);
+
+    /**
+     * Checks if any listener would receive a hook of the given class.
+     * Callers can use this to skip building hooks nobody listens for.
+     *
+     * @param hookCls
+     *         the {@link Hook} class
+     *
+     * @return {@code true} if there are listeners; {@code false} if calling the hook would do nothing
+     */
+    public boolean hasListeners(Class<? extends Hook> hookCls);
 }
@@ -9,6 +9,8 @@ import net.canarymod.plugin.Priority;
 
 /**
  * @interface for defining that a method should recieve hooks
+ * <p/>
+ * The method receives hooks of its parameter type and of every hook class extending it.
  *
  * @author Chris (damagefilter)
  */
@@ -18,4 +20,14 @@ public @interface HookHandler {
     Priority priority() default Priority.NORMAL;
 
     boolean ignoreCanceled() default false;
+
+    /**
+     * Runs the handler on a worker thread instead of the server thread.
+     * Only for hooks that just need to be observed, like logging or statistics.
+     * The handler must not expect to change the outcome of the hook and has to be thread safe.
+     * Hooks are passed to the handler in the order they were called. If it falls too far behind, hooks are dropped.
+     * Not allowed for {@link CancelableHook}s; should one reach the handler through a super class
+     * parameter, it is executed on the calling thread.
+     */
+    boolean async() default false;
 }
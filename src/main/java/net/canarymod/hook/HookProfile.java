@@ -0,0 +1,101 @@
+package net.canarymod.hook;
+
+import net.canarymod.plugin.Plugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution statistics of one {@link Plugin}'s listeners for one {@link Hook} class.
+ *
+ * @author Chris (damagefilter)
+ * @see HookProfiler
+ */
+public final class HookProfile {
+    private final String pluginName;
+    private final Class<? extends Hook> hookClass;
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong exceptions = new AtomicLong();
+
+    HookProfile(String pluginName, Class<? extends Hook> hookClass) {
+        this.pluginName = pluginName;
+        this.hookClass = hookClass;
+    }
+
+    void record(long nanos, boolean failed) {
+        invocations.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+        if (failed) {
+            exceptions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the name of the {@link Plugin} owning the listeners
+     *
+     * @return the plugin name
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Gets the {@link Hook} class that was executed
+     *
+     * @return the hook class
+     */
+    public Class<? extends Hook> getHookClass() {
+        return hookClass;
+    }
+
+    /**
+     * Gets how often the listeners were executed
+     *
+     * @return invocation count
+     */
+    public long getInvocations() {
+        return invocations.get();
+    }
+
+    /**
+     * Gets the time spent in the listeners
+     *
+     * @return total time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Gets the longest single execution
+     *
+     * @return maximum time in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets how often a listener threw an exception
+     *
+     * @return exception count
+     */
+    public long getExceptions() {
+        return exceptions.get();
+    }
+
+    /**
+     * Gets the average time of one execution
+     *
+     * @return average time in nanoseconds
+     */
+    public long getAverageNanos() {
+        long count = invocations.get();
+        return count == 0 ? 0 : totalNanos.get() / count;
+    }
+}
@@ -0,0 +1,106 @@
+package net.canarymod.hook;
+
+import net.canarymod.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how much time each {@link Plugin}'s listeners spend on each {@link Hook} class.
+ * <p/>
+ * Profiling is off by default. While disabled the {@link HookExecutor} only checks a volatile flag per hook call.
+ *
+ * @author Chris (damagefilter)
+ */
+public final class HookProfiler {
+    private volatile boolean enabled;
+    private volatile long windowStart = System.nanoTime();
+    private volatile ConcurrentHashMap<Plugin, ConcurrentHashMap<Class<? extends Hook>, HookProfile>> profiles = new ConcurrentHashMap<Plugin, ConcurrentHashMap<Class<? extends Hook>, HookProfile>>();
+
+    /**
+     * Checks if hook executions are currently recorded
+     *
+     * @return {@code true} if enabled; {@code false} if not
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Turning it on does not reset what was recorded before.
+     *
+     * @param enabled
+     *         {@code true} to record; {@code false} to stop recording
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Drops all recorded statistics and starts a new window
+     */
+    public void reset() {
+        profiles = new ConcurrentHashMap<Plugin, ConcurrentHashMap<Class<? extends Hook>, HookProfile>>();
+        windowStart = System.nanoTime();
+    }
+
+    /**
+     * Gets how long the current window has been running
+     *
+     * @return window length in nanoseconds
+     */
+    public long getWindowNanos() {
+        return System.nanoTime() - windowStart;
+    }
+
+    void record(Plugin plugin, Class<? extends Hook> hookCls, long nanos, boolean failed) {
+        ConcurrentHashMap<Plugin, ConcurrentHashMap<Class<? extends Hook>, HookProfile>> current = profiles;
+        ConcurrentHashMap<Class<? extends Hook>, HookProfile> byHook = current.get(plugin);
+        if (byHook == null) {
+            current.putIfAbsent(plugin, new ConcurrentHashMap<Class<? extends Hook>, HookProfile>());
+            byHook = current.get(plugin);
+        }
+        HookProfile profile = byHook.get(hookCls);
+        if (profile == null) {
+            byHook.putIfAbsent(hookCls, new HookProfile(plugin.getName(), hookCls));
+            profile = byHook.get(hookCls);
+        }
+        profile.record(nanos, failed);
+    }
+
+    /**
+     * Gets all statistics of the current window
+     *
+     * @return list of {@link HookProfile}s
+     */
+    public List<HookProfile> getProfiles() {
+        List<HookProfile> all = new ArrayList<HookProfile>();
+        for (ConcurrentHashMap<Class<? extends Hook>, HookProfile> byHook : profiles.values()) {
+            all.addAll(byHook.values());
+        }
+        return all;
+    }
+
+    /**
+     * Gets the statistics that took the most total time in the current window
+     *
+     * @param amount
+     *         the maximum amount of entries to return
+     *
+     * @return list of {@link HookProfile}s, most expensive first
+     */
+    public List<HookProfile> getTopProfiles(int amount) {
+        List<HookProfile> all = getProfiles();
+        Collections.sort(all, new Comparator<HookProfile>() {
+            @Override
+            public int compare(HookProfile o1, HookProfile o2) {
+                long diff = o2.getTotalNanos() - o1.getTotalNanos();
+                return diff > 0 ? 1 : diff < 0 ? -1 : 0;
+            }
+        });
+        return all.size() > amount ? new ArrayList<HookProfile>(all.subList(0, amount)) : all;
+    }
+}
@@ -0,0 +1,34 @@
+package net.canarymod.hook;
+
+import net.canarymod.plugin.PluginListener;
+
+import java.lang.reflect.Method;
+
+/**
+ * Dispatcher that invokes the hook handler method through reflection.
+ * This is used whenever a direct-call {@link Dispatcher} cannot be generated for a method.
+ *
+ * @author Chris (damagefilter)
+ */
+public final class ReflectiveDispatcher extends Dispatcher {
+    private final Method method;
+
+    public ReflectiveDispatcher(Method method) {
+        this.method = method;
+        try {
+            // Skips the access check on every invoke
+            method.setAccessible(true);
+        } catch (SecurityException ex) {
+            // Not allowed, invoke will do the checks then
+        }
+    }
+
+    @Override
+    public void execute(PluginListener listener, Hook hook) {
+        try {
+            method.invoke(listener, hook);
+        } catch (Exception ex) {
+            throw new HookExecutionException(ex.getMessage(), ex);
+        }
+    }
+}
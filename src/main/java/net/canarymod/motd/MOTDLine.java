@@ -0,0 +1,144 @@
+package net.canarymod.motd;
+
+import net.canarymod.chat.MessageReceiver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * A line of the Message of the Day, compiled for the {@link MOTDParser}s registered at the time.<p/>
+ * The permission prefix is split into its nodes, the text into literal parts with the color codes
+ * already translated and the variables in between.</p>
+ * *INTERNAL USE*
+ *
+ * @author Jason (darkdiplomat)
+ */
+final class MOTDLine {
+    private static final Pattern permPattern = Pattern.compile("\\{permissions:(.)+}.+");
+    private static final Pattern colorPattern = Pattern.compile("&([0-9A-FK-ORa-fk-or])");
+
+    // Permission nodes that are required, those flagged as negated must not be present
+    private final String[] permissions;
+    private final boolean[] negated;
+    // Either String (literal) or MOTDParser (variable), in order
+    private final Object[] segments;
+
+    private MOTDLine(String[] permissions, boolean[] negated, Object[] segments) {
+        this.permissions = permissions;
+        this.negated = negated;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a line of the motd.txt
+     *
+     * @param line
+     *         the line
+     * @param parsers
+     *         the registered {@link MOTDParser}s by key, the first registered one for each key
+     *
+     * @return the compiled line
+     */
+    static MOTDLine compile(String line, Map<String, MOTDParser> parsers) {
+        String[] permissions = new String[0];
+        boolean[] negated = new boolean[0];
+        if (permPattern.matcher(line).matches()) {
+            String perms = line.substring(line.indexOf(':') + 1, line.indexOf('}'));
+            permissions = perms.split("&");
+            negated = new boolean[permissions.length];
+            for (int i = 0; i < permissions.length; i++) {
+                if (permissions[i].length() > 0 && permissions[i].charAt(0) == '!') {
+                    permissions[i] = permissions[i].substring(1);
+                    negated[i] = true;
+                }
+            }
+            line = line.replace(line.substring(0, line.indexOf('}') + 1), ""); // Remove permission check substring
+        }
+
+        ArrayList<Object> segments = new ArrayList<Object>();
+        Collection<String> keys = parsers.keySet();
+        int literalStart = 0;
+        int index = 0;
+        while (index < line.length()) {
+            String key = longestKeyAt(line, index, keys);
+            if (key == null) {
+                index++;
+                continue;
+            }
+            if (index > literalStart) {
+                segments.add(translateColors(line.substring(literalStart, index)));
+            }
+            segments.add(parsers.get(key));
+            index += key.length();
+            literalStart = index;
+        }
+        if (literalStart < line.length()) {
+            segments.add(translateColors(line.substring(literalStart)));
+        }
+        return new MOTDLine(permissions, negated, segments.toArray());
+    }
+
+    private static String longestKeyAt(String line, int index, Collection<String> keys) {
+        String found = null;
+        for (String key : keys) {
+            if (key.length() > 0 && line.startsWith(key, index) && (found == null || key.length() > found.length())) {
+                found = key;
+            }
+        }
+        return found;
+    }
+
+    private static String translateColors(String text) {
+        if (text.indexOf('&') == -1) {
+            return text;
+        }
+        return colorPattern.matcher(text).replaceAll("\u00A7$1");
+    }
+
+    /**
+     * Renders the line for a {@link MessageReceiver}
+     *
+     * @param msgrec
+     *         the {@link MessageReceiver}
+     * @param values
+     *         variable values already parsed for this {@link MessageReceiver}, new ones are added
+     *
+     * @return the line; {@code null} if the {@link MessageReceiver} does not pass the permission check
+     */
+    String render(MessageReceiver msgrec, Map<MOTDParser, String> values) {
+        for (int i = 0; i < permissions.length; i++) {
+            if (msgrec.hasPermission(permissions[i]) == negated[i]) {
+                return null;
+            }
+        }
+        if (segments.length == 1 && segments[0] instanceof String) {
+            return (String) segments[0];
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                builder.append((String) segment);
+                continue;
+            }
+            MOTDParser motdp = (MOTDParser) segment;
+            String value = values.get(motdp);
+            if (value == null) {
+                try {
+                    value = motdp.parse(msgrec);
+                }
+                catch (Exception ex) {
+                    log.error("Failed to parse MessageOfTheDay Variable from MOTDOwner: " + motdp.getOwner().getName(), ex);
+                }
+                // Values may carry color codes as well, failed ones leave the key in place
+                value = value == null ? motdp.key() : translateColors(value);
+                values.put(motdp, value);
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -10,11 +10,11 @@ import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static net.canarymod.Canary.log;
 
@@ -22,13 +22,16 @@ import static net.canarymod.Canary.log;
  * Message of the Day container
  * <p/>
  * Loads and sends the Message of the Day to a player just joining.
+ * The lines are compiled once when loaded and again whenever variables are (un)registered,
+ * sending only fills in the variables a line actually uses.
  *
  * @author Jason (darkdiplomat)
  */
 public class MessageOfTheDay {
     private static final List<String> motdLines;
     private static final List<MOTDParser> motdVars;
-    private static final Matcher permMatch = Pattern.compile("\\{permissions:(.)+}.+").matcher("");
+    // The compiled motdLines, replaced as a whole
+    private static volatile MOTDLine[] compiled = new MOTDLine[0];
 
     static {
         motdLines = Collections.synchronizedList(new ArrayList<String>());
@@ -45,6 +48,7 @@ public class MessageOfTheDay {
     }
 
     private void loadMOTD() throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
         File motd_file = new File("config/motd.txt");
         if (!motd_file.exists()) {
             if (!motd_file.createNewFile()) {
@@ -71,11 +75,33 @@ public class MessageOfTheDay {
                 if (line.startsWith("#")) {
                     continue;
                 }
-                motdLines.add(line);
+                lines.add(line);
             }
             scanner.close();
             fis.close();
         }
+        synchronized (motdVars) {
+            motdLines.clear();
+            motdLines.addAll(lines);
+            compile();
+        }
+    }
+
+    /** Compiles the lines for the current variables, the caller must hold the motdVars lock */
+    private void compile() {
+        LinkedHashMap<String, MOTDParser> parsers = new LinkedHashMap<String, MOTDParser>();
+        for (MOTDParser motdp : motdVars) {
+            if (!parsers.containsKey(motdp.key())) {
+                parsers.put(motdp.key(), motdp); // First registered one wins
+            }
+        }
+        synchronized (motdLines) {
+            MOTDLine[] lines = new MOTDLine[motdLines.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = MOTDLine.compile(motdLines.get(i), parsers);
+            }
+            compiled = lines;
+        }
     }
 
     /**
@@ -85,54 +111,10 @@ public class MessageOfTheDay {
      *         the {@link MessageReceiver} who will receive the MOTD
      */
     public void sendMOTD(MessageReceiver msgrec) {
-        synchronized (motdLines) {
-            for (String line : motdLines) {
-                String toSend = line;
-                if (permMatch.reset(toSend).matches()) {
-                    String perms = toSend.substring(toSend.indexOf(':') + 1, toSend.indexOf('}'));
-                    permsParse:
-                    {
-                        if (perms.contains("&")) {
-                            String[] permissions = perms.split("&");
-                            multiParse:
-                            {
-                                for (String permission : permissions) {
-                                    if (permission.charAt(0) == '!' && msgrec.hasPermission(permission.substring(1))) {
-                                        break multiParse; // No good, continue to next line
-                                    }
-                                    else if (!msgrec.hasPermission(permission)) {
-                                        break multiParse; // No good, continue to next line
-                                    }
-                                }
-                                break permsParse; // All good, continue regular parsing
-                            }
-                        }
-                        else if (perms.charAt(0) == '!') {
-                            if (!msgrec.hasPermission(perms.substring(1))) {
-                                break permsParse; // All good, continue regular parsing
-                            }
-                        }
-                        else if (msgrec.hasPermission(perms)) {
-                            break permsParse; // All good, continue regular parsing
-                        }
-                        continue; // No good, continue to next line
-                    }
-                    toSend = toSend.replace(toSend.substring(0, toSend.indexOf('}') + 1), ""); // Remove permission check substring
-                }
-                // Parse variables
-                synchronized (motdVars) {
-                    for (MOTDParser motdp : motdVars) {
-                        try {
-                            toSend = toSend.replace(motdp.key(), motdp.parse(msgrec));
-                        }
-                        catch (Exception ex) {
-                            log.error("Failed to parse MessageOfTheDay Variable from MOTDOwner: " + motdp.getOwner().getName(), ex);
-                        }
-                    }
-                }
-
-                //Replace Color codes
-                toSend = toSend.replaceAll("&([0-9A-FK-ORa-fk-or])", "\u00A7$1");
+        HashMap<MOTDParser, String> values = new HashMap<MOTDParser, String>();
+        for (MOTDLine line : compiled) {
+            String toSend = line.render(msgrec, values);
+            if (toSend != null) {
                 msgrec.message(toSend);
             }
         }
@@ -150,7 +132,6 @@ public class MessageOfTheDay {
      */
     public void registerMOTDListener(final MessageOfTheDayListener listener, final MOTDOwner owner, final boolean force) {
         Method[] methods = listener.getClass().getDeclaredMethods();
-        ArrayList<MOTDParser> newParsers = new ArrayList<MOTDParser>();
 
         for (final Method method : methods) {
             if (!method.isAnnotationPresent(MOTDKey.class)) {
@@ -177,14 +158,19 @@ public class MessageOfTheDay {
                 }
             };
 
-            // Check for duplicate keys
-            for (MOTDParser parser : motdVars) {
-                if (meta.key().equals(parser.key()) && !force) {
-                    log.warn(owner.getName() + " attempted to register MOTDKey: '" + meta.key() + "' but it is already registered to " + parser.getOwner().getName());
-                    continue;
+            synchronized (motdVars) {
+                // Check for duplicate keys
+                for (MOTDParser parser : motdVars) {
+                    if (meta.key().equals(parser.key()) && !force) {
+                        log.warn(owner.getName() + " attempted to register MOTDKey: '" + meta.key() + "' but it is already registered to " + parser.getOwner().getName());
+                        continue;
+                    }
                 }
+                motdVars.add(motdp);
             }
-            motdVars.add(motdp);
+        }
+        synchronized (motdVars) {
+            compile();
         }
     }
 
@@ -196,17 +182,21 @@ public class MessageOfTheDay {
      */
     public void unregisterMOTDListener(MOTDOwner owner) {
         synchronized (motdVars) {
+            boolean removed = false;
             Iterator<MOTDParser> motdpItr = motdVars.iterator();
             while (motdpItr.hasNext()) {
                 if (motdpItr.next().getOwner() == owner) { // Yes, memory address exact
                     motdpItr.remove();
+                    removed = true;
                 }
             }
+            if (removed) {
+                compile();
+            }
         }
     }
 
     public void reload() {
-        motdLines.clear();
         try {
             loadMOTD();
         }
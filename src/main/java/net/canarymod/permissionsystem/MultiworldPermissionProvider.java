@@ -6,12 +6,14 @@ import net.canarymod.Translator;
 import net.canarymod.backbone.PermissionDataAccess;
 import net.canarymod.chat.Colors;
 import net.canarymod.chat.MessageReceiver;
+import net.canarymod.config.Configuration;
 import net.canarymod.database.DataAccess;
 import net.canarymod.database.Database;
 import net.canarymod.database.exceptions.DatabaseReadException;
 
-import java.util.*;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * A PermissionProvider implementation based on PermissionNode objects,
@@ -21,7 +23,9 @@ import java.util.Map.Entry;
  */
 public class MultiworldPermissionProvider implements PermissionProvider {
     private List<PermissionNode> permissions;
-    private Map<String, Boolean> permissionCache = new HashMap<String, Boolean>(35);
+    private final PermissionCache permissionCache = new PermissionCache(Configuration.getServerConfig().getPermissionCacheSize());
+    // Compiled form of the permissions, built on first query after they changed
+    private volatile PermissionTable table;
     private boolean isPlayerProvider;
     private String owner; // This can either be a player uuid or group name
     private String world;
@@ -53,36 +57,6 @@ public class MultiworldPermissionProvider implements PermissionProvider {
         }
     }
 
-    /**
-     * Add a given permission to the permissions cache. The cache is limited and
-     * will prune itself if it gets too big.
-     *
-     * @param path
-     * @param value
-     */
-    private void addPermissionToCache(String path, boolean value) {
-        if (permissionCache.size() > 35) {
-            Iterator<Entry<String, Boolean>> it = permissionCache.entrySet().iterator();
-
-            while (it.hasNext() && permissionCache.size() > 10) {
-                it.next();
-                it.remove();
-            }
-        }
-        permissionCache.put(path, value);
-    }
-
-    /**
-     * Check the permission cache if we have something already
-     *
-     * @param permission
-     *
-     * @return
-     */
-    private Boolean checkCached(String permission) {
-        return permissionCache.get(permission);
-    }
-
     @Override
     public List<PermissionNode> getChildNodes(PermissionNode node, List<PermissionNode> childs) {
         childs.add(node);
@@ -94,6 +68,30 @@ public class MultiworldPermissionProvider implements PermissionProvider {
         return childs;
     }
 
+    /**
+     * Get the compiled permissions, compiling them if they changed since the last query
+     *
+     * @return the permission table
+     */
+    private PermissionTable getTable() {
+        PermissionTable compiled = table;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = table;
+                if (compiled == null) {
+                    compiled = PermissionTable.compile(permissions);
+                    table = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    /** Drops the compiled permissions, they are compiled again on the next query */
+    private synchronized void invalidateTable() {
+        table = null;
+    }
+
     /**
      * get a node that must be directly in the permissions list
      *
@@ -156,88 +154,6 @@ public class MultiworldPermissionProvider implements PermissionProvider {
         return node;
     }
 
-    /**
-     * Resolve the string path and return the result
-     *
-     * @param path
-     *
-     * @return
-     */
-    private boolean resolvePath(String[] path) {
-        PermissionNode node = getRootNode(path[0]);
-        boolean hasAsterisk = getRootNode("*") != null, asteriskValue = hasAsterisk ? getRootNode("*").getValue() : false;
-
-        for (int current = 0; current < path.length; current++) {
-            if (node == null) {
-                return false;
-            }
-            if (node.isAsterisk()) {
-                // File the value only and continue with resolving
-                hasAsterisk = true;
-                asteriskValue = node.getValue();
-            }
-            if (node.hasChildNode("*")) {
-                // Register that we had an asterisk on the way, that's all we need to know!
-                hasAsterisk = true;
-                asteriskValue = node.getChildNode("*").getValue();
-            }
-            if (current + 1 < path.length) {
-                if (node.hasChildNode(path[current + 1])) {
-                    node = node.getChildNode(path[current + 1]);
-                }
-                else {
-                    if (hasAsterisk) { // No subsequent nodes, the asterisk value wins
-                        return asteriskValue;
-                    }
-                    // No asterisk was before this point, so it's false
-                    return false;
-                }
-            }
-        }
-        // Path was fully resolved, check if there was an asterisk on the way
-        if (hasAsterisk) {
-            // Only use asterisk if there's no overriding value behind it on the path
-            if (asteriskValue == node.getValue()) {
-                return asteriskValue;
-            }
-        }
-        // No asterisk or asterisk value is not the same.
-        // The overriding node will be used
-        return node.getValue();
-    }
-
-    /**
-     * Checks if this permission provider actually has the given path loaded.
-     *
-     * @param path
-     *
-     * @return
-     */
-    private boolean hasPath(String[] path) {
-        PermissionNode node = getRootNode(path[0]);
-
-        for (int current = 0; current < path.length; current++) {
-            if (current == 0) {
-                node = getRootNode("*");
-                if (node == null) {
-                    node = getRootNode(path[0]);
-                }
-            }
-            if (current + 1 < path.length) {
-                if (node == null) {
-                    return false;
-                }
-                if (node.hasChildNode(path[current + 1])) {
-                    node = node.getChildNode(path[current + 1]);
-                }
-                else if (node.hasChildNode("*")) {
-                    node = node.getChildNode("*");
-                }
-            }
-        }
-        return node != null && (node.getName().equals(path[path.length - 1]) || node.isAsterisk());
-    }
-
     @Override
     public void addPermission(String path, boolean value, int id) {
         String[] paths = path.split("\\.");
@@ -248,13 +164,14 @@ public class MultiworldPermissionProvider implements PermissionProvider {
         PermissionNode node = addPath(paths, value);
 
         node.setId(id);
+        invalidateTable();
+        invalidateCache(path);
     }
 
     @Override
     public void addPermission(String path, boolean value) {
         addPermission(path, value, Canary.permissionManager().addPermission(path, value, owner, isPlayerProvider ? "player" : "group", this.world));
         // addPermission(path, value, permissions.size()); //Testing
-        flushCache();
     }
 
     @Override
@@ -262,36 +179,86 @@ public class MultiworldPermissionProvider implements PermissionProvider {
         if (permission.isEmpty() || permission.equals(" ")) {
             return true;
         }
-        Boolean b = checkCached(permission);
+        Boolean b = permissionCache.get(permission);
         if (b != null) {
             return b;
         }
-        String[] path = permission.split("\\.");
-        if (!this.hasPath(path)) {
+        int generation = permissionCache.getGeneration();
+        PermissionTable compiled = getTable();
+        if (!compiled.hasPath(permission)) {
             if (parent != null) {
                 return parent.queryPermission(permission);
             }
         }
-        boolean result = resolvePath(permission.split("\\."));
-        addPermissionToCache(permission, result);
+        boolean result = compiled.resolve(permission);
+        permissionCache.put(permission, result, generation);
 
         return result;
     }
 
     @Override
     public boolean pathExists(String permission) {
-        return permission.trim().isEmpty() || hasPath(permission.split("\\.")) || (parent != null && parent.pathExists(permission));
+        return permission.trim().isEmpty() || getTable().hasPath(permission) || (parent != null && parent.pathExists(permission));
     }
 
     @Override
     public void flushCache() {
         permissionCache.clear();
+        invalidateTable();
     }
 
     @Override
     public void reload() {
-        permissions.clear();
+        loadPermissions();
         permissionCache.clear();
+    }
+
+    /**
+     * Reloads the permissions after the given path changed in the database.
+     * Unlike {@link #reload()} this keeps the cached results for unrelated permissions.
+     *
+     * @param path
+     *         the permission path that was changed
+     */
+    public void reload(String path) {
+        boolean hadAsterisk = hasAsteriskRoot();
+        loadPermissions();
+        if (hadAsterisk) {
+            permissionCache.clear();
+        }
+        else {
+            invalidateCache(path);
+        }
+    }
+
+    /**
+     * Drops the cached results a change of the given path can affect.
+     * With an asterisk root that is everything: {@link #getRootNode(String)} puts any path below it,
+     * and it decides for all roots.
+     *
+     * @param path
+     *         the permission path that was changed
+     */
+    private void invalidateCache(String path) {
+        if (hasAsteriskRoot()) {
+            permissionCache.clear();
+        }
+        else {
+            permissionCache.invalidate(path);
+        }
+    }
+
+    private boolean hasAsteriskRoot() {
+        for (PermissionNode n : permissions) {
+            if (n.isAsterisk()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void loadPermissions() {
+        permissions.clear();
         if (isPlayerProvider) {
             PermissionProvider p = Canary.permissionManager().getPlayerProvider(owner, world);
             permissions = p.getPermissionMap();
@@ -300,6 +267,16 @@ public class MultiworldPermissionProvider implements PermissionProvider {
             PermissionProvider p = Canary.permissionManager().getGroupsProvider(owner, world);
             permissions = p.getPermissionMap();
         }
+        invalidateTable();
+    }
+
+    /**
+     * Gets the cache of permission check results of this provider
+     *
+     * @return the permission cache
+     */
+    public PermissionCache getCache() {
+        return permissionCache;
     }
 
     @Override
@@ -0,0 +1,192 @@
+package net.canarymod.permissionsystem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache of permission check results for one {@link MultiworldPermissionProvider}.
+ * <p/>
+ * The cache is split into segments, each an LRU map guarded by its own lock,
+ * so checks from the server thread and from async threads don't queue up on a single lock.
+ * When permissions change, only the results under the changed root node are dropped.
+ *
+ * @author Chris (damagefilter)
+ */
+public final class PermissionCache {
+    private static final int SEGMENTS = 4;
+
+    private final Segment[] segments;
+    private final int maxSize;
+    // Bumped on every invalidation, results resolved before that are not cached
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    PermissionCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.segments = new Segment[SEGMENTS];
+        int segmentSize = (this.maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize, evictions);
+        }
+    }
+
+    Boolean get(String permission) {
+        if (maxSize == 0) {
+            return null;
+        }
+        Segment segment = segmentFor(permission);
+        Boolean value;
+        synchronized (segment) {
+            value = segment.get(permission);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Gets the current generation, read it before resolving a permission and hand it to {@link #put}
+     *
+     * @return generation
+     */
+    int getGeneration() {
+        return generation.get();
+    }
+
+    void put(String permission, boolean value, int resolvedIn) {
+        if (maxSize == 0) {
+            return;
+        }
+        Segment segment = segmentFor(permission);
+        synchronized (segment) {
+            if (resolvedIn == generation.get()) {
+                segment.put(permission, value);
+            }
+        }
+    }
+
+    /**
+     * Drops all results for permissions below the root node of the given path.
+     * Changing an asterisk root drops everything, it decides for all other roots.
+     *
+     * @param path
+     *         the permission path that changed
+     */
+    void invalidate(String path) {
+        int dot = path.indexOf('.');
+        String root = dot < 0 ? path : path.substring(0, dot);
+        if (root.equals("*")) {
+            clear();
+            return;
+        }
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<String> iter = segment.keySet().iterator();
+                while (iter.hasNext()) {
+                    String key = iter.next();
+                    if (key.startsWith(root) && (key.length() == root.length() || key.charAt(root.length()) == '.')) {
+                        iter.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Drops all cached results */
+    void clear() {
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segmentFor(String permission) {
+        int hash = permission.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Gets the maximum amount of cached results
+     *
+     * @return max size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the amount of cached results
+     *
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets how many checks were answered from the cache
+     *
+     * @return hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets how many checks had to be resolved
+     *
+     * @return miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets how many results were dropped to make room for newer ones
+     *
+     * @return eviction count
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Access ordered map that drops its least recently used entry when full */
+    private static final class Segment extends LinkedHashMap<String, Boolean> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        private final AtomicLong evictions;
+
+        Segment(int capacity, AtomicLong evictions) {
+            super(16, 0.75F, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
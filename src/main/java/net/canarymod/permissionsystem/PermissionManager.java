@@ -57,13 +57,24 @@ public class PermissionManager {
     public void removePlayerPermission(String path, Player player) {
         backbone.removePermission(path, player.getName(), player.getWorld().getFqName(), true);
         removePlayerPermission(path, player.getName(), player.getWorld().getFqName());
-        player.getPermissionProvider().reload();
+        reload(player.getPermissionProvider(), path);
     }
 
     public void removeGroupPermission(String path, Group group) {
         backbone.removePermission(path, group.getName(), group.getWorldName(), false);
-        group.getPermissionProvider().reload();
+        reload(group.getPermissionProvider(), path);
+    }
 
+    /**
+     * Reloads a provider after one of its paths was removed, keeping its cached results for unrelated paths if it can
+     */
+    private void reload(PermissionProvider provider, String path) {
+        if (provider instanceof MultiworldPermissionProvider) {
+            ((MultiworldPermissionProvider) provider).reload(path);
+        }
+        else {
+            provider.reload();
+        }
     }
 
     public void removeAllGroupPermissions(Group group) {
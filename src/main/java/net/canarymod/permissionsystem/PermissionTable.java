@@ -0,0 +1,244 @@
+package net.canarymod.permissionsystem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of the {@link PermissionNode} trees of a {@link MultiworldPermissionProvider}.
+ * <p/>
+ * Permission strings are walked segment by segment directly on the string,
+ * child nodes are looked up in open addressed tables keyed by the segment's characters,
+ * so a check costs one lookup per path segment and allocates nothing.
+ * The lookup rules are the same as on the node trees, including the asterisk handling.
+ *
+ * @author Chris (damagefilter)
+ */
+final class PermissionTable {
+    private static final NodeTable EMPTY = new NodeTable(new ArrayList<Entry>(0));
+
+    private final NodeTable roots;
+    // The first asterisk root node, it shadows all root nodes listed after it
+    private final Entry rootAsterisk;
+
+    private PermissionTable(NodeTable roots, Entry rootAsterisk) {
+        this.roots = roots;
+        this.rootAsterisk = rootAsterisk;
+    }
+
+    /**
+     * Compiles the given root nodes
+     *
+     * @param permissions
+     *         the root nodes, in the order the provider holds them
+     *
+     * @return the compiled table
+     */
+    static PermissionTable compile(List<PermissionNode> permissions) {
+        ArrayList<Entry> roots = new ArrayList<Entry>(permissions.size());
+        HashSet<String> names = new HashSet<String>();
+        Entry rootAsterisk = null;
+        for (PermissionNode node : permissions) {
+            if (node.isAsterisk()) {
+                rootAsterisk = compile(node);
+                break;
+            }
+            if (names.add(node.getName())) { // First one wins
+                roots.add(compile(node));
+            }
+        }
+        return new PermissionTable(roots.isEmpty() ? EMPTY : new NodeTable(roots), rootAsterisk);
+    }
+
+    private static Entry compile(PermissionNode node) {
+        Map<String, PermissionNode> childs = node.getChilds();
+        if (childs.isEmpty()) {
+            return new Entry(node.getName(), node.getValue(), EMPTY, null);
+        }
+        ArrayList<Entry> compiled = new ArrayList<Entry>(childs.size());
+        Entry asteriskChild = null;
+        for (PermissionNode child : childs.values()) {
+            Entry entry = compile(child);
+            compiled.add(entry);
+            if (entry.asterisk) {
+                asteriskChild = entry;
+            }
+        }
+        return new Entry(node.getName(), node.getValue(), new NodeTable(compiled), asteriskChild);
+    }
+
+    /**
+     * Checks if the given path is covered by this table, directly or by an asterisk node
+     *
+     * @param permission
+     *         the permission path
+     *
+     * @return true if the path exists
+     */
+    boolean hasPath(String permission) {
+        int end = trimmedEnd(permission);
+        if (end == 0 && permission.length() > 0) {
+            return false; // Nothing but dots
+        }
+        int segEnd = nextDot(permission, 0, end);
+        Entry node = rootAsterisk != null ? rootAsterisk : roots.get(permission, 0, segEnd);
+        int lastStart = 0;
+        int lastEnd = segEnd;
+        int next = segEnd + 1;
+        while (next <= end) {
+            if (node == null) {
+                return false;
+            }
+            int nextEnd = nextDot(permission, next, end);
+            Entry child = node.childs.get(permission, next, nextEnd);
+            if (child != null) {
+                node = child;
+            }
+            else if (node.asteriskChild != null) {
+                node = node.asteriskChild;
+            }
+            lastStart = next;
+            lastEnd = nextEnd;
+            next = nextEnd + 1;
+        }
+        return node != null && (node.asterisk || node.matches(permission, lastStart, lastEnd));
+    }
+
+    /**
+     * Resolves the value of the given path. An asterisk on the way decides
+     * for all nodes below it, unless the full path is present.
+     *
+     * @param permission
+     *         the permission path
+     *
+     * @return the value at the path
+     */
+    boolean resolve(String permission) {
+        int end = trimmedEnd(permission);
+        if (end == 0 && permission.length() > 0) {
+            return false; // Nothing but dots
+        }
+        int segEnd = nextDot(permission, 0, end);
+        Entry node = root(permission, 0, segEnd);
+        boolean hasAsterisk = rootAsterisk != null;
+        boolean asteriskValue = hasAsterisk && rootAsterisk.value;
+        int next = segEnd + 1;
+        while (true) {
+            if (node == null) {
+                return false;
+            }
+            if (node.asterisk) {
+                hasAsterisk = true;
+                asteriskValue = node.value;
+            }
+            if (node.asteriskChild != null) {
+                hasAsterisk = true;
+                asteriskValue = node.asteriskChild.value;
+            }
+            if (next > end) {
+                // Path was fully resolved, the node at its end overrides any asterisk before it
+                return node.value;
+            }
+            int nextEnd = nextDot(permission, next, end);
+            Entry child = node.childs.get(permission, next, nextEnd);
+            if (child == null) {
+                // No subsequent nodes, the asterisk value wins if there was one
+                return hasAsterisk && asteriskValue;
+            }
+            node = child;
+            next = nextEnd + 1;
+        }
+    }
+
+    private Entry root(String s, int from, int to) {
+        Entry entry = roots.get(s, from, to);
+        return entry != null ? entry : rootAsterisk;
+    }
+
+    /** Length of the path without trailing dots, which String.split drops as well */
+    private static int trimmedEnd(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == '.') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int nextDot(String s, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (s.charAt(i) == '.') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final boolean value;
+        private final boolean asterisk;
+        private final NodeTable childs;
+        private final Entry asteriskChild;
+
+        Entry(String name, boolean value, NodeTable childs, Entry asteriskChild) {
+            this.name = name;
+            this.value = value;
+            this.asterisk = name.equals("*");
+            this.childs = childs;
+            this.asteriskChild = asteriskChild;
+        }
+
+        boolean matches(String s, int from, int to) {
+            return name.length() == to - from && s.regionMatches(from, name, 0, name.length());
+        }
+    }
+
+    /** Open addressed name to entry table that can be probed with a region of a string */
+    private static final class NodeTable {
+        private final Entry[] entries;
+        private final int[] hashes;
+        private final int mask;
+
+        NodeTable(List<Entry> content) {
+            int size = 2;
+            while (size < content.size() * 2) {
+                size <<= 1;
+            }
+            entries = new Entry[size];
+            hashes = new int[size];
+            mask = size - 1;
+            for (Entry entry : content) {
+                int hash = spread(entry.name.hashCode());
+                int index = hash & mask;
+                while (entries[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                entries[index] = entry;
+                hashes[index] = hash;
+            }
+        }
+
+        Entry get(String s, int from, int to) {
+            // Same as String.hashCode() of the substring
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            hash = spread(hash);
+            int index = hash & mask;
+            Entry entry;
+            while ((entry = entries[index]) != null) {
+                if (hashes[index] == hash && entry.matches(s, from, to)) {
+                    return entry;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -13,11 +13,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.canarymod.Canary.log;
 import org.apache.logging.log4j.Logger;
@@ -64,37 +73,156 @@ public final class PluginLoader {
                 jars.add(jarfile);
             }
         }
-        HashMap<String, PropertiesFile> canLoad = new HashMap<String, PropertiesFile>();
-        int numLoaded = 1;
-        for (String jar : jars) {
-            PropertiesFile check = scan(jar, numLoaded);
-            if (check == null) {
-                continue;
+        ExecutorService pool = newStartupPool(jars.size());
+        try {
+            // Read all Canary.inf files in parallel, the priorities are handed out afterwards in directory order
+            long phase = System.nanoTime();
+            ArrayList<Future<PropertiesFile>> infs = new ArrayList<Future<PropertiesFile>>(jars.size());
+            for (final String jar : jars) {
+                infs.add(pool.submit(new Callable<PropertiesFile>() {
+                    @Override
+                    public PropertiesFile call() {
+                        return scan(jar);
+                    }
+                }));
+            }
+            HashMap<String, PropertiesFile> canLoad = new HashMap<String, PropertiesFile>();
+            boolean prioritiesChanged = false;
+            int numLoaded = 1;
+            for (int i = 0; i < jars.size(); i++) {
+                PropertiesFile check = getQuietly(infs.get(i));
+                if (check == null) {
+                    continue;
+                }
+                String name = check.getString("name");
+                if (!pluginPriorities.containsKey(name)) {
+                    pluginPriorities.setInt(name, numLoaded * 10);
+                    prioritiesChanged = true;
+                }
+                else if (pluginPriorities.getInt(name) < 0) {
+                    continue;
+                }
+                canLoad.put(jars.get(i), check);
+                numLoaded++;
+            }
+            if (prioritiesChanged) {
+                pluginPriorities.save();
+            }
+            log.info(String.format("Scanned %d plugin jars in %d ms", jars.size(), elapsedMillis(phase)));
+
+            phase = System.nanoTime();
+            LinkedList<DependencyNode> loadOrder = new LinkedList<DependencyNode>();
+            buildDepTree(canLoad, loadOrder);
+            log.info(String.format("Resolved plugin dependencies in %d ms", elapsedMillis(phase)));
+
+            // Load the main classes in parallel. Each one waits for the classes of its dependencies only,
+            // so plugins that do not depend on each other are loaded at the same time
+            phase = System.nanoTime();
+            LinkedHashMap<DependencyNode, Future<CanaryClassLoader>> mainClasses = new LinkedHashMap<DependencyNode, Future<CanaryClassLoader>>();
+            for (DependencyNode node : loadOrder) {
+                if (mainClasses.containsKey(node)) {
+                    continue;
+                }
+                final PropertiesFile inf = node.getInf();
+                HashSet<String> required = new HashSet<String>();
+                if (inf.containsKey("dependencies")) {
+                    for (String dependency : inf.getStringArray("dependencies", "[,;]+")) {
+                        required.add(dependency.trim());
+                    }
+                }
+                final ArrayList<Future<CanaryClassLoader>> dependencies = new ArrayList<Future<CanaryClassLoader>>(node.edges.size());
+                final ArrayList<Future<CanaryClassLoader>> requiredDependencies = new ArrayList<Future<CanaryClassLoader>>(node.edges.size());
+                for (DependencyNode edge : node.edges) {
+                    if (mainClasses.containsKey(edge)) {
+                        dependencies.add(mainClasses.get(edge));
+                        if (required.contains(edge.getName())) {
+                            requiredDependencies.add(mainClasses.get(edge));
+                        }
+                    }
+                }
+                // loadOrder is sorted so dependencies are always submitted first, nothing waits on a task that did not start yet
+                mainClasses.put(node, pool.submit(new Callable<CanaryClassLoader>() {
+                    @Override
+                    public CanaryClassLoader call() throws Exception {
+                        for (Future<CanaryClassLoader> dependency : dependencies) {
+                            if (getQuietly(dependency) == null && requiredDependencies.contains(dependency)) {
+                                return null; // Not opening the jar, load() rejects the plugin for the missing dependency
+                            }
+                        }
+                        return loadMainClass(inf);
+                    }
+                }));
             }
-            else {
-                canLoad.put(jar, check);
+
+            log.info("Found " + mainClasses.size() + " loadable plugins. Attempting load...");
+            // Instances are created here on the main thread, in load order
+            for (Map.Entry<DependencyNode, Future<CanaryClassLoader>> entry : mainClasses.entrySet()) {
+                DependencyNode node = entry.getKey();
+                load(node.getJarName(), node.getInf(), entry.getValue());
             }
-            numLoaded++;
+            log.info(String.format("Loaded %d plugins in %d ms", plugins.size(), elapsedMillis(phase)));
         }
-        LinkedList<DependencyNode> loadOrder = new LinkedList<DependencyNode>();
-        buildDepTree(canLoad, loadOrder);
+        finally {
+            pool.shutdown();
+        }
+    }
 
-        log.info("Found " + loadOrder.size() + " loadable plugins. Attempting load...");
-        for (DependencyNode node : loadOrder) {
-            load(node.getJarName(), node.getInf());
+    /**
+     * Creates the pool used to scan and load plugins on startup
+     *
+     * @param jars
+     *         the number of jars to be scanned
+     *
+     * @return the pool
+     */
+    private ExecutorService newStartupPool(int jars) {
+        int threads = Math.max(1, Math.min(jars, Runtime.getRuntime().availableProcessors()));
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Canary Plugin Loader #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Waits for the result of a startup task. Failures are logged where the result is used.
+     *
+     * @param future
+     *         the task
+     *
+     * @return the result; {@code null} if the task failed
+     */
+    private <V> V getQuietly(Future<V> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
         }
+        catch (ExecutionException eex) {
+            // Logged where it happened
+        }
+        return null;
+    }
+
+    private long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
     }
 
     /**
-     * Get the Canary.inf from a jar file
+     * Get the Canary.inf from a jar file.
+     * Safe to call from any thread, the priority of the plugin is not looked at here.
      *
      * @param filename
-     * @param priorityBase
-     *         The base for plugin priority which is used to calculate the priority of new Plugins
      *
      * @return
      */
-    private final PropertiesFile scan(String filename, int priorityBase) {
+    private PropertiesFile scan(String filename) {
         PropertiesFile inf;
         try {
             File file = new File("plugins/" + filename);
@@ -110,14 +238,6 @@ public final class PluginLoader {
             if (!inf.containsKey("name")) {
                 inf.setString("name", simpleMain(inf.getString("main-class")));
             }
-
-            if (!pluginPriorities.containsKey(inf.getString("name"))) {
-                pluginPriorities.setInt(inf.getString("name"), priorityBase * 10);
-                pluginPriorities.save();
-            }
-            else if (pluginPriorities.getInt(inf.getString("name")) < 0) {
-                return null;
-            }
         }
         catch (Throwable ex) {
             log.error("Exception while loading plugin jar '" + filename + "' (Canary.inf missing?)", ex);
@@ -269,6 +389,24 @@ public final class PluginLoader {
      * @return
      */
     private final boolean load(String pluginJar, PropertiesFile inf) {
+        return load(pluginJar, inf, null);
+    }
+
+    /**
+     * The class loader
+     * The pluginName should come as full file name with file extension
+     *
+     * @param pluginJar
+     * @param inf
+     * @param preloaded
+     *         the loader the main class was loaded in advance with; {@code null} to load it here.
+     *         The loader is closed if the plugin is not loaded.
+     *
+     * @return
+     */
+    private final boolean load(String pluginJar, PropertiesFile inf, Future<CanaryClassLoader> preloaded) {
+        CanaryClassLoader ploader = null;
+        boolean loaded = false;
         try {
             String name = inf.getString("name");
             String mainClass = inf.getString("main-class");
@@ -301,22 +439,64 @@ public final class PluginLoader {
                 }
             }
             pluginInf.put(simpleMain(mainClass), inf);
-            CanaryClassLoader ploader = new CanaryClassLoader(new File(inf.getString("jarPath")).toURI().toURL(), getClass().getClassLoader());
+            ploader = preloaded != null ? preloaded.get() : loadMainClass(inf);
+            if (ploader == null) {
+                return false; // Not preloaded, a dependency failed
+            }
             Class<?> c = ploader.loadClass(mainClass);
             Plugin plugin = (Plugin) c.newInstance();
             plugin.setPriority(pluginPriorities.getInt(name, 0));
             synchronized (lock) {
                 this.plugins.put(name, plugin);
             }
+            loaded = true;
+        }
+        catch (ExecutionException eex) {
+            log.error("Exception while loading plugin '" + pluginJar + "'", eex.getCause());
+            return false;
         }
         catch (Throwable ex) {
             log.error("Exception while loading plugin '" + pluginJar + "'", ex);
             return false;
         }
+        finally {
+            if (!loaded) {
+                if (ploader == null && preloaded != null) {
+                    ploader = getQuietly(preloaded);
+                }
+                if (ploader != null) {
+                    ploader.close(); // Releases the jar and takes the loader out of the class watcher
+                }
+            }
+        }
 
         return true;
     }
 
+    /**
+     * Opens the plugin jar in a new {@link CanaryClassLoader} and loads the main class from it.
+     * Safe to call from any thread, the class is not initialized here.
+     *
+     * @param inf
+     *         the Canary.inf of the plugin
+     *
+     * @return the loader holding the main class
+     *
+     * @throws Exception
+     *         if the jar cannot be opened or the class cannot be loaded, the loader is closed again then
+     */
+    private CanaryClassLoader loadMainClass(PropertiesFile inf) throws Exception {
+        CanaryClassLoader ploader = new CanaryClassLoader(new File(inf.getString("jarPath")).toURI().toURL(), getClass().getClassLoader());
+        try {
+            ploader.loadClass(inf.getString("main-class"));
+            return ploader;
+        }
+        catch (Exception ex) {
+            ploader.close();
+            throw ex;
+        }
+    }
+
     private final boolean load(File file) {
         try {
             if (!file.isFile()) {
@@ -55,4 +55,8 @@ public class RegisteredPluginListener {
     public Priority getMethodPriority() {
         return methodPriority;
     }
+
+    public Dispatcher getDispatcher() {
+        return executor;
+    }
 }
@@ -0,0 +1,211 @@
+package net.canarymod.tasks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * Runs asynchronous tasks on worker threads and collects callbacks that have to go back to the server thread
+ *
+ * @author Jason (darkdiplomat)
+ * @see ServerTaskManager#addAsyncTask(TaskOwner, Callable)
+ * @see ServerTaskManager#runOnMainThread(TaskOwner, Runnable)
+ */
+final class AsyncTaskExecutor {
+    private final ThreadPoolExecutor pool;
+    private final HashMap<TaskOwner, HashSet<OwnedTask<?>>> running = new HashMap<TaskOwner, HashSet<OwnedTask<?>>>();
+    private final ConcurrentLinkedQueue<Callback> callbacks = new ConcurrentLinkedQueue<Callback>();
+    private final AtomicInteger queuedCallbacks = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong executionNanos = new AtomicLong();
+    private final AtomicLong callbackRuns = new AtomicLong();
+    private final AtomicLong callbackNanos = new AtomicLong();
+
+    AsyncTaskExecutor(int threads) {
+        pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Canary Async Task #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    <V> Future<V> submit(TaskOwner owner, Callable<V> callable) {
+        OwnedTask<V> task = new OwnedTask<V>(owner, callable);
+        synchronized (running) {
+            HashSet<OwnedTask<?>> owned = running.get(owner);
+            if (owned == null) {
+                owned = new HashSet<OwnedTask<?>>();
+                running.put(owner, owned);
+            }
+            owned.add(task);
+        }
+        pool.execute(task);
+        return task;
+    }
+
+    void runOnMainThread(TaskOwner owner, Runnable runnable) {
+        callbacks.add(new Callback(owner, runnable));
+        queuedCallbacks.incrementAndGet();
+    }
+
+    /**
+     * Runs queued callbacks until the queue is empty or the budget is used up.
+     * At least one callback is run per call so the queue always makes progress.
+     */
+    void drainCallbacks(long budgetNanos) {
+        long start = System.nanoTime();
+        Callback callback;
+        while ((callback = callbacks.poll()) != null) {
+            queuedCallbacks.decrementAndGet();
+            long begin = System.nanoTime();
+            try {
+                callback.runnable.run();
+            }
+            catch (Throwable thrown) {
+                log.error("An Exception occurred while executing a main thread callback: " + callback.runnable.getClass().getSimpleName(), thrown);
+            }
+            long end = System.nanoTime();
+            callbackRuns.incrementAndGet();
+            callbackNanos.addAndGet(end - begin);
+            if (end - start >= budgetNanos) {
+                break;
+            }
+        }
+    }
+
+    /** Cancels the running and queued async tasks and drops the queued callbacks of an owner */
+    void cancel(TaskOwner owner) {
+        HashSet<OwnedTask<?>> owned;
+        synchronized (running) {
+            owned = running.remove(owner);
+        }
+        if (owned != null) {
+            for (OwnedTask<?> task : owned) {
+                task.cancel(true);
+            }
+        }
+        Iterator<Callback> iter = callbacks.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().owner.equals(owner)) {
+                iter.remove();
+                queuedCallbacks.decrementAndGet();
+            }
+        }
+    }
+
+    int getQueuedTasks() {
+        return pool.getQueue().size();
+    }
+
+    int getActiveTasks() {
+        return pool.getActiveCount();
+    }
+
+    long getCompletedTasks() {
+        return completed.get();
+    }
+
+    long getFailedTasks() {
+        return failed.get();
+    }
+
+    long getTaskNanos() {
+        return executionNanos.get();
+    }
+
+    int getQueuedCallbacks() {
+        return queuedCallbacks.get();
+    }
+
+    long getCallbackRuns() {
+        return callbackRuns.get();
+    }
+
+    long getCallbackNanos() {
+        return callbackNanos.get();
+    }
+
+    /** A task handed to the pool, tracked for its owner until done */
+    private final class OwnedTask<V> extends FutureTask<V> {
+        private final TaskOwner owner;
+        private final String name;
+
+        OwnedTask(TaskOwner owner, Callable<V> callable) {
+            super(callable);
+            this.owner = owner;
+            this.name = callable.getClass().getSimpleName();
+        }
+
+        @Override
+        public void run() {
+            long begin = System.nanoTime();
+            try {
+                super.run();
+            }
+            finally {
+                executionNanos.addAndGet(System.nanoTime() - begin);
+            }
+        }
+
+        @Override
+        protected void done() {
+            synchronized (running) {
+                HashSet<OwnedTask<?>> owned = running.get(owner);
+                if (owned != null) {
+                    owned.remove(this);
+                    if (owned.isEmpty()) {
+                        running.remove(owner);
+                    }
+                }
+            }
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+                completed.incrementAndGet();
+            }
+            catch (ExecutionException exex) {
+                failed.incrementAndGet();
+                log.error("An Exception occurred while executing async task: " + name, exex.getCause());
+            }
+            catch (CancellationException cex) {
+                // Raced with a cancel, nothing to report
+            }
+            catch (InterruptedException iex) {
+                // Can't happen, the task is done
+            }
+        }
+    }
+
+    private static final class Callback {
+        private final TaskOwner owner;
+        private final Runnable runnable;
+
+        Callback(TaskOwner owner, Runnable runnable) {
+            this.owner = owner;
+            this.runnable = runnable;
+        }
+    }
+}
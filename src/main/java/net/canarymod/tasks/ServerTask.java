@@ -85,18 +85,13 @@ public abstract class ServerTask {
     public void onReset() {
     }
 
-    /** Internal use method to decrease the delay */
-    final void decrementDelay() {
-        --delay;
-    }
-
     /**
-     * Internal use method to check if it is time to run the task
+     * Internal use method to get the ticks to wait before the next execution
      *
-     * @return {@code true} for execute; {@code false} for not
+     * @return the delay
      */
-    final boolean shouldExecute() {
-        return delay <= 0;
+    final long getDelay() {
+        return delay;
     }
 
     /** Internal use method to reset the delay on continuous tasks */
@@ -1,10 +1,12 @@
 package net.canarymod.tasks;
 
+import net.canarymod.config.Configuration;
 import net.canarymod.plugin.Plugin;
 
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static net.canarymod.Canary.log;
 
@@ -12,20 +14,31 @@ import static net.canarymod.Canary.log;
  * Server Task Manager
  * <p/>
  * The Manager for {@link ServerTask}<br>
- * If an exception occurs while running a task, it gets removed from the queue, regardless of continuous status
+ * If an exception occurs while running a task, it gets removed from the queue, regardless of continuous status<br>
+ * Tasks are kept in a timing wheel, so a tick only costs as much as the tasks that are due in it<br>
+ * Work that should not hold up the server thread, like file or network I/O, can be run with
+ * {@link #addAsyncTask(TaskOwner, Callable)} and hand its results back with {@link #runOnMainThread(TaskOwner, Runnable)}<br>
+ * With a tick budget set (server.cfg task-tick-budget), due tasks that don't fit in a tick are deferred to the next one
  *
  * @author Jason (darkdiplomat)
  */
 public final class ServerTaskManager {
     private final static ServerTaskManager $;
-    private final ConcurrentHashMap<ServerTask, TaskOwner> tasks;
+    private final TaskWheel tasks;
+    private final TaskWheel.TaskSlot due;
+    private AsyncTaskExecutor async;
+    // Next start offset handed out per period when staggering continuous tasks
+    private final HashMap<Long, Long> staggerPhases = new HashMap<Long, Long>();
+    private final HashMap<TaskOwner, Long> overruns = new HashMap<TaskOwner, Long>();
+    private final HashMap<TaskOwner, Long> deferrals = new HashMap<TaskOwner, Long>();
 
     static {
         $ = new ServerTaskManager();
     }
 
     private ServerTaskManager() {
-        tasks = new ConcurrentHashMap<ServerTask, TaskOwner>();
+        tasks = new TaskWheel();
+        due = new TaskWheel.TaskSlot();
     }
 
     /**
@@ -38,7 +51,15 @@ public final class ServerTaskManager {
      */
     public static boolean addTask(ServerTask task) {
         synchronized ($.tasks) {
-            $.tasks.put(task, task.getOwner());
+            long delay = task.getDelay();
+            if (task.isContinuous() && delay > 1 && Configuration.getServerConfig().isTaskStaggerEnabled()) {
+                // Spread tasks with the same period over the ticks of that period instead of having them all fire together
+                Long phase = $.staggerPhases.get(delay);
+                long offset = phase == null ? 0 : phase;
+                $.staggerPhases.put(delay, (offset + 1) % delay);
+                delay += offset;
+            }
+            $.tasks.add(task, delay);
             return true;
         }
     }
@@ -54,7 +75,7 @@ public final class ServerTaskManager {
      */
     public static boolean removeTask(ServerTask task) {
         synchronized ($.tasks) {
-            return $.tasks.remove(task) != null;
+            return $.tasks.remove(task);
         }
     }
 
@@ -66,43 +87,249 @@ public final class ServerTaskManager {
      */
     public static void removeTasks(TaskOwner owner) {
         synchronized ($.tasks) {
-            Iterator<Entry<ServerTask, TaskOwner>> taskIter = $.tasks.entrySet().iterator();
-            while (taskIter.hasNext()) {
-                if (taskIter.next().getValue().equals(owner)) {
-                    taskIter.remove();
-                }
+            $.tasks.removeAll(owner);
+            $.overruns.remove(owner);
+            $.deferrals.remove(owner);
+        }
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        if (async != null) {
+            async.cancel(owner);
+        }
+    }
+
+    /**
+     * Runs a task on a worker thread, off the server thread.<br>
+     * The task must not touch the world, entities or players directly, hand that back with
+     * {@link #runOnMainThread(TaskOwner, Runnable)} instead.<br>
+     * Tasks still running when their owner's tasks are removed get interrupted.
+     *
+     * @param owner
+     *         the {@link TaskOwner} of the task, typically a {@link Plugin}
+     * @param task
+     *         the task to run
+     * @param <V>
+     *         the result type
+     *
+     * @return a {@link Future} for the result of the task
+     */
+    public static <V> Future<V> addAsyncTask(TaskOwner owner, Callable<V> task) {
+        if (owner == null) {
+            throw new IllegalArgumentException("An async task requires an owner.");
+        }
+        return $.getAsync().submit(owner, task);
+    }
+
+    /**
+     * Runs a task on a worker thread, off the server thread.
+     *
+     * @param owner
+     *         the {@link TaskOwner} of the task, typically a {@link Plugin}
+     * @param task
+     *         the task to run
+     *
+     * @return a {@link Future} completing when the task is done
+     *
+     * @see #addAsyncTask(TaskOwner, Callable)
+     */
+    public static Future<?> addAsyncTask(TaskOwner owner, final Runnable task) {
+        return addAsyncTask(owner, new Callable<Object>() {
+            @Override
+            public Object call() {
+                task.run();
+                return null;
             }
+        });
+    }
+
+    /**
+     * Queues a callback to run on the server thread with the next ticks.<br>
+     * Callbacks run in the order they were queued, within a time budget per tick (server.cfg main-thread-callback-budget).
+     * Whatever doesn't fit is left for the next tick.
+     *
+     * @param owner
+     *         the {@link TaskOwner} of the callback, typically a {@link Plugin}
+     * @param callback
+     *         the callback to run
+     */
+    public static void runOnMainThread(TaskOwner owner, Runnable callback) {
+        if (owner == null) {
+            throw new IllegalArgumentException("A main thread callback requires an owner.");
+        }
+        $.getAsync().runOnMainThread(owner, callback);
+    }
+
+    /**
+     * Gets the amount of async tasks waiting for a worker thread
+     *
+     * @return queued task count
+     */
+    public static int getAsyncQueueSize() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getQueuedTasks();
+    }
+
+    /**
+     * Gets the amount of async tasks currently running
+     *
+     * @return running task count
+     */
+    public static int getAsyncActiveCount() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getActiveTasks();
+    }
+
+    /**
+     * Gets the amount of async tasks that finished, successfully or not
+     *
+     * @return finished task count
+     */
+    public static long getAsyncFinishedCount() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getCompletedTasks() + async.getFailedTasks();
+    }
+
+    /**
+     * Gets the amount of async tasks that ended with an exception
+     *
+     * @return failed task count
+     */
+    public static long getAsyncFailedCount() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getFailedTasks();
+    }
+
+    /**
+     * Gets the time the worker threads spent executing async tasks
+     *
+     * @return execution time in nanoseconds
+     */
+    public static long getAsyncExecutionNanos() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getTaskNanos();
+    }
+
+    /**
+     * Gets the amount of callbacks waiting to run on the server thread
+     *
+     * @return queued callback count
+     */
+    public static int getMainThreadQueueSize() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getQueuedCallbacks();
+    }
+
+    /**
+     * Gets the time the server thread spent running callbacks
+     *
+     * @return execution time in nanoseconds
+     */
+    public static long getMainThreadCallbackNanos() {
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        return async == null ? 0 : async.getCallbackNanos();
+    }
+
+    /**
+     * Gets how often a task of the given owner finished past the tick budget
+     *
+     * @param owner
+     *         the {@link TaskOwner}
+     *
+     * @return overrun count
+     */
+    public static long getOverruns(TaskOwner owner) {
+        synchronized ($.tasks) {
+            Long count = $.overruns.get(owner);
+            return count == null ? 0 : count;
+        }
+    }
+
+    /**
+     * Gets how often a task of the given owner was pushed to a later tick because the tick budget was used up
+     *
+     * @param owner
+     *         the {@link TaskOwner}
+     *
+     * @return deferral count
+     */
+    public static long getDeferrals(TaskOwner owner) {
+        synchronized ($.tasks) {
+            Long count = $.deferrals.get(owner);
+            return count == null ? 0 : count;
+        }
+    }
+
+    /**
+     * Gets the amount of due tasks currently waiting for a tick with budget left
+     *
+     * @return deferred task count
+     */
+    public static int getDeferredCount() {
+        synchronized ($.tasks) {
+            return $.due.size();
+        }
+    }
+
+    private static void count(HashMap<TaskOwner, Long> counters, TaskOwner owner) {
+        Long count = counters.get(owner);
+        counters.put(owner, count == null ? 1 : count + 1);
+    }
+
+    private synchronized AsyncTaskExecutor getAsync() {
+        if (async == null) {
+            async = new AsyncTaskExecutor(Configuration.getServerConfig().getAsyncTaskThreads());
         }
+        return async;
+    }
+
+    private synchronized AsyncTaskExecutor getAsyncIfStarted() {
+        return async;
     }
 
     /** Internal method called to run the tasks or decrease timers. */
     public static void runTasks() {
-        if ($.tasks.isEmpty()) {
-            // No tasks? no execution needed
-            return;
-        }
+        long budget = TimeUnit.MILLISECONDS.toNanos(Configuration.getServerConfig().getTaskTickBudget());
+        long start = System.nanoTime();
         synchronized ($.tasks) {
-            Iterator<Entry<ServerTask, TaskOwner>> taskIter = $.tasks.entrySet().iterator();
-            while (taskIter.hasNext()) {
-                ServerTask task = taskIter.next().getKey();
-                task.decrementDelay();
-                if (task.shouldExecute()) {
-                    try {
-                        task.run();
-                    }
-                    catch (Throwable thrown) {
-                        log.error("An Exception occurred while executing ServerTask: " + task.getClass().getSimpleName(), thrown);
-                        taskIter.remove();
-                        continue;
-                    }
-                    if (!task.isContinuous()) {
-                        taskIter.remove();
+            // Tasks deferred last tick are still at the front of the due list and go first
+            $.tasks.advance($.due);
+            TaskWheel.TaskNode node;
+            boolean overBudget = false;
+            while ((node = $.due.peek()) != null) {
+                if (overBudget) {
+                    // Out of time, leave the rest for the next tick
+                    for (; node != null; node = node.next) {
+                        count($.deferrals, node.task.getOwner());
                     }
-                    else {
-                        task.reset();
+                    break;
+                }
+                $.due.remove(node);
+                ServerTask task = node.task;
+                try {
+                    task.run();
+                }
+                catch (Throwable thrown) {
+                    log.error("An Exception occurred while executing ServerTask: " + task.getClass().getSimpleName(), thrown);
+                    $.tasks.remove(task);
+                    continue;
+                }
+                finally {
+                    if (budget > 0 && System.nanoTime() - start >= budget) {
+                        overBudget = true;
+                        count($.overruns, task.getOwner());
                     }
                 }
+                if (!task.isContinuous()) {
+                    $.tasks.remove(task);
+                }
+                else if ($.tasks.contains(task)) { // The task may have removed itself
+                    task.reset();
+                    $.tasks.reschedule(task, task.getDelay());
+                }
             }
         }
+        AsyncTaskExecutor async = $.getAsyncIfStarted();
+        if (async != null && async.getQueuedCallbacks() > 0) {
+            async.drainCallbacks(TimeUnit.MILLISECONDS.toNanos(Configuration.getServerConfig().getMainThreadCallbackBudget()));
+        }
     }
 }
@@ -0,0 +1,263 @@
+package net.canarymod.tasks;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Hierarchical timing wheel holding the scheduled {@link ServerTask}s
+ * <p/>
+ * Tasks due within the next 256 ticks sit in the root wheel, one slot per tick.
+ * Tasks further away sit in coarser wheels and are moved down a level when their slot comes up,
+ * so advancing a tick only touches the tasks that are due (plus the occasional cascade)
+ * instead of every scheduled task.
+ * <p/>
+ * Not thread-safe, the {@link ServerTaskManager} guards access.
+ *
+ * @author Jason (darkdiplomat)
+ */
+final class TaskWheel {
+    private static final int ROOT_BITS = 8;
+    private static final int ROOT_SIZE = 1 << ROOT_BITS;
+    private static final int ROOT_MASK = ROOT_SIZE - 1;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+    private static final int LEVEL_MASK = LEVEL_SIZE - 1;
+    private static final int LEVELS = 3;
+
+    private final TaskSlot[] root = new TaskSlot[ROOT_SIZE];
+    private final TaskSlot[][] levels = new TaskSlot[LEVELS][LEVEL_SIZE];
+    // Tasks beyond the reach of the highest wheel (2^26 ticks, about 39 days)
+    private final TaskSlot overflow = new TaskSlot();
+    private final HashMap<ServerTask, TaskNode> nodes = new HashMap<ServerTask, TaskNode>();
+    private final HashMap<TaskOwner, LinkedHashSet<ServerTask>> owners = new HashMap<TaskOwner, LinkedHashSet<ServerTask>>();
+    private long tick;
+
+    TaskWheel() {
+        for (int i = 0; i < ROOT_SIZE; i++) {
+            root[i] = new TaskSlot();
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < LEVEL_SIZE; i++) {
+                levels[level][i] = new TaskSlot();
+            }
+        }
+    }
+
+    /**
+     * Schedules a task to run after the given amount of ticks
+     *
+     * @return {@code false} if the task was already scheduled
+     */
+    boolean add(ServerTask task, long delay) {
+        if (nodes.containsKey(task)) {
+            return false;
+        }
+        TaskNode node = new TaskNode(task);
+        nodes.put(task, node);
+        LinkedHashSet<ServerTask> owned = owners.get(task.getOwner());
+        if (owned == null) {
+            owned = new LinkedHashSet<ServerTask>();
+            owners.put(task.getOwner(), owned);
+        }
+        owned.add(task);
+        schedule(node, delay);
+        return true;
+    }
+
+    /**
+     * Puts a task that is still registered back on the wheel, used for continuous tasks after they ran
+     *
+     * @return {@code false} if the task was removed in the meantime
+     */
+    boolean reschedule(ServerTask task, long delay) {
+        TaskNode node = nodes.get(task);
+        if (node == null) {
+            return false;
+        }
+        if (node.slot != null) {
+            node.slot.remove(node);
+        }
+        schedule(node, delay);
+        return true;
+    }
+
+    boolean remove(ServerTask task) {
+        TaskNode node = nodes.remove(task);
+        if (node == null) {
+            return false;
+        }
+        if (node.slot != null) {
+            node.slot.remove(node);
+        }
+        LinkedHashSet<ServerTask> owned = owners.get(task.getOwner());
+        if (owned != null) {
+            owned.remove(task);
+            if (owned.isEmpty()) {
+                owners.remove(task.getOwner());
+            }
+        }
+        return true;
+    }
+
+    void removeAll(TaskOwner owner) {
+        LinkedHashSet<ServerTask> owned = owners.remove(owner);
+        if (owned == null) {
+            return;
+        }
+        for (ServerTask task : owned) {
+            TaskNode node = nodes.remove(task);
+            if (node != null && node.slot != null) {
+                node.slot.remove(node);
+            }
+        }
+    }
+
+    boolean contains(ServerTask task) {
+        return nodes.containsKey(task);
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Advances the wheel by one tick and moves every task that is now due into the given slot.
+     * Due tasks stay registered until they are removed or rescheduled.
+     */
+    void advance(TaskSlot due) {
+        tick++;
+        int index = (int) (tick & ROOT_MASK);
+        if (index == 0) {
+            cascade();
+        }
+        due.takeAll(root[index]);
+    }
+
+    private void cascade() {
+        for (int level = 0; level < LEVELS; level++) {
+            int index = (int) ((tick >>> (ROOT_BITS + level * LEVEL_BITS)) & LEVEL_MASK);
+            replace(levels[level][index]);
+            if (index != 0) {
+                return;
+            }
+        }
+        replace(overflow);
+    }
+
+    private void replace(TaskSlot slot) {
+        // Take the slot empty first, nodes that are still far away may go right back into it (overflow)
+        TaskSlot moving = new TaskSlot();
+        moving.takeAll(slot);
+        TaskNode node;
+        while ((node = moving.poll()) != null) {
+            place(node);
+        }
+    }
+
+    private void schedule(TaskNode node, long delay) {
+        // A delay of 0 or less means the next tick, same as before the wheel.
+        // Huge delays are capped so the deadline does not overflow
+        node.deadline = tick + Math.min(Math.max(1L, delay), Long.MAX_VALUE - tick);
+        place(node);
+    }
+
+    private void place(TaskNode node) {
+        long diff = node.deadline - tick;
+        if (diff < ROOT_SIZE) {
+            root[(int) (node.deadline & ROOT_MASK)].add(node);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = ROOT_BITS + level * LEVEL_BITS;
+            if (diff < 1L << (shift + LEVEL_BITS)) {
+                levels[level][(int) ((node.deadline >>> shift) & LEVEL_MASK)].add(node);
+                return;
+            }
+        }
+        overflow.add(node);
+    }
+
+    /**
+     * Scheduled task, linked into exactly one {@link TaskSlot} at a time
+     */
+    static final class TaskNode {
+        final ServerTask task;
+        long deadline;
+        TaskSlot slot;
+        TaskNode prev;
+        TaskNode next;
+
+        TaskNode(ServerTask task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Doubly linked list of {@link TaskNode}s with O(1) unlinking
+     */
+    static final class TaskSlot {
+        private TaskNode head;
+        private TaskNode tail;
+        private int size;
+
+        void add(TaskNode node) {
+            node.slot = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            }
+            else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(TaskNode node) {
+            if (node.prev == null) {
+                head = node.next;
+            }
+            else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            }
+            else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.slot = null;
+            size--;
+        }
+
+        TaskNode peek() {
+            return head;
+        }
+
+        TaskNode poll() {
+            TaskNode node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void takeAll(TaskSlot other) {
+            TaskNode node;
+            while ((node = other.poll()) != null) {
+                add(node);
+            }
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -43,6 +43,9 @@ public class Group {
     /** Is true if it's the default group */
     private boolean defaultGroup = false;
 
+    /** This group followed by its parents, in the order permissions are checked. Rebuilt when the parents change */
+    private volatile Group[] lineage;
+
     /**
      * Check if this group can ignore restrictions
      *
@@ -106,14 +109,7 @@ public class Group {
         // NOTE: to whoever comes by and thinks, hey a permission check hook is missing:
         // Permission check hooks are fired in all MessageReceivers.
         // Doing it here too would fire a hook for the same request twice.
-        if (permissions.pathExists(permission)) {
-            return permissions.queryPermission(permission);
-        }
-        // if(permissions.queryPermission(permission)) {
-        // return true;
-        // }
-
-        for (Group g : parentsToList()) {
+        for (Group g : getLineage()) {
             if (g.permissions.pathExists(permission)) {
                 return g.permissions.queryPermission(permission);
             }
@@ -121,6 +117,20 @@ public class Group {
         return false;
     }
 
+    private Group[] getLineage() {
+        Group[] groups = lineage;
+        if (groups == null) {
+            List<Group> parents = parentsToList();
+            groups = new Group[parents.size() + 1];
+            groups[0] = this;
+            for (int i = 0; i < parents.size(); i++) {
+                groups[i + 1] = parents.get(i);
+            }
+            lineage = groups;
+        }
+        return groups;
+    }
+
     /**
      * Returns all the children groups
      *
@@ -241,6 +251,10 @@ public class Group {
             group.addChild(this);
         }
         parent = group;
+        // This group and everything below it now inherits from somewhere else
+        for (Group g : childsToList()) {
+            g.lineage = null;
+        }
     }
 
     public void addChild(Group g) {
@@ -0,0 +1,119 @@
+package net.canarymod.user;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link UUIDBackend} that does not go online, for offline mode servers and for testing.
+ * <p/>
+ * Knows the names it was given, either through {@link #put(String, String)} or from a file with
+ * one {@code name uuid} pair per line. Other names are either unknown or get the UUID an offline mode
+ * server would give them.
+ *
+ * @author Jason (darkdiplomat)
+ */
+public final class LocalUUIDBackend implements UUIDBackend {
+    private final ConcurrentHashMap<String, String> known = new ConcurrentHashMap<String, String>();
+    private final boolean offlineUUIDs;
+
+    /**
+     * Constructs a new LocalUUIDBackend
+     *
+     * @param offlineUUIDs
+     *         {@code true} to answer unknown names with their offline mode UUID; {@code false} to leave them unknown
+     */
+    public LocalUUIDBackend(boolean offlineUUIDs) {
+        this.offlineUUIDs = offlineUUIDs;
+    }
+
+    /**
+     * Constructs a new LocalUUIDBackend that knows the names of the given file.
+     * Lines are {@code name uuid}, empty lines and lines starting with # are skipped.
+     *
+     * @param file
+     *         the file to read
+     * @param offlineUUIDs
+     *         {@code true} to answer unknown names with their offline mode UUID; {@code false} to leave them unknown
+     *
+     * @throws IOException
+     *         if the file could not be read
+     */
+    public LocalUUIDBackend(File file, boolean offlineUUIDs) throws IOException {
+        this(offlineUUIDs);
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            Scanner scanner = new Scanner(fis, "UTF-8");
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] split = line.split("\\s+");
+                if (split.length >= 2) {
+                    put(split[0], split[1]);
+                }
+            }
+        }
+        finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Sets the UUID for a user name
+     *
+     * @param name
+     *         the user name
+     * @param uuid
+     *         the UUID
+     */
+    public void put(String name, String uuid) {
+        known.put(name.toLowerCase(Locale.ENGLISH), uuid);
+    }
+
+    @Override
+    public Map<String, String> lookup(List<String> names) {
+        HashMap<String, String> found = new HashMap<String, String>();
+        for (String name : names) {
+            String uuid = known.get(name.toLowerCase(Locale.ENGLISH));
+            if (uuid == null && offlineUUIDs) {
+                uuid = offlineUUID(name);
+            }
+            if (uuid != null) {
+                found.put(name, uuid);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Gets the UUID an offline mode server uses for a user name
+     *
+     * @param name
+     *         the user name
+     *
+     * @return the UUID
+     */
+    public static String offlineUUID(String name) {
+        try {
+            return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes("UTF-8")).toString();
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex); // UTF-8 is always there
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.canarymod.user;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Looks up UUIDs at the Mojang profile API, several names per request
+ *
+ * @author Jason (darkdiplomat)
+ */
+public final class MojangUUIDBackend implements UUIDBackend {
+    private static final String PROFILE_URL = "https://api.mojang.com/profiles/page/1";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> lookup(List<String> names) throws Exception {
+        JSONArray criteria = new JSONArray();
+        for (String name : names) {
+            JSONObject criterion = new JSONObject();
+            criterion.put("name", name);
+            criterion.put("agent", "Minecraft");
+            criteria.add(criterion);
+        }
+
+        HttpURLConnection uc = (HttpURLConnection) new URL(PROFILE_URL).openConnection();
+        uc.setRequestMethod("POST");
+        uc.setUseCaches(false);
+        uc.setDefaultUseCaches(false);
+        uc.setConnectTimeout(10000);
+        uc.setReadTimeout(10000);
+        uc.addRequestProperty("User-Agent", "Minecraft");
+        uc.addRequestProperty("Cache-Control", "no-cache, no-store, must-revalidate");
+        uc.addRequestProperty("Pragma", "no-cache");
+        uc.setRequestProperty("Content-Type", "application/json");
+        uc.setDoOutput(true);
+        Writer wr = new OutputStreamWriter(uc.getOutputStream(), "UTF-8");
+        wr.write(criteria.toJSONString());
+        wr.flush();
+        wr.close();
+
+        // Parse it
+        Scanner scanner = new Scanner(uc.getInputStream(), "UTF-8").useDelimiter("\\A");
+        String json = scanner.hasNext() ? scanner.next() : "{}";
+        scanner.close();
+        Object profiles = ((JSONObject) new JSONParser().parse(json)).get("profiles");
+
+        HashMap<String, String> found = new HashMap<String, String>();
+        if (profiles instanceof JSONArray) {
+            for (Object profile : (JSONArray) profiles) {
+                String name = (String) ((JSONObject) profile).get("name");
+                String id = (String) ((JSONObject) profile).get("id");
+                if (name != null && id != null && id.length() == 32) {
+                    // Add the hyphens back in
+                    found.put(name, id.substring(0, 8) + "-" + id.substring(8, 12) + "-" + id.substring(12, 16) + "-" + id.substring(16, 20) + "-" + id.substring(20, 32));
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return 100;
+    }
+}
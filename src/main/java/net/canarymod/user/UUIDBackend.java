@@ -0,0 +1,34 @@
+package net.canarymod.user;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The source the {@link UUIDResolver} asks for user names it has not cached
+ *
+ * @author Jason (darkdiplomat)
+ */
+public interface UUIDBackend {
+
+    /**
+     * Looks up the UUIDs of the given user names.
+     * Called from the resolver thread only, never with more names than {@link #getMaxBatchSize()}.
+     *
+     * @param names
+     *         the user names as first asked for, no two of them differ in case only
+     *
+     * @return user name to UUID (with hyphens) for every name that was found, names are matched ignoring case.
+     * Names that are not in the map are remembered as unknown for a while.
+     *
+     * @throws Exception
+     *         if the lookup failed, nothing is remembered then
+     */
+    Map<String, String> lookup(List<String> names) throws Exception;
+
+    /**
+     * Gets how many names can be looked up at once
+     *
+     * @return the batch size
+     */
+    int getMaxBatchSize();
+}
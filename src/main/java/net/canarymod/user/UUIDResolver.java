@@ -0,0 +1,415 @@
+package net.canarymod.user;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.canarymod.Canary.log;
+
+/**
+ * Translates user names into UUIDs.
+ * <p/>
+ * Answers are cached for a while, unknown names for a shorter while, and the known ones are kept in
+ * {@code db/uuids.txt} so they survive a restart. Names that are not cached are looked up by a single background
+ * thread, which hands everything that is waiting to the {@link UUIDBackend} at once, up to its batch size.
+ *
+ * @author Jason (darkdiplomat)
+ */
+public final class UUIDResolver {
+    private static final long POSITIVE_TTL = TimeUnit.DAYS.toMillis(7);
+    private static final long NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(15);
+    private static final int MAX_ENTRIES = 10000;
+    // How long the blocking lookups wait for the backend
+    private static final long LOOKUP_TIMEOUT = 30;
+    private static final Executor sameThread = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private static UUIDResolver instance;
+
+    private volatile UUIDBackend backend;
+    private final File store; // null if nothing is kept on disk
+    private final long positiveTtl;
+    private final long negativeTtl;
+    // Lower case name to the cached answer, least recently used first
+    private final CacheMap cache = new CacheMap();
+    // Lower case name to the future of a lookup that is queued or running
+    private final ConcurrentHashMap<String, SettableFuture<String>> pending = new ConcurrentHashMap<String, SettableFuture<String>>();
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+
+    /**
+     * Constructs a new UUIDResolver and starts its lookup thread
+     *
+     * @param backend
+     *         the {@link UUIDBackend} to ask for names that are not cached
+     * @param store
+     *         the file the known names are kept in; {@code null} to keep them in memory only
+     */
+    public UUIDResolver(UUIDBackend backend, File store) {
+        this(backend, store, POSITIVE_TTL, NEGATIVE_TTL);
+    }
+
+    /**
+     * Constructs a new UUIDResolver with its own cache times and starts its lookup thread
+     *
+     * @param backend
+     *         the {@link UUIDBackend} to ask for names that are not cached
+     * @param store
+     *         the file the known names are kept in; {@code null} to keep them in memory only
+     * @param positiveTtl
+     *         milliseconds a found UUID is cached
+     * @param negativeTtl
+     *         milliseconds an unknown name is cached
+     */
+    UUIDResolver(UUIDBackend backend, File store, long positiveTtl, long negativeTtl) {
+        this.backend = backend;
+        this.store = store;
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+        if (store != null) {
+            load();
+        }
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        lookupNext();
+                    }
+                }
+                catch (InterruptedException ex) {
+                    // Going down
+                }
+            }
+        }, "Canary UUID Resolver");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the UUIDResolver used by the server, which asks the Mojang profile API
+     *
+     * @return the UUIDResolver
+     */
+    public static synchronized UUIDResolver getInstance() {
+        if (instance == null) {
+            instance = new UUIDResolver(new MojangUUIDBackend(), new File("db" + File.separator + "uuids.txt"));
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the {@link UUIDBackend} and forgets everything cached so far
+     *
+     * @param backend
+     *         the new {@link UUIDBackend}
+     */
+    public void setBackend(UUIDBackend backend) {
+        this.backend = backend;
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Looks up the UUID of a user name
+     *
+     * @param name
+     *         the user name
+     *
+     * @return the future UUID, completed right away if the name is cached. The UUID is {@code null} if the name is unknown or the lookup failed
+     */
+    public ListenableFuture<String> resolve(String name) {
+        String key = name.toLowerCase(Locale.ENGLISH);
+        synchronized (cache) {
+            CachedUUID cached = cache.get(key);
+            if (cached != null) {
+                if (cached.expires > System.currentTimeMillis()) {
+                    return Futures.immediateFuture(cached.uuid);
+                }
+                cache.remove(key);
+            }
+        }
+        SettableFuture<String> future = SettableFuture.create();
+        SettableFuture<String> running = pending.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        queue.add(name);
+        return future;
+    }
+
+    /**
+     * Looks up the UUIDs of several user names, batched as far as the backend allows
+     *
+     * @param names
+     *         the user names
+     *
+     * @return the future map of user name to UUID, unknown names are left out
+     */
+    public ListenableFuture<Map<String, String>> resolveAll(Collection<String> names) {
+        final SettableFuture<Map<String, String>> result = SettableFuture.create();
+        final LinkedHashMap<String, ListenableFuture<String>> futures = new LinkedHashMap<String, ListenableFuture<String>>();
+        for (String name : names) {
+            if (!futures.containsKey(name)) {
+                futures.put(name, resolve(name));
+            }
+        }
+        if (futures.isEmpty()) {
+            result.set(Collections.<String, String>emptyMap());
+            return result;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        Runnable done = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() != 0) {
+                    return;
+                }
+                HashMap<String, String> uuids = new HashMap<String, String>();
+                for (Map.Entry<String, ListenableFuture<String>> entry : futures.entrySet()) {
+                    String uuid = Futures.getUnchecked(entry.getValue());
+                    if (uuid != null) {
+                        uuids.put(entry.getKey(), uuid);
+                    }
+                }
+                result.set(uuids);
+            }
+        };
+        for (ListenableFuture<String> future : futures.values()) {
+            future.addListener(done, sameThread);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the UUID of a user name and waits for the answer.
+     * Only blocks if the name is not cached.
+     *
+     * @param name
+     *         the user name
+     *
+     * @return the UUID; {@code null} if the name is unknown or the lookup failed
+     */
+    public String resolveNow(String name) {
+        try {
+            return resolve(name).get(LOOKUP_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception ex) {
+            log.warn("Failed to translate Username into a UUID");
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the UUIDs of several user names and waits for the answers
+     *
+     * @param names
+     *         the user names
+     *
+     * @return user name to UUID, unknown names are left out
+     */
+    public Map<String, String> resolveAllNow(Collection<String> names) {
+        try {
+            return resolveAll(names).get(LOOKUP_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception ex) {
+            log.warn("Failed to translate Usernames into UUIDs");
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Gets the cached UUID of a user name without looking it up
+     *
+     * @param name
+     *         the user name
+     *
+     * @return the UUID; {@code null} if it is not cached or the name is known to be unknown
+     */
+    public String getCached(String name) {
+        synchronized (cache) {
+            CachedUUID cached = cache.get(name.toLowerCase(Locale.ENGLISH));
+            return cached != null && cached.expires > System.currentTimeMillis() ? cached.uuid : null;
+        }
+    }
+
+    /**
+     * Caches a user name and UUID known from somewhere else, a player joining for instance
+     *
+     * @param name
+     *         the user name
+     * @param uuid
+     *         the UUID
+     */
+    public void put(String name, String uuid) {
+        synchronized (cache) {
+            cache.put(name.toLowerCase(Locale.ENGLISH), new CachedUUID(name, uuid, System.currentTimeMillis() + positiveTtl));
+        }
+    }
+
+    private void lookupNext() throws InterruptedException {
+        UUIDBackend backend = this.backend;
+        ArrayList<String> batch = new ArrayList<String>();
+        batch.add(queue.take());
+        queue.drainTo(batch, Math.max(backend.getMaxBatchSize() - 1, 0));
+
+        Map<String, String> found = null;
+        try {
+            found = backend.lookup(batch);
+        }
+        catch (Exception ex) {
+            log.warn("Failed to translate Username into a UUID", ex);
+        }
+        HashMap<String, String> byKey = new HashMap<String, String>();
+        if (found != null) {
+            for (Map.Entry<String, String> entry : found.entrySet()) {
+                byKey.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue());
+            }
+        }
+        boolean learned = false;
+        long now = System.currentTimeMillis();
+        for (String name : batch) {
+            String key = name.toLowerCase(Locale.ENGLISH);
+            String uuid = byKey.get(key);
+            if (found != null) {
+                synchronized (cache) {
+                    cache.put(key, new CachedUUID(name, uuid, now + (uuid != null ? positiveTtl : negativeTtl)));
+                }
+                learned |= uuid != null;
+            }
+            SettableFuture<String> future = pending.remove(key);
+            if (future != null) {
+                future.set(uuid);
+            }
+        }
+        if (learned && store != null) {
+            save();
+        }
+    }
+
+    private void load() {
+        if (!store.exists()) {
+            return;
+        }
+        try {
+            FileInputStream fis = new FileInputStream(store);
+            try {
+                Scanner scanner = new Scanner(fis, "UTF-8");
+                long now = System.currentTimeMillis();
+                synchronized (cache) {
+                    while (scanner.hasNextLine()) {
+                        String[] split = scanner.nextLine().split("\t");
+                        if (split.length != 3) {
+                            continue;
+                        }
+                        long expires = Long.parseLong(split[2]);
+                        if (expires > now) {
+                            cache.put(split[0].toLowerCase(Locale.ENGLISH), new CachedUUID(split[0], split[1], expires));
+                        }
+                    }
+                }
+            }
+            finally {
+                fis.close();
+            }
+        }
+        catch (Exception ex) {
+            log.warn("Failed to read the UUID cache from " + store.getPath(), ex);
+        }
+    }
+
+    private void save() {
+        ArrayList<CachedUUID> known = new ArrayList<CachedUUID>();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            for (CachedUUID cached : cache.values()) {
+                if (cached.uuid != null && cached.expires > now) {
+                    known.add(cached);
+                }
+            }
+        }
+        File temp = new File(store.getPath() + ".tmp");
+        try {
+            if (store.getParentFile() != null) {
+                store.getParentFile().mkdirs();
+            }
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+            try {
+                for (CachedUUID cached : known) {
+                    writer.print(cached.name);
+                    writer.print('\t');
+                    writer.print(cached.uuid);
+                    writer.print('\t');
+                    writer.println(cached.expires);
+                }
+            }
+            finally {
+                writer.close();
+            }
+            if (!temp.renameTo(store) && (!store.delete() || !temp.renameTo(store))) {
+                throw new IOException("Could not replace " + store.getPath());
+            }
+        }
+        catch (IOException ex) {
+            log.warn("Failed to write the UUID cache to " + store.getPath(), ex);
+        }
+    }
+
+    /**
+     * A cached answer, a {@code null} uuid means the name is unknown
+     */
+    private static final class CachedUUID {
+        private final String name;
+        private final String uuid;
+        private final long expires;
+
+        CachedUUID(String name, String uuid, long expires) {
+            this.name = name;
+            this.uuid = uuid;
+            this.expires = expires;
+        }
+    }
+
+    /** Access ordered map that drops its least recently used entry once it holds more than {@link #MAX_ENTRIES} */
+    private static final class CacheMap extends LinkedHashMap<String, CachedUUID> {
+        private static final long serialVersionUID = 1L;
+
+        CacheMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUUID> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+}
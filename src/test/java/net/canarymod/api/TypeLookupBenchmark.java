@@ -0,0 +1,145 @@
+package net.canarymod.api;
+
+import junit.framework.TestCase;
+import net.canarymod.api.inventory.ItemType;
+import net.canarymod.api.world.blocks.BlockType;
+
+import java.util.Random;
+
+/**
+ * Times {@link BlockType} and {@link ItemType} lookups by id, id and data, and name
+ * against the scans over all types they did before the lookup tables.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Jason (darkdiplomat)
+ */
+public class TypeLookupBenchmark extends TestCase {
+    private static final int LOOKUPS = 1000000;
+
+    public void testBlockTypes() {
+        BlockType[] types = BlockType.values();
+        int[] ids = new int[LOOKUPS];
+        int[] data = new int[LOOKUPS];
+        String[] names = new String[LOOKUPS];
+        Random random = new Random(21);
+        for (int i = 0; i < LOOKUPS; i++) {
+            BlockType type = types[random.nextInt(types.length)];
+            ids[i] = type.getId();
+            data[i] = type.getData();
+            // Callers pass names in any case
+            names[i] = random.nextBoolean() ? type.getMachineName() : type.getMachineName().toUpperCase();
+        }
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                found += BlockType.fromIdAndData(ids[i], data[i]) != null ? 1 : 0;
+                found += BlockType.fromString(names[i]) != null ? 1 : 0;
+            }
+            long tables = System.nanoTime() - start;
+            assertEquals(2 * LOOKUPS, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                found += scanBlock(types, ids[i], data[i]) != null ? 1 : 0;
+                found += scanBlock(types, names[i]) != null ? 1 : 0;
+            }
+            long scans = System.nanoTime() - start;
+            assertEquals(2 * LOOKUPS, found);
+            if (round == 1) {
+                report(types.length + " block types", tables, scans);
+            }
+        }
+    }
+
+    public void testItemTypes() {
+        ItemType[] types = ItemType.values();
+        int[] ids = new int[LOOKUPS];
+        int[] data = new int[LOOKUPS];
+        String[] names = new String[LOOKUPS];
+        Random random = new Random(21);
+        for (int i = 0; i < LOOKUPS; i++) {
+            ItemType type = types[random.nextInt(types.length)];
+            ids[i] = type.getId();
+            data[i] = type.getData();
+            names[i] = random.nextBoolean() ? type.getMachineName() : type.getMachineName().toUpperCase();
+        }
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                found += ItemType.fromIdAndData(ids[i], data[i]) != null ? 1 : 0;
+                found += ItemType.fromString(names[i]) != null ? 1 : 0;
+            }
+            long tables = System.nanoTime() - start;
+            assertEquals(2 * LOOKUPS, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                found += scanItem(types, ids[i], data[i]) != null ? 1 : 0;
+                found += scanItem(types, names[i]) != null ? 1 : 0;
+            }
+            long scans = System.nanoTime() - start;
+            assertEquals(2 * LOOKUPS, found);
+            if (round == 1) {
+                report(types.length + " item types", tables, scans);
+            }
+        }
+    }
+
+    private static void report(String what, long tables, long scans) {
+        // Two lookups per iteration, one by id and data and one by name
+        System.out.printf("%s: tables %.1f ns/lookup, scans %.1f ns/lookup%n", what, tables / (2.0 * LOOKUPS), scans / (2.0 * LOOKUPS));
+    }
+
+    /** fromIdAndData before the tables, including its fallback to a second scan by id */
+    private static BlockType scanBlock(BlockType[] types, int id, int data) {
+        for (BlockType type : types) {
+            if (type.getId() == id && type.getData() == data) {
+                return type;
+            }
+        }
+        for (BlockType type : types) {
+            if (type.getId() == id) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static BlockType scanBlock(BlockType[] types, String name) {
+        for (BlockType type : types) {
+            if (type.getMachineName().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static ItemType scanItem(ItemType[] types, int id, int data) {
+        for (ItemType type : types) {
+            if (type.getId() == id && type.getData() == data) {
+                return type;
+            }
+        }
+        for (ItemType type : types) {
+            if (type.getId() == id) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static ItemType scanItem(ItemType[] types, String name) {
+        for (ItemType type : types) {
+            if (type.getMachineName().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
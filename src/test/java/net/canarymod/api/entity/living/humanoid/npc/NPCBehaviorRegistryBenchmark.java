@@ -0,0 +1,120 @@
+package net.canarymod.api.entity.living.humanoid.npc;
+
+import junit.framework.TestCase;
+import net.canarymod.api.entity.living.humanoid.NonPlayableCharacter;
+import net.canarymod.api.entity.living.humanoid.npc.ai.NPCAI;
+import net.canarymod.api.entity.living.humanoid.npc.ai.Update;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times a server tick that sends an {@link Update} to each of 1000 NPCs with one listener each,
+ * through the per-NPC dispatch tables and through one shared, locked listener list filtered by NPC
+ * and invoked by reflection, which is how the registry dispatched before.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Jason (darkdiplomat)
+ */
+public class NPCBehaviorRegistryBenchmark extends TestCase {
+    private static final int NPCS = 1000;
+    private static final int TICKS = 200;
+
+    private final List<NonPlayableCharacter> npcs = new ArrayList<NonPlayableCharacter>();
+    private final List<UpdateCounter> counters = new ArrayList<UpdateCounter>();
+
+    @Override
+    protected void setUp() {
+        for (int i = 0; i < NPCS; i++) {
+            NonPlayableCharacter npc = npc(i);
+            UpdateCounter counter = new UpdateCounter();
+            NPCBehaviorRegistry.registerNPCListener(counter, npc, false);
+            npcs.add(npc);
+            counters.add(counter);
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        for (NonPlayableCharacter npc : npcs) {
+            NPCBehaviorRegistry.unregister(npc);
+        }
+    }
+
+    public void testTick() throws Exception {
+        // The listener list as the registry kept it before, all NPCs in one list per AI class
+        List<NPCBehaviorRegisteredListener> shared = new ArrayList<NPCBehaviorRegisteredListener>();
+        Method onUpdate = UpdateCounter.class.getMethod("onUpdate", Update.class);
+        for (int i = 0; i < NPCS; i++) {
+            shared.add(new NPCBehaviorRegisteredListener(counters.get(i), npcs.get(i), onUpdate));
+        }
+        Update update = new Update();
+
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (NonPlayableCharacter npc : npcs) {
+                    NPCBehaviorRegistry.execute(npc, update);
+                }
+            }
+            long tables = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (NonPlayableCharacter npc : npcs) {
+                    executeShared(shared, onUpdate, npc, update);
+                }
+            }
+            long scan = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.printf("%d NPCs: tables %d us/tick, shared list %d us/tick%n", NPCS, tables / TICKS / 1000, scan / TICKS / 1000);
+            }
+        }
+        for (UpdateCounter counter : counters) {
+            assertEquals(4 * TICKS, counter.updates);
+        }
+    }
+
+    private static void executeShared(List<NPCBehaviorRegisteredListener> shared, Method method, NonPlayableCharacter npc, NPCAI npcai) throws Exception {
+        synchronized (shared) {
+            for (NPCBehaviorRegisteredListener listener : shared) {
+                if (listener.isFor(npc)) {
+                    method.invoke(listener.getListener(), npcai);
+                }
+            }
+        }
+    }
+
+    /** An NPC that is only good for being told apart from the others */
+    private static NonPlayableCharacter npc(final int number) {
+        return (NonPlayableCharacter) Proxy.newProxyInstance(NonPlayableCharacter.class.getClassLoader(), new Class<?>[]{ NonPlayableCharacter.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (method.getName().equals("hashCode")) {
+                    return number;
+                }
+                if (method.getName().equals("toString")) {
+                    return "NPC " + number;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    public static class UpdateCounter implements NPCBehaviorListener {
+        int updates;
+
+        @NPCBehavior
+        public void onUpdate(Update update) {
+            updates++;
+        }
+    }
+}
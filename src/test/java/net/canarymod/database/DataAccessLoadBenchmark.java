@@ -0,0 +1,159 @@
+package net.canarymod.database;
+
+import junit.framework.TestCase;
+import net.canarymod.ToolBox;
+import net.canarymod.database.exceptions.DatabaseAccessException;
+import net.canarymod.database.sqlite.SQLiteDatabase;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Times loading 100k rows into {@link DataAccess} objects, with the cached column metadata
+ * and with the per-row field and annotation lookups DataAccess did before.
+ * The first part reads the rows through {@link SQLiteDatabase#loadAll} from an in-memory SQLite database,
+ * the second one only applies ready data sets so the difference is not drowned out by the JDBC driver.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Chris (damagefilter)
+ */
+public class DataAccessLoadBenchmark extends TestCase {
+    private static final int ROWS = 100000;
+
+    private Connection raw;
+
+    @Override
+    protected void setUp() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        raw = DriverManager.getConnection("jdbc:sqlite::memory:");
+        JdbcConnectionManager.useSQLiteConnection(raw);
+        SQLiteDatabase.getInstance().updateSchema(new BenchmarkDataAccess());
+        raw.setAutoCommit(false);
+        PreparedStatement insert = raw.prepareStatement("INSERT INTO `load_benchmark` (`name`, `amount`, `world`, `x`, `y`, `z`, `active`) VALUES(?, ?, ?, ?, ?, ?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            insert.setString(1, "row" + i);
+            insert.setInt(2, i);
+            insert.setString(3, "world" + (i % 3));
+            insert.setDouble(4, i * 0.5);
+            insert.setDouble(5, 64);
+            insert.setDouble(6, -i * 0.5);
+            insert.setBoolean(7, i % 2 == 0);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        insert.close();
+        raw.commit();
+        raw.setAutoCommit(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        raw.close();
+    }
+
+    public void testLoadAll() throws Exception {
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            List<DataAccess> loaded = new ArrayList<DataAccess>(ROWS);
+            long start = System.nanoTime();
+            SQLiteDatabase.getInstance().loadAll(new BenchmarkDataAccess(), loaded, new HashMap<String, Object>());
+            long time = System.nanoTime() - start;
+            assertEquals(ROWS, loaded.size());
+            if (round == 1) {
+                System.out.printf("loadAll of %d rows from SQLite: %d ms%n", ROWS, time / 1000000);
+            }
+        }
+    }
+
+    public void testApplyDataSet() throws Exception {
+        List<HashMap<String, Object>> dataSets = new ArrayList<HashMap<String, Object>>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            HashMap<String, Object> dataSet = new HashMap<String, Object>();
+            dataSet.put("id", i);
+            dataSet.put("name", "row" + i);
+            dataSet.put("amount", i);
+            dataSet.put("world", "world" + (i % 3));
+            dataSet.put("x", i * 0.5);
+            dataSet.put("y", 64.0);
+            dataSet.put("z", -i * 0.5);
+            dataSet.put("active", i % 2 == 0);
+            dataSets.add(dataSet);
+        }
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (HashMap<String, Object> dataSet : dataSets) {
+                new BenchmarkDataAccess().load(dataSet);
+            }
+            long cached = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (HashMap<String, Object> dataSet : dataSets) {
+                applyUncached(new BenchmarkDataAccess(), dataSet);
+            }
+            long uncached = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.printf("apply %d data sets: cached columns %d ms, per-row lookups %d ms%n", ROWS, cached / 1000000, uncached / 1000000);
+            }
+        }
+    }
+
+    /** What applyDataSet did for every row before the column metadata was cached */
+    private static void applyUncached(DataAccess data, HashMap<String, Object> dataSet) throws Exception {
+        Field[] fields = ToolBox.safeArrayMerge(data.getClass().getFields(), data.getClass().getDeclaredFields(), new Field[1]);
+        int columnFields = 0;
+        for (Field field : fields) {
+            Column col = field.getAnnotation(Column.class);
+            if (col == null) {
+                continue;
+            }
+            if (!dataSet.containsKey(col.columnName())) {
+                throw new DatabaseAccessException("Column name mismatches! (" + col.columnName() + " does not exist)");
+            }
+            field.set(data, dataSet.get(col.columnName()));
+            columnFields++;
+        }
+        if (columnFields != dataSet.size()) {
+            throw new DatabaseAccessException("Column count mismatches!");
+        }
+    }
+
+    public static class BenchmarkDataAccess extends DataAccess {
+
+        public BenchmarkDataAccess() {
+            super("load_benchmark");
+        }
+
+        @Column(columnName = "name", dataType = Column.DataType.STRING)
+        public String name;
+
+        @Column(columnName = "amount", dataType = Column.DataType.INTEGER)
+        public Integer amount;
+
+        @Column(columnName = "world", dataType = Column.DataType.STRING)
+        public String world;
+
+        @Column(columnName = "x", dataType = Column.DataType.DOUBLE)
+        public Double x;
+
+        @Column(columnName = "y", dataType = Column.DataType.DOUBLE)
+        public Double y;
+
+        @Column(columnName = "z", dataType = Column.DataType.DOUBLE)
+        public Double z;
+
+        @Column(columnName = "active", dataType = Column.DataType.BOOLEAN)
+        public Boolean active;
+
+        @Override
+        public DataAccess getInstance() {
+            return new BenchmarkDataAccess();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package net.canarymod.database;
+
+import junit.framework.TestCase;
+import net.canarymod.database.sqlite.SQLiteDatabase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the statements {@link SQLiteDatabase} sends to an embedded in-memory SQLite database.
+ * An update used to take three (existence check, updatable select, row update), it takes one now.
+ *
+ * @author Chris (damagefilter)
+ */
+public class SQLiteStatementCountTest extends TestCase {
+    private Connection raw;
+    private SQLiteDatabase db;
+    private int prepared;
+    private int executed;
+
+    @Override
+    protected void setUp() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        raw = DriverManager.getConnection("jdbc:sqlite::memory:");
+        JdbcConnectionManager.useSQLiteConnection(counting(raw));
+        db = SQLiteDatabase.getInstance();
+        db.updateSchema(new CountedDataAccess());
+        rawUpdate("INSERT INTO `statement_count` (`name`, `amount`) VALUES('alpha', 1)");
+        rawUpdate("INSERT INTO `statement_count` (`name`, `amount`) VALUES('beta', 2)");
+        prepared = 0;
+        executed = 0;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        raw.close();
+    }
+
+    public void testUpdateIsOneStatement() throws Exception {
+        db.update(row("alpha", 10), filter("name", "alpha"));
+
+        assertEquals(1, prepared);
+        assertEquals(1, executed);
+        assertEquals(10, amountOf("alpha"));
+        assertEquals(2, amountOf("beta"));
+    }
+
+    public void testUpdateWithoutMatchChangesNothing() throws Exception {
+        db.update(row("gamma", 3), filter("name", "gamma"));
+
+        assertEquals(1, prepared);
+        assertEquals(1, executed);
+        assertEquals(-1, amountOf("gamma"));
+    }
+
+    public void testUpsertOfExistingRowIsOneStatement() throws Exception {
+        db.upsert(row("beta", 20), filter("name", "beta"));
+
+        assertEquals(1, prepared);
+        assertEquals(1, executed);
+        assertEquals(20, amountOf("beta"));
+        assertEquals(2, rowCount());
+    }
+
+    public void testUpsertOfMissingRowInserts() throws Exception {
+        db.upsert(row("gamma", 3), filter("name", "gamma"));
+
+        assertEquals(2, prepared);
+        assertEquals(2, executed);
+        assertEquals(3, amountOf("gamma"));
+        assertEquals(3, rowCount());
+    }
+
+    public void testUpdateBatchIsOneStatement() throws Exception {
+        List<DataAccess> rows = new ArrayList<DataAccess>();
+        List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
+        rows.add(row("alpha", 100));
+        filters.add(filter("name", "alpha"));
+        rows.add(row("beta", 200));
+        filters.add(filter("name", "beta"));
+        db.updateBatch(rows, filters);
+
+        assertEquals(1, prepared);
+        assertEquals(1, executed);
+        assertEquals(100, amountOf("alpha"));
+        assertEquals(200, amountOf("beta"));
+    }
+
+    public void testSchemaChangeDropsCachedStatements() throws Exception {
+        db.update(row("alpha", 10), filter("name", "alpha"));
+
+        db.updateSchema(new WiderDataAccess());
+        WiderDataAccess wider = new WiderDataAccess();
+        wider.name = "alpha";
+        wider.amount = 11;
+        wider.note = "changed";
+        db.update(wider, filter("name", "alpha"));
+
+        assertEquals(11, amountOf("alpha"));
+        Statement s = raw.createStatement();
+        ResultSet rs = s.executeQuery("SELECT `note` FROM `statement_count` WHERE `name`='alpha'");
+        assertTrue(rs.next());
+        assertEquals("changed", rs.getString(1));
+        s.close();
+    }
+
+    private static CountedDataAccess row(String name, int amount) {
+        CountedDataAccess row = new CountedDataAccess();
+        row.name = name;
+        row.amount = amount;
+        return row;
+    }
+
+    private static Map<String, Object> filter(String field, Object value) {
+        HashMap<String, Object> filter = new HashMap<String, Object>();
+        filter.put(field, value);
+        return filter;
+    }
+
+    private void rawUpdate(String sql) throws Exception {
+        Statement s = raw.createStatement();
+        s.executeUpdate(sql);
+        s.close();
+    }
+
+    private int amountOf(String name) throws Exception {
+        Statement s = raw.createStatement();
+        ResultSet rs = s.executeQuery("SELECT `amount` FROM `statement_count` WHERE `name`='" + name + "'");
+        int amount = rs.next() ? rs.getInt(1) : -1;
+        s.close();
+        return amount;
+    }
+
+    private int rowCount() throws Exception {
+        Statement s = raw.createStatement();
+        ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `statement_count`");
+        int count = rs.next() ? rs.getInt(1) : -1;
+        s.close();
+        return count;
+    }
+
+    /**
+     * Wraps the connection so every statement prepared on it and every execution is counted
+     */
+    private Connection counting(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ Connection.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result = invokeOn(connection, method, args);
+                if (result instanceof Statement && method.getName().endsWith("Statement")) {
+                    prepared++;
+                    return counting((Statement) result, method.getReturnType());
+                }
+                return result;
+            }
+        });
+    }
+
+    private Object counting(final Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().startsWith("execute")) {
+                    executed++;
+                }
+                return invokeOn(statement, method, args);
+            }
+        });
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public static class CountedDataAccess extends DataAccess {
+
+        public CountedDataAccess() {
+            super("statement_count");
+        }
+
+        @Column(columnName = "name", dataType = Column.DataType.STRING)
+        public String name;
+
+        @Column(columnName = "amount", dataType = Column.DataType.INTEGER)
+        public Integer amount;
+
+        @Override
+        public DataAccess getInstance() {
+            return new CountedDataAccess();
+        }
+    }
+
+    /**
+     * The same table after a plugin update added a column
+     */
+    public static class WiderDataAccess extends DataAccess {
+
+        public WiderDataAccess() {
+            super("statement_count");
+        }
+
+        @Column(columnName = "name", dataType = Column.DataType.STRING)
+        public String name;
+
+        @Column(columnName = "amount", dataType = Column.DataType.INTEGER)
+        public Integer amount;
+
+        @Column(columnName = "note", dataType = Column.DataType.STRING)
+        public String note;
+
+        @Override
+        public DataAccess getInstance() {
+            return new WiderDataAccess();
+        }
+    }
+}
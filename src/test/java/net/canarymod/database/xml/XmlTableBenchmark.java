@@ -0,0 +1,105 @@
+package net.canarymod.database.xml;
+
+import junit.framework.TestCase;
+import org.jdom2.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times filtered lookups on an {@link XmlTable} with 10k and 100k rows,
+ * through the column indexes and with a scan of every row like before the indexes.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Chris (damagefilter)
+ */
+public class XmlTableBenchmark extends TestCase {
+    private static final String TABLE = "index_benchmark";
+    private static final int LOOKUPS = 2000;
+    // A scan takes milliseconds on the big table, so fewer of them are timed
+    private static final int SCANS = 50;
+
+    @Override
+    protected void setUp() {
+        new File("db").mkdirs();
+        tearDown();
+    }
+
+    @Override
+    protected void tearDown() {
+        new File("db/" + TABLE + ".xml").delete();
+        new File("db/" + TABLE + ".xml.tmp").delete();
+        new File("db/" + TABLE + ".journal").delete();
+    }
+
+    public void testLookup() throws IOException {
+        for (int rows : new int[]{ 10000, 100000 }) {
+            XmlTable table = new XmlTable(TABLE);
+            table.create();
+            for (int id = 0; id < rows; id++) {
+                table.rowChanged(XmlTableIndexTest.addRow(table, id, "group" + (id % 100)));
+            }
+            table.compact();
+            // Warm up, then measure
+            lookupIndexed(table, rows);
+            lookupScan(table, rows);
+            long indexed = lookupIndexed(table, rows);
+            long scan = lookupScan(table, rows);
+            long update = updateIndexed(table, rows);
+            System.out.printf("%6d rows: indexed %8d ns/lookup, scan %10d ns/lookup, update+lookup %8d ns%n", rows, indexed / LOOKUPS, scan / SCANS, update / LOOKUPS);
+            table.close();
+            tearDown();
+        }
+    }
+
+    private long lookupIndexed(XmlTable table, int rows) {
+        Random random = new Random(rows);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertEquals(1, table.candidates(filter("id", random.nextInt(rows))).size());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long lookupScan(XmlTable table, int rows) {
+        Random random = new Random(rows);
+        List<Element> all = table.getDocument().getRootElement().getChildren();
+        long start = System.nanoTime();
+        for (int i = 0; i < SCANS; i++) {
+            String id = String.valueOf(random.nextInt(rows));
+            int hits = 0;
+            for (Element row : all) {
+                if (id.equals(row.getChildText("id"))) {
+                    hits++;
+                }
+            }
+            assertEquals(1, hits);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Moves rows to another group and looks them up by it, which keeps the group index busy */
+    private long updateIndexed(XmlTable table, int rows) throws IOException {
+        Random random = new Random(rows);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            Element row = table.candidates(filter("id", random.nextInt(rows))).get(0);
+            String group = "moved" + i;
+            row.getChild("group").setText(group);
+            table.rowChanged(row);
+            assertEquals(1, table.candidates(filter("group", group)).size());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Map<String, Object> filter(String column, Object value) {
+        Map<String, Object> filters = new HashMap<String, Object>();
+        filters.put(column, value);
+        return filters;
+    }
+}
@@ -0,0 +1,183 @@
+package net.canarymod.database.xml;
+
+import junit.framework.TestCase;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests that the column indexes of an {@link XmlTable} give the same rows as a scan of the whole table,
+ * after updates, removes, a journal replay and a schema change
+ *
+ * @author Chris (damagefilter)
+ */
+public class XmlTableIndexTest extends TestCase {
+    private static final String TABLE = "index_test";
+    private static final int ROWS = 200;
+    private static final int GROUPS = 7;
+
+    private final Random random = new Random(18);
+    private XmlTable table;
+
+    @Override
+    protected void setUp() throws IOException {
+        new File("db").mkdirs();
+        tearDown();
+        table = new XmlTable(TABLE);
+        table.create();
+        for (int id = 0; id < ROWS; id++) {
+            table.rowChanged(addRow(table, id, "group" + (id % GROUPS)));
+        }
+        table.compact();
+    }
+
+    @Override
+    protected void tearDown() {
+        new File("db/" + TABLE + ".xml").delete();
+        new File("db/" + TABLE + ".xml.tmp").delete();
+        new File("db/" + TABLE + ".journal").delete();
+    }
+
+    public void testIndexesMatchScanAfterLoad() {
+        assertIndexesMatchScan();
+    }
+
+    public void testIndexesFollowUpdates() throws IOException {
+        assertIndexesMatchScan(); // Builds the index of the group column
+        for (int i = 0; i < ROWS; i++) {
+            Element row = randomRow();
+            row.getChild("group").setText("group" + random.nextInt(GROUPS * 2));
+            if (random.nextInt(4) == 0) {
+                // Primary keys may change too
+                row.getChild("id").setText(String.valueOf(ROWS + i));
+            }
+            table.rowChanged(row);
+        }
+        assertIndexesMatchScan();
+    }
+
+    public void testIndexesFollowRemovesAndInserts() throws IOException {
+        assertIndexesMatchScan();
+        for (int i = 0; i < ROWS / 2; i++) {
+            Element row = randomRow();
+            table.rowRemoved(row);
+            row.detach();
+            if (i % 3 == 0) {
+                table.rowChanged(addRow(table, ROWS + i, "group" + random.nextInt(GROUPS)));
+            }
+        }
+        assertIndexesMatchScan();
+    }
+
+    public void testIndexesAreRebuiltAfterReplay() throws Exception {
+        assertIndexesMatchScan();
+        for (int i = 0; i < ROWS / 4; i++) {
+            Element row = randomRow();
+            row.getChild("group").setText("replayed" + random.nextInt(3));
+            table.rowChanged(row);
+            Element removed = randomRow();
+            table.rowRemoved(removed);
+            removed.detach();
+        }
+        table.commit(Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertTrue(new File("db/" + TABLE + ".journal").exists());
+
+        table = new XmlTable(TABLE);
+        table.load(new SAXBuilder());
+        assertIndexesMatchScan();
+        assertFalse(table.candidates(filter("group", "replayed0")).isEmpty());
+    }
+
+    public void testIndexesAreRebuiltAfterSchemaChange() throws IOException {
+        assertIndexesMatchScan();
+        // Add a column, drop one and change the value of another, like updateSchema does
+        for (Element row : rows()) {
+            row.addContent(column("rank", "NORMAL", String.valueOf(random.nextInt(5))));
+            row.removeChild("name");
+            row.getChild("group").setText("group" + random.nextInt(3));
+        }
+        table.schemaChanged();
+        assertIndexesMatchScan();
+        assertEquals(Collections.<Element>emptyList(), table.candidates(filter("name", "row1")));
+        for (int rank = 0; rank < 5; rank++) {
+            assertEquals(scan(filter("rank", rank)), table.candidates(filter("rank", rank)));
+        }
+    }
+
+    public void testCombinedFiltersContainEveryMatch() {
+        for (int i = 0; i < ROWS; i += 13) {
+            Map<String, Object> filters = filter("id", i);
+            filters.put("group", "group" + (i % GROUPS));
+            List<Element> candidates = table.candidates(filters);
+            for (Element row : scan(filters)) {
+                assertTrue(candidates.contains(row));
+            }
+        }
+    }
+
+    /** Checks single column lookups of every value in the table against a full scan */
+    private void assertIndexesMatchScan() {
+        for (String column : new String[]{ "id", "group" }) {
+            for (Element row : rows()) {
+                Map<String, Object> filters = filter(column, row.getChildText(column));
+                assertEquals(column + "=" + row.getChildText(column), scan(filters), table.candidates(filters));
+            }
+            assertEquals(Collections.<Element>emptyList(), table.candidates(filter(column, "missing")));
+        }
+    }
+
+    private List<Element> scan(Map<String, Object> filters) {
+        List<Element> hits = new ArrayList<Element>();
+        for (Element row : rows()) {
+            boolean match = true;
+            for (Map.Entry<String, Object> filter : filters.entrySet()) {
+                match &= String.valueOf(filter.getValue()).equals(row.getChildText(filter.getKey()));
+            }
+            if (match) {
+                hits.add(row);
+            }
+        }
+        return hits;
+    }
+
+    private Element randomRow() {
+        List<Element> rows = rows();
+        return rows.get(random.nextInt(rows.size()));
+    }
+
+    private List<Element> rows() {
+        return table.getDocument().getRootElement().getChildren();
+    }
+
+    private static Map<String, Object> filter(String column, Object value) {
+        Map<String, Object> filters = new HashMap<String, Object>();
+        filters.put(column, value);
+        return filters;
+    }
+
+    static Element addRow(XmlTable table, int id, String group) {
+        Element row = new Element("entry");
+        row.addContent(column("id", "PRIMARY", String.valueOf(id)));
+        row.addContent(column("name", "NORMAL", "row" + id));
+        row.addContent(column("group", "NORMAL", group));
+        table.getDocument().getRootElement().addContent(row);
+        return row;
+    }
+
+    private static Element column(String name, String type, String value) {
+        Element column = new Element(name).setText(value);
+        column.setAttribute("auto-increment", "false");
+        column.setAttribute("data-type", "STRING");
+        column.setAttribute("column-type", type);
+        column.setAttribute("is-list", "false");
+        return column;
+    }
+}
@@ -0,0 +1,221 @@
+package net.canarymod.database.xml;
+
+import junit.framework.TestCase;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that an {@link XmlTable} comes back intact after the server went down between writes:
+ * journal replay, interrupted compactions and tables whose rows can't be journaled.
+ * <p/>
+ * Tables are written to db/ in the working directory, surefire runs the tests in target/test-run.
+ *
+ * @author Chris (damagefilter)
+ */
+public class XmlTableRecoveryTest extends TestCase {
+    private static final String TABLE = "recovery_test";
+    // Never compact on commit unless the table can't be journaled
+    private static final int MAX_ENTRIES = Integer.MAX_VALUE;
+    private static final long MAX_AGE = Long.MAX_VALUE;
+
+    private final SAXBuilder builder = new SAXBuilder();
+    private File file;
+    private File tempFile;
+    private File journalFile;
+
+    @Override
+    protected void setUp() {
+        new File("db").mkdirs();
+        file = new File("db/" + TABLE + ".xml");
+        tempFile = new File("db/" + TABLE + ".xml.tmp");
+        journalFile = new File("db/" + TABLE + ".journal");
+        tearDown();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+        tempFile.delete();
+        journalFile.delete();
+    }
+
+    public void testJournalIsReplayed() throws Exception {
+        XmlTable table = createTable(1, 2, 3);
+        Element second = rows(table).get(1);
+        second.getChild("name").setText("changed");
+        table.rowChanged(second);
+        Element third = rows(table).get(2);
+        table.rowRemoved(third);
+        third.detach();
+        table.rowChanged(addRow(table, 4));
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        assertTrue(journalFile.length() > 0);
+        // Server goes down here, the table file is still the old one
+
+        XmlTable reloaded = load();
+        assertRows(reloaded, "1:row1", "2:changed", "4:row4");
+        // Replayed writes are compacted right away
+        assertFalse(journalFile.exists());
+        assertRows(load(), "1:row1", "2:changed", "4:row4");
+    }
+
+    public void testCutOffJournalEntryIsIgnored() throws Exception {
+        XmlTable table = createTable(1);
+        table.rowChanged(addRow(table, 2));
+        table.rowChanged(addRow(table, 3));
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        // Chop the last entry in half, as if the server died while writing it
+        truncate(journalFile, journalFile.length() - 20);
+
+        XmlTable reloaded = load();
+        assertRows(reloaded, "1:row1", "2:row2");
+        assertFalse(journalFile.exists());
+
+        // The table keeps journaling normally afterwards
+        reloaded.rowChanged(addRow(reloaded, 5));
+        reloaded.commit(MAX_ENTRIES, MAX_AGE);
+        assertRows(load(), "1:row1", "2:row2", "5:row5");
+    }
+
+    public void testEmptyJournalIsDiscarded() throws Exception {
+        createTable(1);
+        new FileOutputStream(journalFile).close();
+
+        assertRows(load(), "1:row1");
+        assertFalse(journalFile.exists());
+    }
+
+    public void testLeftoverTempFileIsDiscarded() throws Exception {
+        XmlTable table = createTable(1, 2);
+        table.rowChanged(addRow(table, 3));
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        // Compaction died while writing the temporary file, the table file and journal are still good
+        write(tempFile, "<recovery_test><entry><id>1</id>");
+
+        XmlTable reloaded = load();
+        assertRows(reloaded, "1:row1", "2:row2", "3:row3");
+        assertFalse(tempFile.exists());
+    }
+
+    public void testCompactionInterruptedAfterDeleteIsFinished() throws Exception {
+        createTable(1, 2).close();
+        // Compaction died between deleting the table file and renaming the temporary file over it
+        assertTrue(file.renameTo(tempFile));
+
+        XmlTable reloaded = new XmlTable(TABLE);
+        assertTrue(reloaded.exists());
+        assertFalse(tempFile.exists());
+        reloaded.load(builder);
+        assertRows(reloaded, "1:row1", "2:row2");
+    }
+
+    public void testRowsWithoutIdAreWrittenInFull() throws Exception {
+        XmlTable table = createTable(1);
+        Element anonymous = new Element("entry").addContent(column("name", "NORMAL", "no id"));
+        table.getDocument().getRootElement().addContent(anonymous);
+        table.rowChanged(anonymous);
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        assertFalse(journalFile.exists());
+
+        Element first = rows(table).get(0);
+        first.getChild("name").setText("changed");
+        table.rowChanged(first);
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        assertFalse(journalFile.exists());
+        assertEquals(2, rows(load()).size());
+        assertEquals("changed", rows(load()).get(0).getChildText("name"));
+    }
+
+    public void testDuplicateIdsAreWrittenInFull() throws Exception {
+        XmlTable table = createTable(1);
+        table.rowChanged(addRow(table, 1));
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        assertFalse(journalFile.exists());
+        assertRows(load(), "1:row1", "1:row1");
+
+        // Once the duplicate is gone the journal is used again
+        table = load();
+        Element duplicate = rows(table).get(1);
+        table.rowRemoved(duplicate);
+        duplicate.detach();
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        table.rowChanged(addRow(table, 2));
+        table.commit(MAX_ENTRIES, MAX_AGE);
+        assertTrue(journalFile.exists());
+        assertRows(load(), "1:row1", "2:row2");
+    }
+
+    private XmlTable createTable(int... ids) throws IOException {
+        XmlTable table = new XmlTable(TABLE);
+        assertFalse(table.exists());
+        table.create();
+        for (int id : ids) {
+            table.rowChanged(addRow(table, id));
+        }
+        table.compact();
+        return table;
+    }
+
+    private XmlTable load() throws Exception {
+        XmlTable table = new XmlTable(TABLE);
+        assertTrue(table.exists());
+        table.load(builder);
+        return table;
+    }
+
+    private static Element addRow(XmlTable table, int id) {
+        Element row = new Element("entry");
+        row.addContent(column("id", "PRIMARY", String.valueOf(id)));
+        row.addContent(column("name", "NORMAL", "row" + id));
+        table.getDocument().getRootElement().addContent(row);
+        return row;
+    }
+
+    private static Element column(String name, String type, String value) {
+        Element column = new Element(name).setText(value);
+        column.setAttribute("auto-increment", "false");
+        column.setAttribute("data-type", "STRING");
+        column.setAttribute("column-type", type);
+        column.setAttribute("is-list", "false");
+        return column;
+    }
+
+    private static List<Element> rows(XmlTable table) {
+        return table.getDocument().getRootElement().getChildren();
+    }
+
+    private static void assertRows(XmlTable table, String... expected) {
+        List<String> actual = new ArrayList<String>();
+        for (Element row : rows(table)) {
+            actual.add(row.getChildText("id") + ":" + row.getChildText("name"));
+        }
+        assertEquals(Arrays.asList(expected), actual);
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.getChannel().truncate(length);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.canarymod.hook;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Times and counts the allocations of firing a hook nobody listens to,
+ * once by always constructing and calling it and once guarded by {@link HookExecutor#hasListeners(Class)}.
+ * Allocated bytes are only reported on VMs that can measure them per thread.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Chris (damagefilter)
+ */
+public class HasListenersBenchmark extends TestCase {
+    private static final int CALLS = 10000000;
+
+    private final HookExecutor executor = new HookExecutor();
+    private final Object[] positions = { new double[]{ 1, 2, 3 }, new double[]{ 4, 5, 6 } };
+
+    public void testUnusedHook() {
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long beforeBytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                executor.callHook(new MoveHook(positions[i & 1], positions[(i + 1) & 1]));
+            }
+            long always = System.nanoTime() - start;
+            long alwaysBytes = allocatedBytes() - beforeBytes;
+
+            beforeBytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                if (executor.hasListeners(MoveHook.class)) {
+                    executor.callHook(new MoveHook(positions[i & 1], positions[(i + 1) & 1]));
+                }
+            }
+            long guarded = System.nanoTime() - start;
+            long guardedBytes = allocatedBytes() - beforeBytes;
+            if (round == 1) {
+                System.out.printf("always called: %.2f ns, %s per call; guarded: %.2f ns, %s per call%n",
+                        (double) always / CALLS, bytes(alwaysBytes), (double) guarded / CALLS, bytes(guardedBytes));
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String bytes(long allocated) {
+        return allocated < 0 ? "? bytes" : String.format("%.1f bytes", (double) allocated / CALLS);
+    }
+
+    /** Stands in for a high frequency hook like the player move hook */
+    public static class MoveHook extends Hook {
+        private final Object from;
+        private final Object to;
+
+        public MoveHook(Object from, Object to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Object getFrom() {
+            return from;
+        }
+
+        public Object getTo() {
+            return to;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.canarymod.hook;
+
+import junit.framework.TestCase;
+import net.canarymod.plugin.PluginListener;
+
+import java.lang.reflect.Method;
+
+/**
+ * Times a hook handler call through a generated {@link Dispatcher}, through the {@link ReflectiveDispatcher}
+ * and as a plain method call.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Chris (damagefilter)
+ */
+public class HookDispatchBenchmark extends TestCase {
+    private static final int CALLS = 20000000;
+
+    public void testDispatch() throws Exception {
+        Method method = CountingListener.class.getMethod("onHook", CountedHook.class);
+        Dispatcher generated = DispatcherFactory.newDispatcher(method);
+        assertFalse("handler should get a generated dispatcher", generated instanceof ReflectiveDispatcher);
+        Dispatcher reflective = new ReflectiveDispatcher(method);
+        CountingListener listener = new CountingListener();
+        CountedHook hook = new CountedHook();
+
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long direct = runDirect(listener, hook);
+            long viaGenerated = run(generated, listener, hook);
+            long viaReflection = run(reflective, listener, hook);
+            if (round == 1) {
+                System.out.printf("direct %.2f ns/call, generated %.2f ns/call, reflective %.2f ns/call%n", (double) direct / CALLS, (double) viaGenerated / CALLS, (double) viaReflection / CALLS);
+            }
+        }
+        assertEquals(6L * CALLS, listener.calls);
+    }
+
+    private static long run(Dispatcher dispatcher, PluginListener listener, Hook hook) {
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            dispatcher.execute(listener, hook);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runDirect(CountingListener listener, CountedHook hook) {
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            listener.onHook(hook);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static class CountedHook extends Hook {
+    }
+
+    public static class CountingListener implements PluginListener {
+        long calls;
+
+        @HookHandler
+        public void onHook(CountedHook hook) {
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.canarymod.permissionsystem;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times permission checks on a {@link PermissionTable} and on the old walk over the node trees,
+ * for a group with a few hundred permission nodes.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Chris (damagefilter)
+ */
+public class PermissionTableBenchmark extends TestCase {
+    private static final int PLUGINS = 40;
+    private static final int QUERIES = 1000000;
+
+    public void testQuery() {
+        Random random = new Random(11);
+        List<PermissionNode> roots = new ArrayList<PermissionNode>();
+        List<String> paths = new ArrayList<String>();
+        // Every plugin brings its own root with commands, some granted by asterisk
+        for (int plugin = 0; plugin < PLUGINS; plugin++) {
+            PermissionNode root = new PermissionNode("plugin" + plugin, true);
+            roots.add(root);
+            for (String section : new String[]{ "command", "admin", "build" }) {
+                PermissionNode node = new PermissionNode(section, random.nextBoolean());
+                root.addChildNode(node);
+                if (random.nextInt(4) == 0) {
+                    node.addChildNode(new PermissionNode("*", true));
+                }
+                for (int leaf = 0; leaf < 5; leaf++) {
+                    node.addChildNode(new PermissionNode("node" + leaf, random.nextBoolean()));
+                    paths.add(root.getName() + "." + section + ".node" + leaf);
+                }
+                paths.add(root.getName() + "." + section + ".missing");
+            }
+        }
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = paths.get(random.nextInt(paths.size()));
+        }
+
+        PermissionTable table = PermissionTable.compile(roots);
+        PermissionTreeWalk walk = new PermissionTreeWalk(roots);
+        // Warm up, then measure
+        runTable(table, queries);
+        runWalk(walk, queries);
+        long compiled = runTable(table, queries);
+        long tree = runWalk(walk, queries);
+        System.out.printf("%d paths: table %d ns/check, tree walk %d ns/check%n", paths.size(), compiled / QUERIES, tree / QUERIES);
+    }
+
+    private static long runTable(PermissionTable table, String[] queries) {
+        int granted = 0;
+        long start = System.nanoTime();
+        for (String query : queries) {
+            if (table.hasPath(query) && table.resolve(query)) {
+                granted++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        assertTrue(granted > 0);
+        return time;
+    }
+
+    private static long runWalk(PermissionTreeWalk walk, String[] queries) {
+        int granted = 0;
+        long start = System.nanoTime();
+        for (String query : queries) {
+            if (walk.hasPath(query) && walk.resolve(query)) {
+                granted++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        assertTrue(granted > 0);
+        return time;
+    }
+}
@@ -0,0 +1,154 @@
+package net.canarymod.permissionsystem;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that a {@link PermissionTable} answers the same as the old walk over the node trees
+ *
+ * @author Chris (damagefilter)
+ */
+public class PermissionTableTest extends TestCase {
+    private static final String[] NAMES = { "a", "b", "c", "*", "" };
+    // Paths with odd dots, checked against every tree
+    private static final String[] ODD_PATHS = { "", "a", "*", "a.", "a..", "a.b.", ".a", "..a", "a..b", "a.*", "*.a", "a.*.b", "a.b.c.d.e", "canary.*" };
+
+    private final List<PermissionNode> roots = new ArrayList<PermissionNode>();
+
+    @Override
+    protected void setUp() {
+        roots.clear();
+    }
+
+    public void testPlainTree() {
+        add("canary.command.kick", true);
+        add("canary.command.ban", false);
+        add("canary.world.build", true);
+        assertSameAnswers("canary", "canary.command", "canary.command.kick", "canary.command.ban", "canary.command.kick.other", "canary.world", "canary.world.build", "other", "other.node");
+    }
+
+    public void testAsteriskChildren() {
+        add("canary.*", true);
+        add("canary.command.*", false);
+        add("canary.command.kick", true);
+        add("canary.world.build", false);
+        add("canary.world.*.deep", true);
+        assertSameAnswers("canary.anything", "canary.command.ban", "canary.command.kick", "canary.command.kick.more", "canary.world.build", "canary.world.other", "canary.world.other.deep", "canary.world.*.deep", "canary.*");
+    }
+
+    public void testAsteriskRoot() {
+        add("*", false);
+        add("canary.command.kick", true);
+        assertSameAnswers("*", "anything", "anything.below", "canary", "canary.command.kick", "canary.command.ban");
+    }
+
+    public void testRootsAfterAsteriskAreShadowed() {
+        add("canary.command.kick", true);
+        roots.add(new PermissionNode("*", true));
+        roots.add(tree("other.node", false));
+        roots.add(new PermissionNode("*", false));
+        assertSameAnswers("canary.command.kick", "canary.command.ban", "other", "other.node", "third", "*");
+    }
+
+    public void testDuplicateRootsFirstWins() {
+        roots.add(tree("canary.command.kick", true));
+        roots.add(tree("canary.command.ban", true));
+        roots.add(tree("canary.world", false));
+        assertSameAnswers("canary", "canary.command.kick", "canary.command.ban", "canary.world");
+    }
+
+    public void testEmptyAndTrailingSegments() {
+        add("a..b", true);
+        add(".lead", true);
+        add("trail.", false);
+        assertSameAnswers("a..b", "a.", "a..", "a.b", ".lead", "lead", "trail", "trail.", "trail..", "");
+    }
+
+    public void testRandomTrees() {
+        Random random = new Random(11);
+        for (int tree = 0; tree < 2000; tree++) {
+            roots.clear();
+            int nodes = 1 + random.nextInt(12);
+            for (int i = 0; i < nodes; i++) {
+                String path = randomPath(random);
+                if (random.nextInt(10) == 0) {
+                    roots.add(tree(path, random.nextBoolean())); // Possibly a duplicate root
+                }
+                else {
+                    add(path, random.nextBoolean());
+                }
+            }
+            for (int i = 0; i < 50; i++) {
+                assertSameAnswers(randomPath(random));
+            }
+            assertSameAnswers(ODD_PATHS);
+        }
+    }
+
+    /** Paths of nothing but dots made the old walk throw, the table says no */
+    public void testOnlyDots() {
+        add("*", true);
+        PermissionTable table = PermissionTable.compile(roots);
+        assertFalse(table.hasPath("..."));
+        assertFalse(table.resolve("."));
+    }
+
+    private void assertSameAnswers(String... paths) {
+        PermissionTable table = PermissionTable.compile(roots);
+        PermissionTreeWalk walk = new PermissionTreeWalk(roots);
+        for (String path : paths) {
+            assertEquals("hasPath(" + path + ") in " + roots, walk.hasPath(path), table.hasPath(path));
+            assertEquals("resolve(" + path + ") in " + roots, walk.resolve(path), table.resolve(path));
+        }
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder path = new StringBuilder(NAMES[random.nextInt(NAMES.length - 1)]);
+        int depth = random.nextInt(5);
+        for (int i = 0; i < depth; i++) {
+            path.append('.').append(NAMES[random.nextInt(NAMES.length)]);
+        }
+        return path.toString();
+    }
+
+    /** Adds a path the way the provider does, reusing the root and child nodes that are there */
+    private void add(String path, boolean value) {
+        String[] segments = path.split("\\.");
+        PermissionNode node = null;
+        for (PermissionNode root : roots) {
+            if (root.getName().equals(segments[0])) {
+                node = root;
+                break;
+            }
+        }
+        if (node == null) {
+            node = new PermissionNode(segments[0], value);
+            roots.add(node);
+        }
+        for (int i = 1; i < segments.length; i++) {
+            PermissionNode child = node.getChildNode(segments[i]);
+            if (child == null) {
+                child = new PermissionNode(segments[i], value);
+                node.addChildNode(child);
+            }
+            node = child;
+        }
+        node.setValue(value);
+    }
+
+    /** Builds a new chain of nodes for the path, without looking at the existing roots */
+    private static PermissionNode tree(String path, boolean value) {
+        String[] segments = path.split("\\.");
+        PermissionNode root = new PermissionNode(segments[0], value);
+        PermissionNode node = root;
+        for (int i = 1; i < segments.length; i++) {
+            PermissionNode child = new PermissionNode(segments[i], value);
+            node.addChildNode(child);
+            node = child;
+        }
+        return root;
+    }
+}
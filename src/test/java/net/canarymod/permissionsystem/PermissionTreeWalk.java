@@ -0,0 +1,102 @@
+package net.canarymod.permissionsystem;
+
+import java.util.List;
+
+/**
+ * The lookups {@link MultiworldPermissionProvider} did on its node trees before they were compiled
+ * into a {@link PermissionTable}, kept as the reference the table is checked against
+ *
+ * @author Chris (damagefilter)
+ */
+final class PermissionTreeWalk {
+    private final List<PermissionNode> permissions;
+
+    PermissionTreeWalk(List<PermissionNode> permissions) {
+        this.permissions = permissions;
+    }
+
+    private PermissionNode getRootNode(String name) {
+        for (PermissionNode n : permissions) {
+            if (n.getName().equals(name) || n.isAsterisk()) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    boolean resolve(String permission) {
+        return resolvePath(permission.split("\\."));
+    }
+
+    boolean hasPath(String permission) {
+        return hasPath(permission.split("\\."));
+    }
+
+    private boolean resolvePath(String[] path) {
+        PermissionNode node = getRootNode(path[0]);
+        boolean hasAsterisk = getRootNode("*") != null, asteriskValue = hasAsterisk ? getRootNode("*").getValue() : false;
+
+        for (int current = 0; current < path.length; current++) {
+            if (node == null) {
+                return false;
+            }
+            if (node.isAsterisk()) {
+                // File the value only and continue with resolving
+                hasAsterisk = true;
+                asteriskValue = node.getValue();
+            }
+            if (node.hasChildNode("*")) {
+                // Register that we had an asterisk on the way, that's all we need to know!
+                hasAsterisk = true;
+                asteriskValue = node.getChildNode("*").getValue();
+            }
+            if (current + 1 < path.length) {
+                if (node.hasChildNode(path[current + 1])) {
+                    node = node.getChildNode(path[current + 1]);
+                }
+                else {
+                    if (hasAsterisk) { // No subsequent nodes, the asterisk value wins
+                        return asteriskValue;
+                    }
+                    // No asterisk was before this point, so it's false
+                    return false;
+                }
+            }
+        }
+        // Path was fully resolved, check if there was an asterisk on the way
+        if (hasAsterisk) {
+            // Only use asterisk if there's no overriding value behind it on the path
+            if (asteriskValue == node.getValue()) {
+                return asteriskValue;
+            }
+        }
+        // No asterisk or asterisk value is not the same.
+        // The overriding node will be used
+        return node.getValue();
+    }
+
+    private boolean hasPath(String[] path) {
+        PermissionNode node = getRootNode(path[0]);
+
+        for (int current = 0; current < path.length; current++) {
+            if (current == 0) {
+                node = getRootNode("*");
+                if (node == null) {
+                    node = getRootNode(path[0]);
+                }
+            }
+            if (current + 1 < path.length) {
+                if (node == null) {
+                    return false;
+                }
+                if (node.hasChildNode(path[current + 1])) {
+                    node = node.getChildNode(path[current + 1]);
+                }
+                else if (node.hasChildNode("*")) {
+                    node = node.getChildNode("*");
+                }
+            }
+        }
+        return node != null && (node.getName().equals(path[path.length - 1]) || node.isAsterisk());
+    }
+}
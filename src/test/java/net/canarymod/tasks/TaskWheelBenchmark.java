@@ -0,0 +1,67 @@
+package net.canarymod.tasks;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Times a server tick with many scheduled continuous tasks, on the {@link TaskWheel}
+ * and on a plain list that is walked every tick like the task queue before the wheel.
+ * <p/>
+ * Not part of the unit tests, run with {@code mvn test -P benchmarks}
+ *
+ * @author Jason (darkdiplomat)
+ */
+public class TaskWheelBenchmark extends TestCase {
+    private static final int TICKS = 2000;
+    private static final int MAX_DELAY = 1200; // One minute
+    private static final TaskOwner OWNER = new TaskOwner() {
+    };
+
+    public void testTick() {
+        for (int tasks : new int[]{ 1000, 10000, 100000 }) {
+            // Warm up, then measure
+            runWheel(tasks);
+            runList(tasks);
+            long wheel = runWheel(tasks);
+            long list = runList(tasks);
+            System.out.printf("%7d tasks: wheel %8d ns/tick, list %8d ns/tick%n", tasks, wheel / TICKS, list / TICKS);
+        }
+    }
+
+    private long runWheel(int count) {
+        Random random = new Random(count);
+        TaskWheel wheel = new TaskWheel();
+        TaskWheel.TaskSlot due = new TaskWheel.TaskSlot();
+        for (int i = 0; i < count; i++) {
+            wheel.add(TaskWheelTest.task(OWNER), 1 + random.nextInt(MAX_DELAY));
+        }
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            wheel.advance(due);
+            TaskWheel.TaskNode node;
+            while ((node = due.poll()) != null) {
+                wheel.reschedule(node.task, 1 + random.nextInt(MAX_DELAY));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runList(int count) {
+        Random random = new Random(count);
+        ArrayList<long[]> delays = new ArrayList<long[]>(count);
+        for (int i = 0; i < count; i++) {
+            delays.add(new long[]{ 1 + random.nextInt(MAX_DELAY) });
+        }
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (long[] delay : delays) {
+                if (--delay[0] <= 0) {
+                    delay[0] = 1 + random.nextInt(MAX_DELAY);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,182 @@
+package net.canarymod.tasks;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the {@link TaskWheel}: tasks come due on exactly their tick, across every wheel level and the overflow slot
+ *
+ * @author Jason (darkdiplomat)
+ */
+public class TaskWheelTest extends TestCase {
+    private static final TaskOwner OWNER = new TaskOwner() {
+    };
+    private static final TaskOwner OTHER = new TaskOwner() {
+    };
+
+    private TaskWheel wheel;
+    private TaskWheel.TaskSlot due;
+
+    @Override
+    protected void setUp() {
+        wheel = new TaskWheel();
+        due = new TaskWheel.TaskSlot();
+    }
+
+    public void testRootWheelBoundaries() {
+        assertDueOnTime(0, 1, 2, 254, 255, 256, 257, 511, 512);
+    }
+
+    public void testCascadeAcrossLevels() {
+        // 2^8, 2^14 and 2^20 are where the root, first and second wheel run out
+        assertDueOnTime(0, 16383, 16384, 16385, 65536 + 77, 1048575, 1048576, 1048577);
+    }
+
+    public void testCascadeFromUnalignedTick() {
+        // Slots further out are picked by absolute tick, so start off a wheel boundary
+        assertDueOnTime(1000 + 123, 300, 16384 + 5, 1048576 - 1, 1048576 + 3000);
+    }
+
+    public void testOverflowSlot() {
+        // Beyond 2^26 ticks tasks wait in the overflow slot until the top wheel wraps around
+        assertDueOnTime(0, (1L << 26) - 1, 1L << 26, (1L << 26) + 5, (1L << 27) + 300);
+    }
+
+    public void testNonPositiveDelayRunsNextTick() {
+        assertDueOnTime(10, 0);
+        ServerTask negative = task(OWNER);
+        wheel.add(negative, -20);
+        wheel.advance(due);
+        assertSame(negative, due.poll().task);
+    }
+
+    public void testHugeDelayDoesNotComeDue() {
+        ServerTask task = task(OWNER);
+        wheel.add(task, Long.MAX_VALUE);
+        for (int i = 0; i < 1 << 20; i++) {
+            wheel.advance(due);
+        }
+        assertTrue(due.isEmpty());
+        assertTrue(wheel.contains(task));
+    }
+
+    public void testAddTwiceIsRejected() {
+        ServerTask task = task(OWNER);
+        assertTrue(wheel.add(task, 5));
+        assertFalse(wheel.add(task, 1));
+        assertEquals(1, wheel.size());
+        assertEquals(5, ticksUntilDue(task, 10));
+    }
+
+    public void testCancelBeforeDue() {
+        ServerTask near = task(OWNER);
+        ServerTask far = task(OWNER);
+        ServerTask kept = task(OWNER);
+        wheel.add(near, 3);
+        wheel.add(far, 20000);
+        wheel.add(kept, 20000);
+
+        assertTrue(wheel.remove(near));
+        assertFalse(wheel.remove(near));
+        // Cancel after the far task was cascaded once
+        for (int i = 0; i < 16384; i++) {
+            wheel.advance(due);
+        }
+        assertTrue(wheel.remove(far));
+        for (int i = 16384; i < 20000; i++) {
+            wheel.advance(due);
+        }
+        assertSame(kept, due.poll().task);
+        assertTrue(due.isEmpty());
+        assertEquals(1, wheel.size());
+    }
+
+    public void testCancelAllOfOwner() {
+        ServerTask first = task(OWNER);
+        ServerTask second = task(OWNER);
+        ServerTask other = task(OTHER);
+        wheel.add(first, 1);
+        wheel.add(second, 1 << 20);
+        wheel.add(other, 1);
+
+        wheel.removeAll(OWNER);
+        assertFalse(wheel.contains(first));
+        assertFalse(wheel.contains(second));
+        assertTrue(wheel.contains(other));
+        assertEquals(1, wheel.size());
+
+        wheel.advance(due);
+        assertSame(other, due.poll().task);
+        assertTrue(due.isEmpty());
+    }
+
+    public void testDueTaskCanBeCancelledAndRescheduled() {
+        ServerTask cancelled = task(OWNER);
+        ServerTask continuous = task(OWNER);
+        wheel.add(cancelled, 1);
+        wheel.add(continuous, 1);
+        wheel.advance(due);
+        assertEquals(2, due.size());
+
+        // Tasks stay registered after coming due until the manager removes or reschedules them
+        assertTrue(wheel.remove(cancelled));
+        assertTrue(wheel.reschedule(continuous, 300));
+        assertTrue(due.isEmpty());
+        assertFalse(wheel.reschedule(cancelled, 1));
+        assertEquals(300, ticksUntilDue(continuous, 1000));
+    }
+
+    /**
+     * Advances the wheel by the given offset, then schedules a task for each delay at once
+     * and checks every one of them comes due on exactly its tick
+     */
+    private void assertDueOnTime(long offset, long... delays) {
+        for (long i = 0; i < offset; i++) {
+            wheel.advance(due);
+        }
+        HashMap<ServerTask, Long> expected = new HashMap<ServerTask, Long>();
+        long last = 0;
+        for (long delay : delays) {
+            ServerTask task = task(OWNER);
+            wheel.add(task, delay);
+            expected.put(task, Math.max(1L, delay));
+            last = Math.max(last, Math.max(1L, delay));
+        }
+        HashMap<ServerTask, Long> actual = new HashMap<ServerTask, Long>();
+        for (long ticks = 1; ticks <= last; ticks++) {
+            wheel.advance(due);
+            TaskWheel.TaskNode node;
+            while ((node = due.poll()) != null) {
+                assertNull("came due twice", actual.put(node.task, ticks));
+                wheel.remove(node.task);
+            }
+        }
+        for (Map.Entry<ServerTask, Long> entry : expected.entrySet()) {
+            assertEquals("delay " + entry.getValue(), entry.getValue(), actual.get(entry.getKey()));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private long ticksUntilDue(ServerTask task, long limit) {
+        for (long ticks = 1; ticks <= limit; ticks++) {
+            wheel.advance(due);
+            TaskWheel.TaskNode node = due.poll();
+            if (node != null) {
+                assertSame(task, node.task);
+                assertTrue(due.isEmpty());
+                return ticks;
+            }
+        }
+        return -1;
+    }
+
+    static ServerTask task(TaskOwner owner) {
+        return new ServerTask(owner, 0) {
+            @Override
+            public void run() {
+            }
+        };
+    }
+}
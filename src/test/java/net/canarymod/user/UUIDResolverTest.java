@@ -0,0 +1,194 @@
+package net.canarymod.user;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link UUIDResolver} against a {@link LocalUUIDBackend}
+ *
+ * @author Jason (darkdiplomat)
+ */
+public class UUIDResolverTest extends TestCase {
+    private static final String ALICE = "00000000-0000-0000-0000-00000000a11c";
+    private static final String BOB = "00000000-0000-0000-0000-000000000b0b";
+    private static final long LONG_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long SHORT_TTL = 300;
+
+    private LocalUUIDBackend local;
+    private RecordingBackend backend;
+
+    @Override
+    protected void setUp() {
+        local = new LocalUUIDBackend(false);
+        local.put("Alice", ALICE);
+        local.put("Bob", BOB);
+        backend = new RecordingBackend(local, Integer.MAX_VALUE);
+    }
+
+    public void testFoundNameIsCachedUntilPositiveTtlExpires() throws Exception {
+        UUIDResolver resolver = new UUIDResolver(backend, null, SHORT_TTL, LONG_TTL);
+        assertEquals(ALICE, resolver.resolveNow("Alice"));
+        assertEquals(ALICE, resolver.getCached("alice"));
+
+        local.put("Alice", BOB);
+        assertEquals(ALICE, resolver.resolveNow("Alice"));
+        assertEquals(1, backend.lookups());
+
+        Thread.sleep(SHORT_TTL * 2);
+        assertNull(resolver.getCached("Alice"));
+        assertEquals(BOB, resolver.resolveNow("Alice"));
+        assertEquals(2, backend.lookups());
+    }
+
+    public void testUnknownNameIsCachedUntilNegativeTtlExpires() throws Exception {
+        UUIDResolver resolver = new UUIDResolver(backend, null, LONG_TTL, SHORT_TTL);
+        assertNull(resolver.resolveNow("Carol"));
+
+        local.put("Carol", ALICE);
+        assertNull(resolver.resolveNow("Carol"));
+        assertEquals(1, backend.lookups());
+
+        Thread.sleep(SHORT_TTL * 2);
+        assertEquals(ALICE, resolver.resolveNow("Carol"));
+        assertEquals(2, backend.lookups());
+    }
+
+    public void testLookupsAreBatchedUpToMaxBatchSize() throws Exception {
+        backend = new RecordingBackend(local, 2);
+        backend.hold();
+        UUIDResolver resolver = new UUIDResolver(backend, null, LONG_TTL, LONG_TTL);
+
+        ListenableFuture<String> first = resolver.resolve("n0");
+        backend.awaitFirstLookup();
+        // The backend is busy with n0, the rest queue up
+        List<ListenableFuture<String>> rest = new ArrayList<ListenableFuture<String>>();
+        for (int i = 1; i <= 5; i++) {
+            rest.add(resolver.resolve("n" + i));
+        }
+        backend.release();
+        first.get(5, TimeUnit.SECONDS);
+        for (ListenableFuture<String> future : rest) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Arrays.asList(1, 2, 2, 1), backend.batchSizes());
+    }
+
+    public void testRequestsForTheSameNameShareOneLookup() throws Exception {
+        backend.hold();
+        UUIDResolver resolver = new UUIDResolver(backend, null, LONG_TTL, LONG_TTL);
+
+        resolver.resolve("Bob");
+        backend.awaitFirstLookup();
+        ListenableFuture<String> first = resolver.resolve("Alice");
+        ListenableFuture<String> second = resolver.resolve("alice");
+        ListenableFuture<String> third = resolver.resolve("ALICE");
+        assertSame(first, second);
+        assertSame(first, third);
+        backend.release();
+
+        assertEquals(ALICE, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, backend.lookups());
+        assertEquals(Collections.singletonList("Alice"), backend.batches.get(1));
+    }
+
+    public void testResolveAllMapsTheGivenNames() throws Exception {
+        UUIDResolver resolver = new UUIDResolver(backend, null, LONG_TTL, LONG_TTL);
+        resolver.resolveNow("Bob"); // One of them cached already
+
+        Map<String, String> uuids = resolver.resolveAllNow(Arrays.asList("aLiCe", "Bob", "Nobody"));
+
+        assertEquals(2, uuids.size());
+        assertEquals(ALICE, uuids.get("aLiCe"));
+        assertEquals(BOB, uuids.get("Bob"));
+        assertFalse(uuids.containsKey("Nobody"));
+        assertFalse(uuids.containsKey("alice"));
+    }
+
+    public void testFailedLookupCompletesWithNullAndCachesNothing() throws Exception {
+        backend.failNext();
+        UUIDResolver resolver = new UUIDResolver(backend, null, LONG_TTL, LONG_TTL);
+
+        assertNull(resolver.resolve("Alice").get(5, TimeUnit.SECONDS));
+        assertNull(resolver.getCached("Alice"));
+
+        // Not remembered as unknown either, the next request asks again
+        assertEquals(ALICE, resolver.resolveNow("Alice"));
+        assertEquals(2, backend.lookups());
+    }
+
+    /**
+     * Records the batches handed to the {@link LocalUUIDBackend}, can hold the first lookup and fail lookups
+     */
+    private static final class RecordingBackend implements UUIDBackend {
+        private final LocalUUIDBackend local;
+        private final int maxBatchSize;
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+        private volatile boolean fail;
+
+        RecordingBackend(LocalUUIDBackend local, int maxBatchSize) {
+            this.local = local;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void awaitFirstLookup() throws InterruptedException {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        void failNext() {
+            fail = true;
+        }
+
+        int lookups() {
+            return batches.size();
+        }
+
+        List<Integer> batchSizes() {
+            ArrayList<Integer> sizes = new ArrayList<Integer>();
+            synchronized (batches) {
+                for (List<String> batch : batches) {
+                    sizes.add(batch.size());
+                }
+            }
+            return sizes;
+        }
+
+        @Override
+        public Map<String, String> lookup(List<String> names) throws Exception {
+            batches.add(new ArrayList<String>(names));
+            started.countDown();
+            CountDownLatch gate = this.gate;
+            if (gate != null) {
+                assertTrue(gate.await(5, TimeUnit.SECONDS));
+            }
+            if (fail) {
+                fail = false;
+                throw new Exception("Backend down");
+            }
+            return local.lookup(names);
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+    }
+}